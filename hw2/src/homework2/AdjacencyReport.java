@@ -0,0 +1,101 @@
+package homework2;
+
+/***
+ * AdjacencyReport describes how the children of the nodes of a Graph are
+ * stored, as returned by Graph.memoryReport(). Every node is in one of three
+ * tiers: nodes with no children share a single empty array, nodes with a few
+ * children keep them in a small array of their own, and hubs, which have many
+ * children, keep them in a hash set of ints.
+ * <p>
+ * The number of bytes is an estimate for a 64-bit JVM with compressed
+ * references, and counts only the storage of the children and of the parents
+ * index, which uses the same tiers, not the nodes themselves.
+ */
+public class AdjacencyReport {
+
+    static final int OBJECT_BYTES = 16;
+
+    private final int  _emptyNodes;
+    private final int  _smallNodes;
+    private final int  _hubNodes;
+    private final long _edges;
+    private final long _bytes;
+
+    /**
+     * Creates a report.
+     *
+     * @requires All arguments are non-negative.
+     * @effects Constructs a new AdjacencyReport with the given counts.
+     */
+    AdjacencyReport(int emptyNodes, int smallNodes, int hubNodes, long edges, long bytes) {
+        _emptyNodes = emptyNodes;
+        _smallNodes = smallNodes;
+        _hubNodes = hubNodes;
+        _edges = edges;
+        _bytes = bytes;
+    }
+
+    /**
+     * Returns the estimated size of an int array of a given length.
+     */
+    static long arrayBytes(int length) {
+        return align(OBJECT_BYTES + 4L * length);
+    }
+
+    /**
+     * Returns the estimated size of an array of references of a given length.
+     */
+    static long referenceArrayBytes(int length) {
+        return align(OBJECT_BYTES + 4L * length);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Returns the number of nodes with no children.
+     */
+    public int getEmptyNodes() {
+        return _emptyNodes;
+    }
+
+    /**
+     * Returns the number of nodes whose children are kept in a small array.
+     */
+    public int getSmallNodes() {
+        return _smallNodes;
+    }
+
+    /**
+     * Returns the number of nodes whose children are kept in a hash set.
+     */
+    public int getHubNodes() {
+        return _hubNodes;
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     */
+    public long getEdges() {
+        return _edges;
+    }
+
+    /**
+     * Returns the estimated number of bytes taken by the children and the
+     * parents of all nodes.
+     */
+    public long getBytes() {
+        return _bytes;
+    }
+
+    /**
+     * Standard object to string conversion.
+     * @return a string representation of this in the form
+     *         [AdjacencyReport: empty=E, small=S, hubs=H, edges=M, bytes=B].
+     */
+    public String toString() {
+        return "[AdjacencyReport: empty=" + _emptyNodes + ", small=" + _smallNodes + ", hubs=" + _hubNodes
+                + ", edges=" + _edges + ", bytes=" + _bytes + "]";
+    }
+}
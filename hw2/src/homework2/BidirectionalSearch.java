@@ -0,0 +1,388 @@
+package homework2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/***
+ * BidirectionalSearch finds a path between a set of start nodes and a set of
+ * end nodes of a compact graph by searching from both sides at once: forward
+ * from the start nodes over the edges of the graph, and backward from the end
+ * nodes over the edges of its reverse (see CompactGraph.reverse()). The two
+ * searches take turns, the one with the smaller frontier going first, and
+ * stop once the best path through a node reached by both of them can't be
+ * improved. On sparse graphs, each search explores only the nodes near its own
+ * side, which is usually far fewer than a one-sided search explores.
+ * <p>
+ * Two kinds of paths can be found:
+ * shortestPath finds the path with the fewest nodes, with a breadth-first
+ * search from each side, and returns it as a NodeCountingPath (without back
+ * edges, so its cost is its number of nodes). cheapestPath finds the path
+ * whose nodes cost the least in total, with Dijkstra's algorithm from each
+ * side, and returns it as a WeightedNodePath.
+ * <p>
+ * As in DijkstraAlgorithm, the state of a search is stamped with an epoch, so
+ * a new search doesn't clear the state of the previous one. A single
+ * BidirectionalSearch object should not be used by more than one thread.
+ * Since the state takes memory linear in the size of the graph, the objects
+ * of a graph are kept with it once released (see acquire and release), and
+ * reused by later searches of the same graph.
+ */
+
+public class BidirectionalSearch {
+
+    private final CompactGraph<WeightedNode> _graph;
+    private final CompactGraph<WeightedNode> _reverse;
+    private final int[]                      _forwardStamps;
+    private final int[]                      _backwardStamps;
+    private int                              _epoch;
+    private final long[]                     _forwardCosts;
+    private final long[]                     _backwardCosts;
+    private final int[]                      _forwardParents;
+    private final int[]                      _backwardNext;
+    private final IndexedHeap                _forwardHeap;
+    private final IndexedHeap                _backwardHeap;
+    private int[]                            _forwardFrontier;
+    private int[]                            _backwardFrontier;
+    private int[]                            _nextFrontier;
+    private long                             _bestCost;
+    private int                              _meetingNode;
+    private int                              _explored;
+
+    /**
+     * Creates a BidirectionalSearch object, for a given compact graph.
+     *
+     * @requires A valid compact graph.
+     * @effects Constructs a new BidirectionalSearch object. The reverse of
+     *          graph is built here, if it wasn't built yet.
+     */
+    public BidirectionalSearch(CompactGraph<WeightedNode> graph) {
+        int size = graph.size();
+        _graph = graph;
+        _reverse = graph.reverse();
+        _forwardStamps = new int[size];
+        _backwardStamps = new int[size];
+        _epoch = 0;
+        _forwardCosts = new long[size];
+        _backwardCosts = new long[size];
+        _forwardParents = new int[size];
+        _backwardNext = new int[size];
+        _forwardHeap = new IndexedHeap(size);
+        _backwardHeap = new IndexedHeap(size);
+        _forwardFrontier = new int[size];
+        _backwardFrontier = new int[size];
+        _nextFrontier = new int[size];
+    }
+
+    /**
+     * Returns a BidirectionalSearch object for a given compact graph, reusing
+     * one which was released for the graph if there is one.
+     *
+     * @requires A valid compact graph.
+     * @return A BidirectionalSearch object for graph, which no other caller
+     *         holds until it is released.
+     */
+    public static BidirectionalSearch acquire(CompactGraph<WeightedNode> graph) {
+        BidirectionalSearch search = graph.searchPool().poll();
+        return (search != null) ? search : new BidirectionalSearch(graph);
+    }
+
+    /**
+     * Keeps this object with its graph, for a later search of the graph to
+     * reuse (see acquire).
+     *
+     * @requires This object is not used after the call, except by getting it
+     *           again from acquire.
+     * @effects Adds this object to the released search objects of its graph.
+     */
+    public void release() {
+        _graph.searchPool().offer(this);
+    }
+
+    /**
+     * Prepares the search state for a new search.
+     *
+     * @effects Forgets all nodes reached by the previous search.
+     */
+    private void resetState() {
+        _forwardHeap.clear();
+        _backwardHeap.clear();
+        if (_epoch == Integer.MAX_VALUE) {
+            Arrays.fill(_forwardStamps, 0);
+            Arrays.fill(_backwardStamps, 0);
+            _epoch = 0;
+        }
+        _epoch++;
+        _bestCost = Long.MAX_VALUE;
+        _meetingNode = -1;
+        _explored = 0;
+    }
+
+    /**
+     * Returns the graph this object searches.
+     *
+     * @return The graph given to the constructor.
+     */
+    public CompactGraph<WeightedNode> getGraph() {
+        return _graph;
+    }
+
+    /**
+     * Returns the number of nodes the last search explored, i.e. took the
+     * edges of, counting nodes explored from both sides once for each side.
+     */
+    public int getExploredCount() {
+        return _explored;
+    }
+
+    /**
+     * Finds the path with the fewest nodes from any of a set of start nodes
+     * to any of a set of end nodes.
+     *
+     * @requires Valid collections of nodes starts and ends.
+     * @effects Discards the state of the previous search.
+     * @return The path with the fewest nodes from a node of starts to a node
+     *         of ends, with no back edges, or null if there is no such path.
+     */
+    public NodeCountingPath shortestPath(Collection<WeightedNode> starts, Collection<WeightedNode> ends) {
+        this.resetState();
+        int forwardSize = 0;
+        int backwardSize = 0;
+        for (WeightedNode end : ends) {
+            int id = _graph.indexOf(end);
+            if ((id >= 0) && (_backwardStamps[id] != _epoch)) {
+                this.labelBackward(id, -1, 1);
+                _backwardFrontier[backwardSize++] = id;
+            }
+        }
+        for (WeightedNode start : starts) {
+            int id = _graph.indexOf(start);
+            if ((id >= 0) && (_forwardStamps[id] != _epoch)) {
+                this.labelForward(id, -1, 1);
+                _forwardFrontier[forwardSize++] = id;
+            } else if ((id < 0) && ends.contains(start)) {
+                // a node which is not in the graph has no children
+                return new NodeCountingPath(start);
+            }
+        }
+
+        // Expand whole levels, so all paths through the level where the two
+        // searches meet are compared before stopping.
+        while ((_meetingNode < 0) && (forwardSize > 0) && (backwardSize > 0)) {
+            if (forwardSize <= backwardSize) {
+                forwardSize = this.expandLevel(_forwardFrontier, forwardSize, true);
+            } else {
+                backwardSize = this.expandLevel(_backwardFrontier, backwardSize, false);
+            }
+        }
+        if (_meetingNode < 0) {
+            return null;
+        }
+
+        NodeCountingPath retPath = null;
+        for (int id : this.meetingPath()) {
+            WeightedNode n = _graph.getNode(id);
+            retPath = (retPath == null) ? new NodeCountingPath(n) : retPath.extend(n);
+        }
+        return retPath;
+    }
+
+    /**
+     * Explores all nodes of a frontier of one of the searches, and makes the
+     * nodes they reach for the first time the new frontier.
+     *
+     * @requires size > 0
+     * @return The size of the new frontier.
+     */
+    private int expandLevel(int[] frontier, int size, boolean forward) {
+        CompactGraph<WeightedNode> graph = forward ? _graph : _reverse;
+        int[] stamps = forward ? _forwardStamps : _backwardStamps;
+        long[] costs = forward ? _forwardCosts : _backwardCosts;
+        int nextSize = 0;
+        for (int i = 0; i < size; i++) {
+            int id = frontier[i];
+            _explored++;
+            for (int k = 0; k < graph.childCount(id); k++) {
+                int next = graph.childAt(id, k);
+                if (stamps[next] != _epoch) {
+                    if (forward) {
+                        this.labelForward(next, id, costs[id] + 1);
+                    } else {
+                        this.labelBackward(next, id, costs[id] + 1);
+                    }
+                    _nextFrontier[nextSize++] = next;
+                }
+            }
+        }
+        int[] swap = _nextFrontier;
+        _nextFrontier = frontier;
+        if (forward) {
+            _forwardFrontier = swap;
+        } else {
+            _backwardFrontier = swap;
+        }
+        return nextSize;
+    }
+
+    /**
+     * Finds the cheapest path from any of a set of start nodes to any of a set
+     * of end nodes, where the cost of a path is the sum of the costs of its
+     * nodes.
+     * <p>
+     * The forward search finds, for every node, the cost of the cheapest path
+     * from a start node to it (including both), and the backward search finds
+     * the cost of the cheapest path from it to an end node (not including
+     * it). Whenever a node is reached by both, their sum is the cost of a path
+     * through it. The searches stop once the smallest costs left in their two
+     * heaps add up to at least the cheapest such path, since every path not
+     * yet found costs at least that much.
+     *
+     * @requires Valid collections of nodes starts and ends, and non-negative
+     *           node costs.
+     * @effects Discards the state of the previous search.
+     * @return A cheapest path from a node of starts to a node of ends, or null
+     *         if there is no such path.
+     * @throws IllegalArgumentException if a node with a negative cost is
+     *         reached.
+     */
+    public WeightedNodePath cheapestPath(Collection<WeightedNode> starts, Collection<WeightedNode> ends) {
+        this.resetState();
+        for (WeightedNode end : ends) {
+            int id = _graph.indexOf(end);
+            if (id >= 0) {
+                this.relaxBackward(id, -1, 0);
+            }
+        }
+        for (WeightedNode start : starts) {
+            int id = _graph.indexOf(start);
+            if (id >= 0) {
+                this.relaxForward(id, -1, start.getCost());
+            } else if (ends.contains(start)) {
+                // a node which is not in the graph has no children
+                return new WeightedNodePath(start);
+            }
+        }
+
+        while (!(_forwardHeap.isEmpty()) && !(_backwardHeap.isEmpty())
+                && (_forwardHeap.minKey() + _backwardHeap.minKey() < _bestCost)) {
+            _explored++;
+            if (_forwardHeap.size() <= _backwardHeap.size()) {
+                int id = _forwardHeap.poll();
+                for (int k = 0; k < _graph.childCount(id); k++) {
+                    int child = _graph.childAt(id, k);
+                    this.relaxForward(child, id, _forwardCosts[id] + _graph.costOf(child));
+                }
+            } else {
+                int id = _backwardHeap.poll();
+                long cost = _backwardCosts[id] + _graph.costOf(id);
+                for (int k = 0; k < _reverse.childCount(id); k++) {
+                    this.relaxBackward(_reverse.childAt(id, k), id, cost);
+                }
+            }
+        }
+        if (_meetingNode < 0) {
+            return null;
+        }
+
+        WeightedNodePath retPath = null;
+        for (int id : this.meetingPath()) {
+            WeightedNode n = _graph.getNode(id);
+            retPath = (retPath == null) ? new WeightedNodePath(n) : retPath.extend(n);
+        }
+        return retPath;
+    }
+
+    /**
+     * Offers a forward path to a node, and keeps it if it is cheaper than the
+     * one known.
+     *
+     * @throws IllegalArgumentException if the node has a negative cost.
+     */
+    private void relaxForward(int id, int parent, long cost) {
+        if ((_forwardStamps[id] == _epoch) && (cost >= _forwardCosts[id])) {
+            return;
+        }
+        checkCost(id);
+        this.labelForward(id, parent, cost);
+        _forwardHeap.offer(id, cost);
+    }
+
+    /**
+     * Offers a backward path from a node, and keeps it if it is cheaper than
+     * the one known.
+     *
+     * @throws IllegalArgumentException if the node has a negative cost.
+     */
+    private void relaxBackward(int id, int next, long cost) {
+        if ((_backwardStamps[id] == _epoch) && (cost >= _backwardCosts[id])) {
+            return;
+        }
+        checkCost(id);
+        this.labelBackward(id, next, cost);
+        _backwardHeap.offer(id, cost);
+    }
+
+    private void checkCost(int id) {
+        if (_graph.costOf(id) < 0) {
+            throw new IllegalArgumentException("Node " + _graph.getNode(id) + " has a negative cost");
+        }
+    }
+
+    /**
+     * Records a forward path to a node, and checks if it makes a better path
+     * with the backward path from it.
+     */
+    private void labelForward(int id, int parent, long cost) {
+        _forwardStamps[id] = _epoch;
+        _forwardCosts[id] = cost;
+        _forwardParents[id] = parent;
+        if (_backwardStamps[id] == _epoch) {
+            this.offerMeeting(id, cost + _backwardCosts[id]);
+        }
+    }
+
+    /**
+     * Records a backward path from a node, and checks if it makes a better
+     * path with the forward path to it.
+     */
+    private void labelBackward(int id, int next, long cost) {
+        _backwardStamps[id] = _epoch;
+        _backwardCosts[id] = cost;
+        _backwardNext[id] = next;
+        if (_forwardStamps[id] == _epoch) {
+            this.offerMeeting(id, _forwardCosts[id] + cost);
+        }
+    }
+
+    /**
+     * Keeps a node as the meeting point of the two searches, if the path
+     * through it is better than the best one so far. (In shortestPath, both
+     * lengths count the node, so total is one more than the length of the
+     * path, which doesn't change which path is the best.)
+     */
+    private void offerMeeting(int id, long total) {
+        if (total < _bestCost) {
+            _bestCost = total;
+            _meetingNode = id;
+        }
+    }
+
+    /**
+     * Returns the ids of the nodes on the path through the meeting node, from
+     * the start node to the end node.
+     *
+     * @requires _meetingNode >= 0
+     */
+    private ArrayList<Integer> meetingPath() {
+        ArrayList<Integer> ids = new ArrayList<Integer>();
+        for (int id = _meetingNode; id >= 0; id = _forwardParents[id]) {
+            ids.add(id);
+        }
+        Collections.reverse(ids);
+        for (int id = _backwardNext[_meetingNode]; id >= 0; id = _backwardNext[id]) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
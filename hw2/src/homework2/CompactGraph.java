@@ -0,0 +1,886 @@
+package homework2;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/***
+ * CompactGraph is an immutable copy of a Graph, stored in compressed sparse
+ * row (CSR) form. Every node is given a dense id in the range [0, size()),
+ * and the children of the node with id i are kept in one int array, from
+ * index offsets[i] (inclusive) to offsets[i + 1] (exclusive).
+ * A CompactGraph is meant for graphs that are built once and then queried
+ * many times: walking the children of a node reads consecutive array cells
+ * instead of following the references of a HashSet. Since it can't be
+ * modified, a CompactGraph can be shared between threads.
+ * <p>
+ * The children of every node are sorted once, when the CompactGraph is built,
+ * by a given child order. By default, if the nodes are Comparable, children
+ * are sorted in descending order, which is the order in which DfsAlgorithm
+ * visits them.
+ * <p>
+ * CompactGraph is the in-memory IndexedGraph, which the search algorithms
+ * traverse.
+ * <p>
+ * A ReachabilityIndex may be built for a CompactGraph, once it is frozen. The
+ * index is then kept with it, and used by mayReach.
+ * <p>
+ * The ids of a frozen graph follow the order its nodes were added in, so a
+ * search which follows edges jumps around the arrays of the graph and of the
+ * search state. relabel() renumbers the nodes so that nodes which are close in
+ * the graph get close ids (see NodeOrder), and keeps the ids they had before
+ * (see originalId). A search finds the same paths in the relabeled graph,
+ * since the children keep their order.
+ */
+
+/*
+ * Representation invariant:
+ * _offsets.length == _nodes.length + 1.
+ * _ids maps _nodes[i] to i, for every 0 <= i < _nodes.length, and maps no other node to
+ * an id below _nodes.length. It may map other nodes to greater ids, which are ignored:
+ * a CompactGraph built from a Graph shares the id map of the graph, which keeps growing.
+ * _offsets[0] == 0, _offsets is non-decreasing, and _offsets[_nodes.length] == _targets.length.
+ * Every element of _targets is in the range [0, _nodes.length).
+ * No id appears twice in the children range of the same node.
+ * If _childOrder != null, the children range of every node is sorted by _childOrder.
+ * _originalIds is null if the graph was not relabeled. Otherwise _originalIds.length ==
+ * _nodes.length, and _originalIds[i] is the id _nodes[i] had before it was relabeled.
+ */
+public class CompactGraph<N> implements IndexedGraph<N> {
+
+    /**
+     * An order to renumber the nodes of a graph by (see relabel()).
+     */
+    public enum NodeOrder {
+        /**
+         * Breadth-first order: the nodes are taken by id, and every node not
+         * numbered yet starts a breadth-first search over the children, which
+         * numbers the nodes as it meets them. The children of a node get
+         * consecutive ids, next to the ids of its siblings.
+         */
+        BFS,
+
+        /**
+         * Reverse Cuthill-McKee order: breadth-first search over the edges in
+         * both directions, which starts from a node of least degree and meets
+         * the neighbors of every node by increasing degree, numbering the nodes
+         * in the reverse of the order it met them. It keeps the ids of the two
+         * ends of every edge close to each other.
+         */
+        REVERSE_CUTHILL_MCKEE,
+
+        /**
+         * Descending order of the degree (children and parents) of the nodes,
+         * so the nodes searched most often share the same part of memory.
+         */
+        DEGREE,
+
+        /**
+         * The child order of the graph (see getChildOrder()), nodes it finds
+         * equal by id. The children of every node are then sorted by id, so
+         * the gaps between them are positive, which CompressedGraph encodes
+         * in fewer bytes. Nodes whose order keeps linked nodes close (e.g. web
+         * pages ordered by URL) also get close ids.
+         */
+        CHILD_ORDER
+    }
+
+    private final Object[]              _nodes;
+    private final Map<N, Integer>       _ids;
+    private final int[]                 _offsets;
+    private final int[]                 _targets;
+    private final Comparator<? super N> _childOrder;
+    private final int[]                 _originalIds;
+    private volatile ReachabilityIndex<N> _reachability;
+    private volatile CompactGraph<N>      _reverse;
+    private final Queue<BidirectionalSearch> _searches = new ConcurrentLinkedQueue<BidirectionalSearch>();
+
+    private void checkRep() {
+        assert (_offsets.length == _nodes.length + 1) : "Offsets don't match the number of nodes";
+        assert (_offsets[_nodes.length] == _targets.length) : "Offsets don't match the number of edges";
+        for (int i = 0; i < _nodes.length; i++) {
+            assert (_nodes[i] != null) : "Found null node in graph";
+            assert (_offsets[i] <= _offsets[i + 1]) : "Offsets are not sorted";
+        }
+    }
+
+    /**
+     * Creates a CompactGraph holding the current nodes and edges of a given
+     * graph, with children sorted in descending order if the nodes are
+     * Comparable.
+     *
+     * @requires A valid graph.
+     * @effects Constructs a new CompactGraph with the same nodes and edges as
+     *          graph. Later changes to graph are not reflected in it.
+     */
+    public CompactGraph(Graph<N> graph) {
+        this(graph, graph.defaultChildOrder());
+    }
+
+    /**
+     * Creates a CompactGraph holding the current nodes and edges of a given
+     * graph, with children sorted by a given order.
+     *
+     * @requires A valid graph, and a valid comparator of its nodes or null.
+     * @effects Constructs a new CompactGraph with the same nodes and edges as
+     *          graph, where the children of every node are sorted by
+     *          childOrder (or kept in no particular order if childOrder is
+     *          null). Later changes to graph are not reflected in it.
+     */
+    public CompactGraph(Graph<N> graph, Comparator<? super N> childOrder) {
+        // the ids of the nodes are the ids they were interned to by graph,
+        // so the map of graph can be shared instead of copied
+        int size = graph.nodeCount();
+        _nodes = new Object[size];
+        _ids = graph.idMap();
+        _offsets = new int[size + 1];
+        _childOrder = childOrder;
+        _originalIds = null;
+
+        int edges = 0;
+        int maxDegree = 0;
+        for (int id = 0; id < size; id++) {
+            _nodes[id] = graph.nodeAt(id);
+            edges += graph.childCount(id);
+            maxDegree = Math.max(maxDegree, graph.childCount(id));
+        }
+
+        _targets = new int[edges];
+        int[] rank = childOrder == null ? null : rankNodes(_nodes, _ids, childOrder);
+        int[] row = new int[maxDegree];
+        long[] keys = new long[maxDegree];
+        int pos = 0;
+        for (int i = 0; i < size; i++) {
+            _offsets[i] = pos;
+            int count = 0;
+            for (int slot = 0; slot < graph.childSlotCount(i); slot++) {
+                if (graph.childSlot(i, slot) != IntSet.EMPTY) {
+                    row[count++] = graph.childSlot(i, slot);
+                }
+            }
+            if (rank == null) {
+                System.arraycopy(row, 0, _targets, pos, count);
+            } else {
+                sortRow(row, 0, count, rank, keys, _targets, pos);
+            }
+            pos += count;
+        }
+        _offsets[size] = pos;
+        checkRep();
+    }
+
+    /**
+     * Creates a CompactGraph from a set of nodes and a function giving the
+     * children of each of them, which may be changing while it is read.
+     * <p>
+     * Every node is read once, and so are its children, so the result holds
+     * all nodes and edges that were added before the call started. Children
+     * that are not in the nodes as they were read (since they were added
+     * during the call) are left out, so the result is always a valid graph.
+     *
+     * @requires A valid collection of nodes, a function returning a valid
+     *           collection of the children of each of them, and a valid
+     *           comparator of the nodes or null.
+     * @return A new CompactGraph holding the nodes and edges read, with
+     *         children sorted by childOrder.
+     */
+    static <N> CompactGraph<N> snapshot(Collection<N> nodes, Function<? super N, ? extends Collection<N>> children,
+            Comparator<? super N> childOrder) {
+        ArrayList<N> nodeList = new ArrayList<N>(nodes);
+        int size = nodeList.size();
+        HashMap<N, Integer> ids = new HashMap<N, Integer>(size * 4 / 3 + 1);
+        for (int id = 0; id < size; id++) {
+            ids.put(nodeList.get(id), id);
+        }
+        int[] offsets = new int[size + 1];
+        int[] targets = new int[16];
+        ArrayList<N> row = new ArrayList<N>();
+        int pos = 0;
+        for (int i = 0; i < size; i++) {
+            offsets[i] = pos;
+            row.clear();
+            for (N child : children.apply(nodeList.get(i))) {
+                if (ids.containsKey(child)) {
+                    row.add(child);
+                }
+            }
+            if (childOrder != null) {
+                row.sort(childOrder);
+            }
+            if (pos + row.size() > targets.length) {
+                targets = Arrays.copyOf(targets, Math.max(pos + row.size(), 2 * targets.length));
+            }
+            for (N child : row) {
+                targets[pos++] = ids.get(child);
+            }
+        }
+        offsets[size] = pos;
+        return new CompactGraph<N>(nodeList.toArray(), ids, offsets, Arrays.copyOf(targets, pos), childOrder,
+                null, null);
+    }
+
+    /**
+     * Creates a CompactGraph from the given arrays, which it takes ownership of.
+     */
+    private CompactGraph(Object[] nodes, Map<N, Integer> ids, int[] offsets, int[] targets,
+            Comparator<? super N> childOrder, ReachabilityIndex<N> reachability, int[] originalIds) {
+        _nodes = nodes;
+        _ids = ids;
+        _offsets = offsets;
+        _targets = targets;
+        _childOrder = childOrder;
+        _reachability = reachability;
+        _originalIds = originalIds;
+        checkRep();
+    }
+
+    /**
+     * Returns a CompactGraph of the graph this one was built from, after nodes
+     * and edges were added to it. The rows of the nodes whose children didn't
+     * change are copied as they are, so this takes time linear in the number
+     * of nodes, plus the time to sort the rows that changed and the rows of
+     * the new nodes.
+     *
+     * @requires graph is the graph this CompactGraph was built from (with
+     *           its child order), and was only added nodes and edges since.
+     *           changedRows holds, in increasing order, the ids below size()
+     *           of every node whose children changed. The child order of this
+     *           graph is a valid comparator of the nodes of graph, or null.
+     * @return A new CompactGraph with the nodes and edges of graph, where every
+     *         node has the same id as in graph, and the children are sorted by
+     *         the child order of this one.
+     */
+    CompactGraph<N> update(Graph<N> graph, int[] changedRows) {
+        assert (_originalIds == null) : "Relabeled graphs are not updated";
+        int size = graph.nodeCount();
+        int oldSize = _nodes.length;
+        Object[] nodes = Arrays.copyOf(_nodes, size);
+        int edges = _targets.length;
+        for (int id : changedRows) {
+            edges += graph.childCount(id) - childCount(id);
+        }
+        for (int id = oldSize; id < size; id++) {
+            nodes[id] = graph.nodeAt(id);
+            edges += graph.childCount(id);
+        }
+
+        int[] offsets = new int[size + 1];
+        int[] targets = new int[edges];
+        int pos = 0;
+        int next = 0;
+        for (int changed = 0; changed <= changedRows.length; changed++) {
+            // copy the rows that didn't change up to the next changed one
+            int end = (changed < changedRows.length) ? changedRows[changed] : oldSize;
+            int from = _offsets[next];
+            System.arraycopy(_targets, from, targets, pos, _offsets[end] - from);
+            for (int id = next; id < end; id++) {
+                offsets[id] = _offsets[id] - from + pos;
+            }
+            pos += _offsets[end] - from;
+            if (changed < changedRows.length) {
+                offsets[end] = pos;
+                pos = copyRow(graph, end, targets, pos);
+            }
+            next = end + 1;
+        }
+        for (int id = oldSize; id < size; id++) {
+            offsets[id] = pos;
+            pos = copyRow(graph, id, targets, pos);
+        }
+        offsets[size] = pos;
+        return new CompactGraph<N>(nodes, graph.idMap(), offsets, targets, _childOrder, null, null);
+    }
+
+    /**
+     * Copies the children of a node of a graph, sorted by the child order of
+     * this graph.
+     *
+     * @requires 0 <= id < graph.nodeCount(), and targets has room for the
+     *           children of id at pos.
+     * @modifies targets
+     * @effects Writes the ids of the children of id to targets, starting at
+     *          pos, sorted by the child order (children it finds equal are
+     *          kept in the order graph keeps them in, as the constructor does).
+     * @return The position in targets after the children.
+     */
+    @SuppressWarnings("unchecked")
+    private int copyRow(Graph<N> graph, int id, int[] targets, int pos) {
+        if (_childOrder == null) {
+            for (int slot = 0; slot < graph.childSlotCount(id); slot++) {
+                if (graph.childSlot(id, slot) != IntSet.EMPTY) {
+                    targets[pos++] = graph.childSlot(id, slot);
+                }
+            }
+            return pos;
+        }
+        N[] children = (N[])new Object[graph.childCount(id)];
+        int count = 0;
+        for (int slot = 0; slot < graph.childSlotCount(id); slot++) {
+            if (graph.childSlot(id, slot) != IntSet.EMPTY) {
+                children[count++] = graph.nodeAt(graph.childSlot(id, slot));
+            }
+        }
+        Arrays.sort(children, _childOrder);
+        for (N child : children) {
+            targets[pos++] = graph.indexOf(child);
+        }
+        return pos;
+    }
+
+    /**
+     * Ranks the nodes of a graph by a given order, so that rows of children can
+     * be sorted by comparing ints: sorting the nodes once costs fewer
+     * comparisons than sorting every row by the comparator, and the rows can
+     * then be sorted without boxing the ids.
+     *
+     * @requires ids maps nodes[i] to i for every i, and childOrder is a valid
+     *           comparator of the nodes.
+     * @return An array rank of length nodes.length, where rank[i] < rank[j]
+     *         iff nodes[i] comes before nodes[j] by childOrder, and nodes
+     *         which childOrder finds equal have the same rank.
+     */
+    @SuppressWarnings("unchecked")
+    private static <N> int[] rankNodes(Object[] nodes, Map<N, Integer> ids, Comparator<? super N> childOrder) {
+        N[] sorted = (N[])nodes.clone();
+        Arrays.sort(sorted, childOrder);
+        int[] rank = new int[nodes.length];
+        for (int k = 0; k < sorted.length; k++) {
+            int id = ids.get(sorted[k]);
+            boolean tied = k > 0 && childOrder.compare(sorted[k - 1], sorted[k]) == 0;
+            rank[id] = tied ? rank[ids.get(sorted[k - 1])] : k;
+        }
+        return rank;
+    }
+
+    /**
+     * Sorts a row of children by the rank of the nodes, keeping children of
+     * the same rank in the order they are in.
+     *
+     * @requires 0 <= from <= to <= children.length, keys.length >= to - from,
+     *           every child in the row is a valid index of rank, and dest has
+     *           room for the row at destPos.
+     * @modifies keys, dest
+     * @effects Writes children[from..to), sorted by rank, to dest starting at
+     *          destPos.
+     */
+    private static void sortRow(int[] children, int from, int to, int[] rank, long[] keys, int[] dest, int destPos) {
+        int count = to - from;
+        // the position in the row breaks ties, so the sort is stable
+        for (int k = 0; k < count; k++) {
+            keys[k] = (long)rank[children[from + k]] << 32 | k;
+        }
+        Arrays.sort(keys, 0, count);
+        for (int k = 0; k < count; k++) {
+            dest[destPos + k] = children[from + (int)keys[k]];
+        }
+    }
+
+    /**
+     * Returns the order in which children are sorted when nodes are frozen
+     * without an explicit order. The graphs track whether all their nodes are
+     * Comparable as nodes are added, so this doesn't look at the nodes.
+     *
+     * @return The reverse natural order if comparable is true (all nodes are
+     *         Comparable), null otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    static <N> Comparator<? super N> defaultChildOrder(boolean comparable) {
+        return comparable ? (Comparator<? super N>)Collections.reverseOrder() : null;
+    }
+
+    /**
+     * Returns a CompactGraph with the same nodes, ids and edges as this one,
+     * whose children are sorted by a given order.
+     *
+     * @requires A valid comparator of the nodes of this graph.
+     * @return this, if its children are already sorted by childOrder, or a new
+     *         CompactGraph sorted by childOrder otherwise, which shares the
+     *         reachability index of this one, if it was built.
+     */
+    public CompactGraph<N> sortChildren(Comparator<? super N> childOrder) {
+        if (childOrder.equals(_childOrder)) {
+            return this;
+        }
+        int[] targets = new int[_targets.length];
+        int[] rank = rankNodes(_nodes, _ids, childOrder);
+        int maxDegree = 0;
+        for (int i = 0; i < _nodes.length; i++) {
+            maxDegree = Math.max(maxDegree, _offsets[i + 1] - _offsets[i]);
+        }
+        long[] keys = new long[maxDegree];
+        for (int i = 0; i < _nodes.length; i++) {
+            sortRow(_targets, _offsets[i], _offsets[i + 1], rank, keys, targets, _offsets[i]);
+        }
+        // the ids and edges are the same, so the index still holds
+        return new CompactGraph<N>(_nodes, _ids, _offsets, targets, childOrder, _reachability, _originalIds);
+    }
+
+    /**
+     * Returns the reverse of this graph, in which every edge points the other
+     * way: the children of a node in the reverse graph are its parents in this
+     * one.
+     *
+     * @effects Builds the reverse graph, in time linear in the size of the
+     *          graph, on the first call.
+     * @return A CompactGraph with the same nodes and ids as this one, and the
+     *         reverse edges, whose children are sorted by the same order.
+     *         Reversing it gives back this graph.
+     */
+    public CompactGraph<N> reverse() {
+        CompactGraph<N> reverse = _reverse;
+        if (reverse == null) {
+            int[] offsets = new int[_nodes.length + 1];
+            int[] targets = transpose(offsets);
+            reverse = new CompactGraph<N>(_nodes, _ids, offsets, targets, null, null, _originalIds);
+            if (_childOrder != null) {
+                reverse = reverse.sortChildren(_childOrder);
+            }
+            // two threads may build it at the same time, and both are correct
+            reverse._reverse = this;
+            _reverse = reverse;
+        }
+        return reverse;
+    }
+
+    /**
+     * Returns the search objects which were released for this graph (see
+     * BidirectionalSearch.acquire), so that searches of the graph reuse their
+     * state, whichever PathFinder runs them. Safe to use from several threads.
+     *
+     * @return The queue of released search objects of this graph.
+     */
+    Queue<BidirectionalSearch> searchPool() {
+        return _searches;
+    }
+
+    /**
+     * Computes the parents of every node, in CSR form.
+     *
+     * @requires offsets.length == size() + 1, and offsets is all zeros.
+     * @modifies offsets
+     * @effects Fills offsets with the offsets of the parents of every node.
+     * @return The parents of every node, in increasing id order, where the
+     *         parents of node i are at offsets[i] (inclusive) to offsets[i + 1]
+     *         (exclusive).
+     */
+    private int[] transpose(int[] offsets) {
+        int size = _nodes.length;
+        for (int target : _targets) {
+            offsets[target + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] targets = new int[_targets.length];
+        int[] fill = Arrays.copyOf(offsets, size);
+        for (int i = 0; i < size; i++) {
+            for (int k = _offsets[i]; k < _offsets[i + 1]; k++) {
+                targets[fill[_targets[k]]++] = i;
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Returns a copy of this graph whose nodes are renumbered by a given
+     * order. To search a graph in the new order, freeze it and relabel the
+     * result, as in graph.freeze().relabel(NodeOrder.BFS).
+     *
+     * @requires A valid order.
+     * @effects Computes the new order of the nodes, in time linear in the size
+     *          of the graph (and in O(E log E) for DEGREE and
+     *          REVERSE_CUTHILL_MCKEE).
+     * @return A new CompactGraph with the same nodes and edges as this one,
+     *         where node ids follow order, and the children of every node are
+     *         in the same order as in this one. Its originalId() maps the new
+     *         ids back to the ids of this graph (or of the graph this one was
+     *         relabeled from). It has no reachability index yet.
+     */
+    public CompactGraph<N> relabel(NodeOrder order) {
+        int[] newToOld;
+        switch (order) {
+        case BFS:
+            newToOld = bfsOrder();
+            break;
+        case REVERSE_CUTHILL_MCKEE:
+            newToOld = reverseCuthillMcKeeOrder();
+            break;
+        case CHILD_ORDER:
+            newToOld = childOrder();
+            break;
+        default:
+            newToOld = degreeOrder();
+            break;
+        }
+        int size = _nodes.length;
+        int[] oldToNew = new int[size];
+        for (int id = 0; id < size; id++) {
+            oldToNew[newToOld[id]] = id;
+        }
+        Object[] nodes = new Object[size];
+        HashMap<N, Integer> ids = new HashMap<N, Integer>(size * 4 / 3 + 1);
+        int[] offsets = new int[size + 1];
+        int[] targets = new int[_targets.length];
+        int[] originalIds = new int[size];
+        int pos = 0;
+        for (int id = 0; id < size; id++) {
+            int old = newToOld[id];
+            nodes[id] = _nodes[old];
+            ids.put(getNode(old), id);
+            originalIds[id] = originalId(old);
+            offsets[id] = pos;
+            for (int k = _offsets[old]; k < _offsets[old + 1]; k++) {
+                targets[pos++] = oldToNew[_targets[k]];
+            }
+        }
+        offsets[size] = pos;
+        return new CompactGraph<N>(nodes, ids, offsets, targets, _childOrder, null, originalIds);
+    }
+
+    /**
+     * Returns the nodes in NodeOrder.BFS order.
+     *
+     * @return An array whose i-th cell is the id of the node which gets id i.
+     */
+    private int[] bfsOrder() {
+        int size = _nodes.length;
+        int[] order = new int[size];
+        boolean[] seen = new boolean[size];
+        int head = 0;
+        int tail = 0;
+        for (int root = 0; root < size; root++) {
+            if (seen[root]) {
+                continue;
+            }
+            seen[root] = true;
+            order[tail++] = root;
+            while (head < tail) {
+                int id = order[head++];
+                for (int k = _offsets[id]; k < _offsets[id + 1]; k++) {
+                    if (!seen[_targets[k]]) {
+                        seen[_targets[k]] = true;
+                        order[tail++] = _targets[k];
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Sorts the first count keys, and writes their ids to into, from index
+     * at. A key is a non-negative degree and an id, packed in a long (see
+     * key()), so the ids are sorted by degree, and then by id.
+     *
+     * @return into.
+     */
+    private static int[] sortByKey(long[] keys, int count, int[] into, int at) {
+        Arrays.sort(keys, 0, count);
+        for (int k = 0; k < count; k++) {
+            into[at + k] = (int)keys[k];
+        }
+        return into;
+    }
+
+    private static long key(int degree, int id) {
+        return ((long)degree << 32) | id;
+    }
+
+    /**
+     * Returns the nodes in NodeOrder.REVERSE_CUTHILL_MCKEE order.
+     *
+     * @return An array whose i-th cell is the id of the node which gets id i.
+     */
+    private int[] reverseCuthillMcKeeOrder() {
+        int size = _nodes.length;
+        int[] parentOffsets = new int[size + 1];
+        int[] parents = transpose(parentOffsets);
+        int[] degrees = new int[size];
+        long[] keys = new long[size];
+        for (int id = 0; id < size; id++) {
+            degrees[id] = (_offsets[id + 1] - _offsets[id]) + (parentOffsets[id + 1] - parentOffsets[id]);
+            keys[id] = key(degrees[id], id);
+        }
+        // the roots: every node, by increasing degree
+        int[] roots = sortByKey(keys, size, new int[size], 0);
+
+        int[] order = new int[size];
+        boolean[] seen = new boolean[size];
+        int head = 0;
+        int tail = 0;
+        for (int root : roots) {
+            if (seen[root]) {
+                continue;
+            }
+            seen[root] = true;
+            order[tail++] = root;
+            while (head < tail) {
+                int id = order[head++];
+                int count = 0;
+                for (int k = _offsets[id]; k < _offsets[id + 1]; k++) {
+                    if (!seen[_targets[k]]) {
+                        seen[_targets[k]] = true;
+                        keys[count++] = key(degrees[_targets[k]], _targets[k]);
+                    }
+                }
+                for (int k = parentOffsets[id]; k < parentOffsets[id + 1]; k++) {
+                    if (!seen[parents[k]]) {
+                        seen[parents[k]] = true;
+                        keys[count++] = key(degrees[parents[k]], parents[k]);
+                    }
+                }
+                sortByKey(keys, count, order, tail);
+                tail += count;
+            }
+        }
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            int id = order[i];
+            order[i] = order[j];
+            order[j] = id;
+        }
+        return order;
+    }
+
+    /**
+     * Returns the nodes in NodeOrder.DEGREE order, nodes of the same degree by
+     * id.
+     *
+     * @return An array whose i-th cell is the id of the node which gets id i.
+     */
+    private int[] degreeOrder() {
+        int size = _nodes.length;
+        int[] inDegrees = new int[size];
+        for (int target : _targets) {
+            inDegrees[target]++;
+        }
+        long[] keys = new long[size];
+        for (int id = 0; id < size; id++) {
+            // the complement sorts the largest degree first
+            keys[id] = key(Integer.MAX_VALUE - (_offsets[id + 1] - _offsets[id]) - inDegrees[id], id);
+        }
+        return sortByKey(keys, size, new int[size], 0);
+    }
+
+    /**
+     * Returns the nodes in NodeOrder.CHILD_ORDER order.
+     *
+     * @return An array whose i-th cell is the id of the node which gets id i.
+     */
+    private int[] childOrder() {
+        int size = _nodes.length;
+        int[] rank = (_childOrder == null) ? new int[size] : rankNodes(_nodes, _ids, _childOrder);
+        long[] keys = new long[size];
+        for (int id = 0; id < size; id++) {
+            keys[id] = key(rank[id], id);
+        }
+        return sortByKey(keys, size, new int[size], 0);
+    }
+
+    /**
+     * Returns the id a node had before the graph was relabeled.
+     *
+     * @requires 0 <= id < size()
+     * @return The id of the node whose id is id in the graph this one was
+     *         relabeled from (following all relabelings back to the first
+     *         graph), or id itself if it was never relabeled.
+     */
+    public int originalId(int id) {
+        return (_originalIds == null) ? id : _originalIds[id];
+    }
+
+    /**
+     * Returns the order the children of every node are sorted by.
+     *
+     * @return The order the children are sorted by, or null if they are kept
+     *         in no particular order.
+     */
+    public Comparator<? super N> getChildOrder() {
+        return _childOrder;
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return The number of nodes in the graph.
+     */
+    public int size() {
+        return _nodes.length;
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return The number of edges in the graph.
+     */
+    public int edgeCount() {
+        return _targets.length;
+    }
+
+    /**
+     * Returns the id of a given node.
+     *
+     * @requires A valid node of type N.
+     * @return The id of n, or -1 if n is not in the graph.
+     */
+    public int indexOf(N n) {
+        Integer id = (n == null) ? null : _ids.get(n);
+        return ((id == null) || (id >= _nodes.length)) ? -1 : id;
+    }
+
+    /**
+     * Returns the node with a given id.
+     *
+     * @requires 0 <= id < size()
+     * @return The node whose id is id.
+     */
+    @SuppressWarnings("unchecked")
+    public N getNode(int id) {
+        return (N)_nodes[id];
+    }
+
+    /**
+     * Returns the number of children of a given node.
+     *
+     * @requires 0 <= id < size()
+     * @return The number of children of the node whose id is id.
+     */
+    public int childCount(int id) {
+        return _offsets[id + 1] - _offsets[id];
+    }
+
+    /**
+     * Returns the id of a child of a given node.
+     *
+     * @requires 0 <= id < size() && 0 <= k < childCount(id)
+     * @return The id of the k-th child of the node whose id is id.
+     */
+    public int childAt(int id, int k) {
+        return _targets[_offsets[id] + k];
+    }
+
+    /**
+     * Returns a set of all existing nodes in the graph.
+     *
+     * @return An unmodifiable set containing all nodes in the graph, in
+     *         increasing id order.
+     */
+    public Set<N> getNodes() {
+        return new AbstractSet<N>() {
+            public Iterator<N> iterator() {
+                return new Iterator<N>() {
+                    private int _id = 0;
+
+                    public boolean hasNext() {
+                        return _id < _nodes.length;
+                    }
+
+                    public N next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return getNode(_id++);
+                    }
+                };
+            }
+
+            public int size() {
+                return _nodes.length;
+            }
+
+            @SuppressWarnings("unchecked")
+            public boolean contains(Object o) {
+                return nodeInGraph((N)o);
+            }
+        };
+    }
+
+    /**
+     * Returns all the children of a given node.
+     *
+     * @requires A valid node of type N.
+     * @return An unmodifiable list containing all the children of node n, or
+     *         null if n is not in the graph.
+     */
+    public List<N> getChildren(N n) {
+        final int id = indexOf(n);
+        if (id < 0) {
+            return null;
+        }
+        return new AbstractList<N>() {
+            public N get(int k) {
+                if (k < 0 || k >= childCount(id)) {
+                    throw new IndexOutOfBoundsException("Index: " + k);
+                }
+                return getNode(childAt(id, k));
+            }
+
+            public int size() {
+                return childCount(id);
+            }
+        };
+    }
+
+    /**
+     * Checks if a given node is in the graph.
+     *
+     * @requires A valid node of type N.
+     * @return true if n exists in the graph, false if it doesn't.
+     */
+    public boolean nodeInGraph(N n) {
+        return indexOf(n) >= 0;
+    }
+
+    /**
+     * Returns the reachability index of the graph, building it on the first
+     * call.
+     *
+     * @effects Builds a ReachabilityIndex for the graph, in time linear in its
+     *          size, if it wasn't built yet.
+     * @return The reachability index of the graph.
+     */
+    public ReachabilityIndex<N> buildReachabilityIndex() {
+        ReachabilityIndex<N> reachability = _reachability;
+        if (reachability == null) {
+            // two threads may build it at the same time, and both are correct
+            reachability = new ReachabilityIndex<N>(this);
+            _reachability = reachability;
+        }
+        return reachability;
+    }
+
+    /**
+     * Returns the reachability index of the graph, if it was built.
+     *
+     * @return The reachability index of the graph, or null if
+     *         buildReachabilityIndex() was not called yet.
+     */
+    public ReachabilityIndex<N> getReachabilityIndex() {
+        return _reachability;
+    }
+
+    /**
+     * Checks if there can be a path between two nodes, using the reachability
+     * index of the graph if it was built.
+     *
+     * @requires Valid nodes from and to.
+     * @return false if the reachability index was built, and shows that there
+     *         is no path from from to to. true otherwise.
+     */
+    public boolean mayReach(N from, N to) {
+        ReachabilityIndex<N> reachability = _reachability;
+        return (reachability == null) || reachability.mayReach(from, to);
+    }
+}
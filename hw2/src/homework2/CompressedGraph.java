@@ -0,0 +1,305 @@
+package homework2;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/***
+ * CompressedGraph is an immutable copy of a CompactGraph, whose edges take
+ * one or two bytes each instead of four, for large sparse graphs whose
+ * children have ids close to each other and to their parent (as after
+ * CompactGraph.relabel).
+ * <p>
+ * The children of all nodes are kept in one byte array. A row holds the number
+ * of children, and then the gap from each child to the one before it (for
+ * the first child, to the node itself), in the child order of the graph.
+ * Gaps are signed, since the child order need not follow the ids, so they
+ * are zigzag encoded (0, -1, 1, -2, ... become 0, 1, 2, 3, ...) and written
+ * as varints: 7 bits per byte, least significant first, with the high bit set
+ * on all bytes but the last.
+ * When the children are sorted by id, all gaps but the first are positive,
+ * as in the usual gap encoding.
+ * <p>
+ * The gaps are only small if the children are in increasing id order, and
+ * have ids close to each other. The rows keep the child order of the graph,
+ * which the searches depend on (e.g. DfsAlgorithm.VISIT_ORDER), so the ids of
+ * a frozen graph, which follow the order the nodes were added in, give large
+ * gaps of both signs, and save little. Relabeling the graph first (see
+ * CompactGraph.relabel) makes the gaps small: NodeOrder.CHILD_ORDER numbers
+ * the nodes in the child order, so every row is sorted by id, and the orders
+ * which keep neighbors close (BFS, REVERSE_CUTHILL_MCKEE) make them short.
+ * <p>
+ * The start of every row is found through a two level index, which takes
+ * about 2 bytes per node instead of 4: the position of the first row of every
+ * block of 64 nodes, and the position of every row relative to it, in 16
+ * bits. The rows of a block which take more than 64 KB are rare, and have
+ * their positions kept in full in another array.
+ * <p>
+ * Reading the k-th child of a node decodes the k children before it, so the
+ * children are meant to be read in order, with childCursor and nextChild, as
+ * DfsAlgorithm and DijkstraAlgorithm do. The rows of all nodes must fit in
+ * one array, of up to 2^31 - 1 bytes.
+ * <p>
+ * A CompressedGraph can be shared between threads.
+ */
+
+/*
+ * Representation invariant:
+ * _nodes.length == _ids.size() == _rowOffsets.length, and _blockOffsets.length is the
+ * number of blocks of BLOCK_SIZE nodes that hold them.
+ * _ids maps _nodes[i] to i, for every 0 <= i < _nodes.length.
+ * The row of node i starts at rowStart(i): _blockOffsets[b] + _rowOffsets[i] if
+ * _blockOffsets[b] >= 0, where b is the block of i, or _largeOffsets[-1 - _blockOffsets[b]
+ * + (i & BLOCK_MASK)] otherwise. rowStart(0) == 0, and rowStart is increasing.
+ * _data[rowStart(i) .. rowStart(i + 1)) is the row of node i (up to _data.length for the
+ * last node), as described above, and every child id it decodes to is in the range
+ * [0, _nodes.length).
+ */
+public class CompressedGraph<N> implements IndexedGraph<N> {
+
+    private static final int BLOCK_BITS = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final Object[]              _nodes;
+    private final HashMap<N, Integer>   _ids;
+    private final long[]                _blockOffsets;
+    private final char[]                _rowOffsets;
+    private final int[]                 _largeOffsets;
+    private final byte[]                _data;
+    private final int                   _edgeCount;
+    private final Comparator<? super N> _childOrder;
+
+    private void checkRep() {
+        assert (_rowOffsets.length == _nodes.length) : "Offsets don't match the number of nodes";
+        assert (_blockOffsets.length == (_nodes.length + BLOCK_MASK) >>> BLOCK_BITS) : "Blocks don't match the number of nodes";
+        assert ((_nodes.length == 0) || (rowStart(_nodes.length - 1) < _data.length)) : "Offsets don't match the rows";
+    }
+
+    /**
+     * Creates a CompressedGraph holding the nodes and edges of a given
+     * compact graph.
+     *
+     * @requires A valid compact graph.
+     * @effects Constructs a new CompressedGraph with the same nodes, ids and
+     *          edges as graph, whose children are in the same order.
+     * @throws IllegalArgumentException if the rows of graph don't fit in one
+     *         array.
+     */
+    public CompressedGraph(CompactGraph<N> graph) {
+        int size = graph.size();
+        _nodes = new Object[size];
+        _ids = new HashMap<N, Integer>(size * 4 / 3 + 1);
+        _blockOffsets = new long[(size + BLOCK_MASK) >>> BLOCK_BITS];
+        _rowOffsets = new char[size];
+        int[] largeOffsets = new int[0];
+        int largeCount = 0;
+        int[] blockRows = new int[BLOCK_SIZE];
+        _edgeCount = graph.edgeCount();
+        _childOrder = graph.getChildOrder();
+
+        // most gaps take one or two bytes: start from there, and grow if needed
+        byte[] data = new byte[(int)Math.min(Math.max(16, size + 2L * _edgeCount), Integer.MAX_VALUE - 8)];
+        long pos = 0;
+        for (int id = 0; id < size; id++) {
+            _nodes[id] = graph.getNode(id);
+            _ids.put(graph.getNode(id), id);
+            blockRows[id & BLOCK_MASK] = (int)pos;
+            int count = graph.childCount(id);
+            // at most 5 bytes for the count, and for every gap
+            long rowBytes = 5L * (count + 1);
+            if (pos + rowBytes > data.length) {
+                long capacity = Math.max(pos + rowBytes, 2L * data.length);
+                if (pos + rowBytes > Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException("Graph is too large to compress in one array");
+                }
+                data = Arrays.copyOf(data, (int)Math.min(capacity, Integer.MAX_VALUE - 8));
+            }
+            pos = writeVarint(data, (int)pos, count);
+            int previous = id;
+            for (int k = 0; k < count; k++) {
+                int child = graph.childAt(id, k);
+                int gap = child - previous;
+                pos = writeVarint(data, (int)pos, (gap << 1) ^ (gap >> 31));
+                previous = child;
+            }
+            if (((id & BLOCK_MASK) == BLOCK_MASK) || (id == size - 1)) {
+                // index the rows of the block, relative to its first row if they fit in 16 bits
+                int block = id >>> BLOCK_BITS;
+                int rows = (id & BLOCK_MASK) + 1;
+                if (blockRows[rows - 1] - blockRows[0] <= Character.MAX_VALUE) {
+                    _blockOffsets[block] = blockRows[0];
+                    for (int k = 0; k < rows; k++) {
+                        _rowOffsets[(block << BLOCK_BITS) + k] = (char)(blockRows[k] - blockRows[0]);
+                    }
+                } else {
+                    if (largeCount + rows > largeOffsets.length) {
+                        largeOffsets = Arrays.copyOf(largeOffsets, Math.max(largeCount + rows, 2 * largeOffsets.length));
+                    }
+                    _blockOffsets[block] = -1 - largeCount;
+                    System.arraycopy(blockRows, 0, largeOffsets, largeCount, rows);
+                    largeCount += rows;
+                }
+            }
+        }
+        _largeOffsets = Arrays.copyOf(largeOffsets, largeCount);
+        _data = Arrays.copyOf(data, (int)pos);
+        checkRep();
+    }
+
+    /**
+     * Writes an int, taken as unsigned, as a varint.
+     *
+     * @return The position after the varint.
+     */
+    private static int writeVarint(byte[] data, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[pos++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[pos++] = (byte)value;
+        return pos;
+    }
+
+    /**
+     * Returns the position of the row of a node in _data.
+     *
+     * @requires 0 <= id < size()
+     */
+    private int rowStart(int id) {
+        long base = _blockOffsets[id >>> BLOCK_BITS];
+        return (base >= 0) ? (int)base + _rowOffsets[id] : _largeOffsets[(int)(-1 - base) + (id & BLOCK_MASK)];
+    }
+
+    /**
+     * Returns the number of bytes the edges take: the rows and their index.
+     *
+     * @return The size of the arrays holding the edges, in bytes, which is
+     *         4 * (size() + 1) + 4 * edgeCount() in a CompactGraph.
+     */
+    public long adjacencyBytes() {
+        return 8L * _blockOffsets.length + 2L * _rowOffsets.length + 4L * _largeOffsets.length + _data.length;
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return The number of nodes in the graph.
+     */
+    public int size() {
+        return _nodes.length;
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return The number of edges in the graph.
+     */
+    public int edgeCount() {
+        return _edgeCount;
+    }
+
+    /**
+     * Returns the id of a given node.
+     *
+     * @requires A valid node of type N.
+     * @return The id of n, or -1 if n is not in the graph.
+     */
+    public int indexOf(N n) {
+        Integer id = _ids.get(n);
+        return (id == null) ? -1 : id;
+    }
+
+    /**
+     * Returns the node with a given id.
+     *
+     * @requires 0 <= id < size()
+     * @return The node whose id is id.
+     */
+    @SuppressWarnings("unchecked")
+    public N getNode(int id) {
+        return (N)_nodes[id];
+    }
+
+    /**
+     * Returns the number of children of a given node.
+     *
+     * @requires 0 <= id < size()
+     * @return The number of children of the node whose id is id.
+     */
+    public int childCount(int id) {
+        int pos = rowStart(id);
+        int b = _data[pos++];
+        if (b >= 0) {
+            return b;
+        }
+        int value = b & 0x7F;
+        for (int shift = 7;; shift += 7) {
+            b = _data[pos++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the id of a child of a given node. This decodes the children
+     * before it: use childCursor and nextChild to read all children.
+     *
+     * @requires 0 <= id < size() && 0 <= k < childCount(id)
+     * @return The id of the k-th child of the node whose id is id.
+     */
+    public int childAt(int id, int k) {
+        long cursor = childCursor(id);
+        for (int i = 0; i <= k; i++) {
+            cursor = nextChild(id, cursor);
+        }
+        return IndexedGraph.cursorChild(cursor);
+    }
+
+    /**
+     * Starts reading the children of a node one after the other.
+     *
+     * @requires 0 <= id < size()
+     * @return A cursor before the first child of the node whose id is id:
+     *         the position of its first gap, and the id gaps start from.
+     */
+    public long childCursor(int id) {
+        int pos = rowStart(id);
+        while (_data[pos++] < 0) {
+            // skip the count
+        }
+        return ((long)pos << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reads the next child of a node, by decoding its gap.
+     *
+     * @requires 0 <= id < size(), cursor was returned for id by childCursor or
+     *           nextChild, and fewer than childCount(id) children were read
+     *           from it.
+     * @return The cursor after the next child, whose id is
+     *         IndexedGraph.cursorChild(the returned cursor).
+     */
+    public long nextChild(int id, long cursor) {
+        int pos = (int)(cursor >>> 32);
+        int b = _data[pos++];
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = _data[pos++];
+            value |= (b & 0x7F) << shift;
+        }
+        int child = (int)cursor + ((value >>> 1) ^ -(value & 1));
+        return ((long)pos << 32) | (child & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the order the children of every node are sorted by.
+     *
+     * @return The child order of the graph this one was compressed from.
+     */
+    public Comparator<? super N> getChildOrder() {
+        return _childOrder;
+    }
+}
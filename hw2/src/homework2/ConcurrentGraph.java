@@ -0,0 +1,349 @@
+package homework2;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * ConcurrentGraph is a directed graph with the same operations as Graph, which
+ * can be used by many threads at the same time: some may add nodes and edges
+ * while others list nodes and children, or search the graph through compact
+ * copies of it (see freeze()). Nodes and edges can only be added, never
+ * removed.
+ * <p>
+ * The nodes are the keys of a ConcurrentHashMap. The children of a node are
+ * kept in an array which is never modified: adding a child copies the array
+ * and installs the copy with a compare-and-set, so readers never lock. A node
+ * with more than SMALL_LIMIT children (a hub) keeps them in a concurrent set
+ * instead, so adding an edge costs the same however many children it has.
+ * Since writers to different nodes touch different objects, adding edges
+ * scales with the number of writer threads.
+ * <p>
+ * Iteration is weakly consistent, as in the java.util.concurrent collections:
+ * an iterator of getNodes() or getChildren(n) never throws
+ * ConcurrentModificationException, returns every element at most once, and
+ * returns all elements that were added before it was created, and possibly
+ * some that were added later.
+ */
+
+/*
+ * Representation invariant:
+ * No two equal elements as two separate keys in _nodes - this constraint is enforced by the container (ConcurrentHashMap).
+ * Keys are not null in _nodes.
+ * The items of every Children object are either an Object[] of at most SMALL_LIMIT
+ * children, with no two equal elements - this constraint is enforced by Children.add,
+ * or a concurrent set of children. Once a set, they are never replaced again.
+ * Every child is also a key in _nodes.
+ *
+ * As in Graph, every mutation checks only the entries it touched (checkNode, checkEdge),
+ * and checkRep() verifies the whole graph on demand.
+ */
+public class ConcurrentGraph<N> implements Traversable<N> {
+
+    /**
+     * The largest number of children kept in an array and not in a set.
+     */
+    static final int SMALL_LIMIT = 16;
+
+    /**
+     * The children of one node. items is replaced as a whole, never modified.
+     */
+    private static final class Children<N> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Children, Object> ITEMS =
+                AtomicReferenceFieldUpdater.newUpdater(Children.class, Object.class, "items");
+
+        private static final Object[] EMPTY = new Object[0];
+
+        volatile Object items = EMPTY;
+
+        /**
+         * Adds a child.
+         *
+         * @return true if child was added, false if it was already a child.
+         */
+        @SuppressWarnings("unchecked")
+        boolean add(N child) {
+            while (true) {
+                Object current = items;
+                if (current instanceof Set) {
+                    return ((Set<N>)current).add(child);
+                }
+                Object[] array = (Object[])current;
+                for (Object n : array) {
+                    if (n.equals(child)) {
+                        return false;
+                    }
+                }
+                Object next;
+                if (array.length < SMALL_LIMIT) {
+                    Object[] copy = Arrays.copyOf(array, array.length + 1);
+                    copy[array.length] = child;
+                    next = copy;
+                } else {
+                    Set<N> hub = ConcurrentHashMap.newKeySet(4 * SMALL_LIMIT);
+                    for (Object n : array) {
+                        hub.add((N)n);
+                    }
+                    hub.add(child);
+                    next = hub;
+                }
+                if (ITEMS.compareAndSet(this, current, next)) {
+                    return true;
+                }
+                // another writer changed the children first: try again
+            }
+        }
+
+        boolean contains(Object child) {
+            Object current = items;
+            if (current instanceof Set) {
+                return ((Set<?>)current).contains(child);
+            }
+            for (Object n : (Object[])current) {
+                if (n.equals(child)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int size() {
+            Object current = items;
+            return (current instanceof Set) ? ((Set<?>)current).size() : ((Object[])current).length;
+        }
+
+        @SuppressWarnings("unchecked")
+        Iterator<N> iterator() {
+            Object current = items;
+            if (current instanceof Set) {
+                return Collections.unmodifiableSet((Set<N>)current).iterator();
+            }
+            // the array is never modified, so iterating over it is safe
+            return (Iterator<N>)Arrays.asList((Object[])current).iterator();
+        }
+    }
+
+    private final ConcurrentHashMap<N, Children<N>> _nodes;
+    private final LongAdder                         _modifications;
+    private CompactGraph<N>                         _frozen;
+    private long                                    _frozenVersion;
+    private volatile boolean                        _incomparable;
+
+    /**
+     * Checks the representation invariant over the whole graph.
+     * This takes time linear in the size of the graph, so it is not called by
+     * the graph's operations. Edges added while it runs may or may not be
+     * checked.
+     *
+     * @effects Fails an assertion if the representation invariant doesn't hold
+     *          (when assertions are enabled).
+     */
+    public void checkRep() {
+        for (N n : _nodes.keySet()) {
+            assert (n != null) : "Found null node in graph";
+            Iterator<N> it = _nodes.get(n).iterator();
+            while (it.hasNext()) {
+                N child = it.next();
+                assert (child != null) : "Found null node as node's child";
+                assert (_nodes.containsKey(child)) : "Found node's child which is not in graph";
+            }
+        }
+    }
+
+    private void checkNode(N n) {
+        assert (n != null) : "Found null node in graph";
+        assert (_nodes.containsKey(n)) : "Node is missing from graph";
+    }
+
+    private void checkEdge(N n1, N n2) {
+        checkNode(n1);
+        assert (n2 != null) : "Found null node as node's child";
+        assert (_nodes.containsKey(n2)) : "Found node's child which is not in graph";
+        assert (_nodes.get(n1).contains(n2)) : "Edge is missing from graph";
+    }
+
+    /**
+     * Creates an empty graph.
+     *
+     * @effects Constructs a new empty graph.
+     */
+    public ConcurrentGraph() {
+        _nodes = new ConcurrentHashMap<N, Children<N>>();
+        _modifications = new LongAdder();
+        _frozen = null;
+        _frozenVersion = 0;
+        _incomparable = false;
+    }
+
+    /**
+     * Adds a node to the graph. The node is not connected to any other nodes
+     * yet. May be called by several threads at the same time.
+     *
+     * @requires A valid node of type N (the graph's declared node type).
+     * @effects Adds the given node to the graph, if it does not already exists
+     *          in the graph.
+     * @return 0 if node was successfully added, 1 if the node already exists
+     *         in the graph.
+     */
+    public int addNode(N n) {
+        if (!(n instanceof Comparable)) {
+            // before the node is visible, so freeze() never sorts it as Comparable
+            _incomparable = true;
+        }
+        if (_nodes.putIfAbsent(n, new Children<N>()) == null) {
+            _modifications.increment();
+            checkNode(n);
+            return 0;
+        }
+        return 1;
+    }
+
+    /**
+     * Adds an edge to the graph, directed from n1 to n2. May be called by
+     * several threads at the same time.
+     *
+     * @requires Two valid nodes, and both n1 and n2 are in the graph.
+     * @effects Connects n1 to n2, if there is no edge between them, in this
+     *          direction, already.
+     * @return 0 if the edge was successfully added, 1 if the edge already
+     *         exists in the graph.
+     */
+    public int addEdge(N n1, N n2) {
+        if (!_nodes.get(n1).add(n2)) {
+            return 1;
+        }
+        _modifications.increment();
+        checkEdge(n1, n2);
+        return 0;
+    }
+
+    /**
+     * Returns the modification version of the graph.
+     *
+     * @return A number which starts at 0 for a new graph, and grows by one
+     *         every time a node or an edge is successfully added to it. It
+     *         never decreases, but while nodes or edges are being added by
+     *         other threads, it may not count all of them yet.
+     */
+    public long getVersion() {
+        return _modifications.sum();
+    }
+
+    /**
+     * Returns a set of all existing nodes in the graph.
+     *
+     * @return An unmodifiable, weakly consistent view of the set of all nodes
+     *         in the graph.
+     */
+    public Set<N> getNodes() {
+        return Collections.unmodifiableSet(_nodes.keySet());
+    }
+
+    /**
+     * Returns a set of all the children of a given node.
+     *
+     * @requires A valid node of type N.
+     * @return An unmodifiable, weakly consistent view of the set of all the
+     *         children of node n, or null if n is not in the graph.
+     */
+    public Set<N> getChildren(N n) {
+        final Children<N> children = _nodes.get(n);
+        if (children == null) {
+            return null;
+        }
+        return new AbstractSet<N>() {
+            public Iterator<N> iterator() {
+                final Iterator<N> it = children.iterator();
+                return new Iterator<N>() {
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    public N next() {
+                        if (!it.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return it.next();
+                    }
+                };
+            }
+
+            public int size() {
+                return children.size();
+            }
+
+            public boolean contains(Object o) {
+                return children.contains(o);
+            }
+        };
+    }
+
+    /**
+     * Checks if a given node is already in the graph.
+     *
+     * @requires A valid node of type N.
+     * @return true if n exists in the graph, false if it doesn't.
+     */
+    public boolean nodeInGraph(N n) {
+        return _nodes.containsKey(n);
+    }
+
+    /**
+     * Returns an immutable compact copy of the graph, which can be searched by
+     * DfsAlgorithm, PathFinder and the other algorithms. See CompactGraph.
+     *
+     * @effects Builds a new CompactGraph if the graph was modified since the
+     *          last call, otherwise reuses the one built by that call.
+     * @return A CompactGraph holding all nodes and edges added before the call
+     *         started, and possibly some that were added during it, whose
+     *         children are sorted in descending order if the nodes are
+     *         Comparable.
+     */
+    public CompactGraph<N> freeze() {
+        return freeze(CompactGraph.<N>defaultChildOrder(!_incomparable));
+    }
+
+    /**
+     * Returns an immutable compact copy of the graph, with the children of
+     * every node sorted by a given order.
+     *
+     * @requires A valid comparator of the nodes in the graph, or null.
+     * @effects Builds a new CompactGraph if the graph was modified since the
+     *          last call, or if that call asked for another order. Otherwise
+     *          reuses the one built by that call.
+     * @return A CompactGraph holding all nodes and edges added before the call
+     *         started, and possibly some that were added during it, whose
+     *         children are sorted by childOrder.
+     */
+    public CompactGraph<N> freeze(Comparator<? super N> childOrder) {
+        // read the version first: edges added while building are counted
+        // after it, so they make the next call build again
+        long version = getVersion();
+        synchronized (this) {
+            if ((_frozen != null) && (_frozenVersion == version)) {
+                if (childOrder != null) {
+                    // only the order may have changed: re-sort, keeping the ids
+                    _frozen = _frozen.sortChildren(childOrder);
+                    return _frozen;
+                }
+                if (_frozen.getChildOrder() == null) {
+                    return _frozen;
+                }
+            }
+        }
+        CompactGraph<N> frozen = CompactGraph.snapshot(_nodes.keySet(), n -> getChildren(n), childOrder);
+        synchronized (this) {
+            _frozen = frozen;
+            _frozenVersion = version;
+        }
+        return frozen;
+    }
+}
@@ -1,180 +1,574 @@
 package homework2;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.PriorityQueue;
-import java.util.Set;
+import java.util.Comparator;
 
 /***
  * DfsAlgorithm is a class intended to run the DFS algorithm on a given graph
  * and a source node. A destination node is optionally provided. More
  * information on DFS (Depth First Search) can be found here:
  * https://en.wikipedia.org/wiki/Depth-first_search
+ * <p>
+ * The state of a run (the visit stamp and back edges of every node) is kept
+ * by the DfsAlgorithm object, indexed by the ids of the nodes in the compact
+ * graph, and not by the nodes themselves. Therefore several DfsAlgorithm objects can
+ * run at the same time on the same graph, as long as it is not modified.
+ * A single DfsAlgorithm object should not be used by more than one thread.
+ * <p>
+ * A run may also be given several end nodes (see runToAll). It then goes on
+ * until all of them are visited, and records for each of them the path that
+ * a run to that end node alone would have found, so a single traversal
+ * answers the queries of all of them.
  */
 
 public class DfsAlgorithm {
-    private Graph<WeightedNode>      _graph;
-    private LinkedList<WeightedNode> _visited;
-    private NodeCountingPath         _currentPath;
+    /**
+     * The order in which the children of a node are visited: the order in
+     * which a reverse-ordered PriorityQueue of them would poll them.
+     */
+    static final Comparator<WeightedNode> VISIT_ORDER = Collections.reverseOrder();
+
+    private Graph<WeightedNode>        _source;
+    private Traversable<WeightedNode>  _traversable;
+    private boolean                    _reversed;
+    private IndexedGraph<WeightedNode> _graph;
+    private int[]                      _visitStamps;
+    private int                        _epoch;
+    private int[]                      _visitOrder;
+    private int                        _visitCount;
+    private int[]                      _visitPositions;
+    private int[]                      _visitLogSizes;
+    private int[]                      _targetStamps;
+    private int                        _remainingTargets;
+    private int                        _maxCost;
+    private WeightedNode               _strayStart;
+    private int[]                      _backEdges;
+    private int[]                      _backEdgeLog;
+    private int                        _logSize;
+    private int[]                      _stackNodes;
+    private int[]                      _stackCursors;
+    private long[]                     _stackReaders;
+    private int                        _depth;
 
     /**
      * Creates a DfsAlgorithm object, for a given graph.
      * 
      * @requires A valid graph.
-     * @effects Constructs a new empty DfsAlgorithm object.
+     * @effects Constructs a new empty DfsAlgorithm object. Each run traverses
+     *          the graph as it is when the run starts.
      */
     public DfsAlgorithm(Graph<WeightedNode> graph) {
+        this(graph, false);
+    }
+
+    /**
+     * Creates a DfsAlgorithm object, for a given graph or for its reverse.
+     * 
+     * @requires A valid graph.
+     * @effects Constructs a new empty DfsAlgorithm object. Each run traverses
+     *          the graph as it is when the run starts, or, if reversed is
+     *          true, its reverse (see CompactGraph.reverse()), going from every
+     *          node to its parents.
+     */
+    public DfsAlgorithm(Graph<WeightedNode> graph, boolean reversed) {
+        this._source = graph;
+        this._traversable = null;
+        this._reversed = reversed;
+        this._graph = null;
+        this._visitStamps = null;
+        this._backEdges = null;
+        this.initStacks();
+    }
+
+    /**
+     * Creates a DfsAlgorithm object, for a given compact graph.
+     * 
+     * @requires A valid compact graph.
+     * @effects Constructs a new empty DfsAlgorithm object. If the children in
+     *          graph are not sorted in VISIT_ORDER, a sorted copy of it is
+     *          made once, here.
+     */
+    public DfsAlgorithm(CompactGraph<WeightedNode> graph) {
+        this._source = null;
+        this._traversable = null;
+        this._reversed = false;
+        this._graph = graph.sortChildren(VISIT_ORDER);
+        this._visitStamps = null;
+        this._backEdges = null;
+        this.initStacks();
+    }
+
+    /**
+     * Creates a DfsAlgorithm object, for a given indexed graph, such as a
+     * MappedGraph, whose children are already sorted in VISIT_ORDER.
+     * 
+     * @requires A valid indexed graph.
+     * @effects Constructs a new empty DfsAlgorithm object.
+     * @throws IllegalArgumentException if the children in graph are not
+     *         sorted in VISIT_ORDER.
+     */
+    public DfsAlgorithm(IndexedGraph<WeightedNode> graph) {
+        if (!VISIT_ORDER.equals(graph.getChildOrder())) {
+            throw new IllegalArgumentException("The children of the graph are not sorted in VISIT_ORDER");
+        }
+        this._source = null;
+        this._traversable = null;
+        this._reversed = false;
         this._graph = graph;
-        this._visited = new LinkedList<WeightedNode>();
-        this._currentPath = null;
+        this._visitStamps = null;
+        this._backEdges = null;
+        this.initStacks();
+    }
+
+    /**
+     * Creates a DfsAlgorithm object, for a given traversable graph, such as a
+     * LazyGraph. A run explores the graph from its start node, and asks for
+     * the children of a node only once it visits the node, so it pays only
+     * for the part of the graph it reaches.
+     * 
+     * @requires A valid graph.
+     * @effects Constructs a new empty DfsAlgorithm object. Each run traverses
+     *          the graph as it is when the run starts.
+     */
+    public DfsAlgorithm(Traversable<WeightedNode> graph) {
+        this._source = null;
+        this._traversable = graph;
+        this._reversed = false;
+        this._graph = null;
+        this._visitStamps = null;
+        this._backEdges = null;
+        this.initStacks();
+    }
+
+    private void initStacks() {
+        this._stackNodes = new int[16];
+        this._stackCursors = new int[16];
+        this._stackReaders = new long[16];
+        this._depth = 0;
+        this._backEdgeLog = new int[16];
+        this._logSize = 0;
     }
 
     /**
-     * Colors all nodes in the graph with a given color.
+     * Returns the indexed form of the graph this DfsAlgorithm runs on.
      * 
-     * @requires A valid color, i.e. 'White', 'Grey', or 'Black'.
-     * @effects Sets the given color for all nodes in DfsAlgorithm's graph.
+     * @return The given compact or indexed graph, a compact copy of the
+     *         given graph (or of its reverse) that is up to date with its last
+     *         modification, or a new ExploredGraph of the given traversable
+     *         graph.
      */
-    public void colorAll(String color) {
-        Set<WeightedNode> graphNodes = this._graph.getNodes();
-        for (WeightedNode node : graphNodes) {
-            node.setColor(color);
+    private IndexedGraph<WeightedNode> compactGraph() {
+        if (this._traversable != null) {
+            return new ExploredGraph<WeightedNode>(this._traversable, VISIT_ORDER);
         }
+        if (this._source == null) {
+            return this._graph;
+        }
+        CompactGraph<WeightedNode> graph = this._source.freeze(VISIT_ORDER);
+        return this._reversed ? graph.reverse() : graph;
     }
 
     /**
-     * Zeroes back edges property for all nodes in the graph.
+     * Prepares the traversal state for a new run, on the up to date graph.
+     * <p>
+     * A node is visited by the current run iff its visit stamp equals the
+     * current epoch, and its back edges and visit position are only
+     * meaningful when it is visited. Similarly, a node is an end node of the
+     * current run iff its target stamp equals the current epoch. Starting a
+     * new run is therefore done by advancing the epoch, without touching the
+     * state of any node.
      * 
-     * @effects Sets the back edges property zero for all nodes in
-     *          DfsAlgorithm's graph.
+     * @effects Forgets all nodes visited by the previous run.
      */
-    public void zeroBackEdges() {
-        Set<WeightedNode> graphNodes = this._graph.getNodes();
-        for (WeightedNode node : graphNodes) {
-            node.setBackEdges(0);
+    private void resetState() {
+        this._graph = this.compactGraph();
+        // the ids of a graph are kept by its later compact copies, and the
+        // stamps of an older epoch mean nothing, so the arrays are only grown
+        if ((this._visitStamps == null) || (this._visitStamps.length < this._graph.size())) {
+            this._visitStamps = new int[this._graph.size()];
+            this._targetStamps = new int[this._graph.size()];
+            this._backEdges = new int[this._graph.size()];
+            this._visitOrder = new int[Math.max(16, this._graph.size())];
+            this._visitPositions = new int[this._graph.size()];
+            this._visitLogSizes = new int[this._graph.size()];
+            this._epoch = 0;
+        }
+        if (this._epoch == Integer.MAX_VALUE) {
+            Arrays.fill(this._visitStamps, 0);
+            Arrays.fill(this._targetStamps, 0);
+            this._epoch = 0;
         }
+        this._epoch++;
+        this._visitCount = 0;
+        this._logSize = 0;
+        this._remainingTargets = 0;
+        this._maxCost = Integer.MAX_VALUE;
+        this._strayStart = null;
     }
 
     /**
-     * Recursive function run for given start node and end node.
+     * Checks if a node was visited by the current run.
+     * 
+     * @requires 0 <= id < _graph.size()
+     * @return true if the node whose id is id was visited, false otherwise.
+     */
+    private boolean isVisited(int id) {
+        return (id < this._visitStamps.length) && (this._visitStamps[id] == this._epoch);
+    }
+
+    /**
+     * Grows the traversal state to hold a given id. Only an ExploredGraph
+     * gives ids past the size it had when the run started.
+     * 
+     * @effects Makes the per node arrays longer than id, at least doubling
+     *          them, and keeps their contents.
+     */
+    private void growState(int id) {
+        int capacity = Math.max(id + 1, Math.max(16, 2 * this._visitStamps.length));
+        this._visitStamps = Arrays.copyOf(this._visitStamps, capacity);
+        this._targetStamps = Arrays.copyOf(this._targetStamps, capacity);
+        this._backEdges = Arrays.copyOf(this._backEdges, capacity);
+        this._visitOrder = Arrays.copyOf(this._visitOrder, Math.max(capacity, this._visitOrder.length));
+        this._visitPositions = Arrays.copyOf(this._visitPositions, capacity);
+        this._visitLogSizes = Arrays.copyOf(this._visitLogSizes, capacity);
+    }
+
+    /**
+     * Marks a node as an end node of the current run.
+     * 
+     * @requires A valid node or null.
+     * @effects If n is in the graph and is not marked yet, marks it, so that
+     *          the run goes on until it is visited.
+     */
+    private void addTarget(WeightedNode n) {
+        int id = (n == null) ? -1 : this._graph.indexOf(n);
+        if (id >= this._targetStamps.length) {
+            this.growState(id);
+        }
+        if ((id >= 0) && (this._targetStamps[id] != this._epoch)) {
+            this._targetStamps[id] = this._epoch;
+            this._remainingTargets++;
+        }
+    }
+
+    /**
+     * Runs the DFS algorithm for given start node and end node.
      * 
      * @requires A valid node start, and a valid node or null as the end
      *           argument.
+     * @effects Discards the state of the previous run, and records the nodes
+     *          visited by this run and their back edges.
      * @return if end != null -> true if end has been visited during this run,
      *         false if it hasn't. if end == null -> always false.
      */
     public boolean run(WeightedNode start, WeightedNode end) {
+        this.resetState();
 
-        _visited.add(start);
-
-        if (this._currentPath == null) {
-            this._currentPath = new NodeCountingPath(start);
-        } else {
-            this._currentPath = _currentPath.extend(start);
+        int startId = this._graph.indexOf(start);
+        if (startId < 0) {
+            // a node which is not in the graph has no children
+            this._strayStart = start;
+            return start.equals(end);
         }
+        this.addTarget(end);
 
-        PriorityQueue<WeightedNode> pq = new PriorityQueue<WeightedNode>(11, Collections.reverseOrder());
-        HashSet<WeightedNode> startChildren = this._graph.getChildren(start);
-        if (startChildren != null) {
-            for (WeightedNode child : startChildren) {
-                pq.add(child);
-            }
+        return this.traverse(startId);
+    }
+
+    /**
+     * Runs the DFS algorithm for given start node and a set of end nodes, in a
+     * single traversal.
+     * 
+     * @requires A valid node start, and a valid collection of nodes ends.
+     * @effects Discards the state of the previous run, and visits nodes from
+     *          start until all nodes of ends are visited, or until all nodes
+     *          reachable from start are visited. After it returns, costTo and
+     *          pathTo give, for every node of ends, the result
+     *          invokeAlgorithm(start, end) would have returned.
+     * @return true if at least one of ends has been visited during this run,
+     *         false otherwise.
+     */
+    public boolean runToAll(WeightedNode start, Collection<WeightedNode> ends) {
+        return this.runToAll(start, ends, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Runs the DFS algorithm for given start node and a set of end nodes, in a
+     * single traversal, looking only for paths whose cost is at most maxCost.
+     * <p>
+     * The cost of the path to a node (see costTo) is the number of nodes
+     * visited before it plus one, plus the number of back edges found before
+     * it. It only grows as the run goes on, so once the next node to be
+     * visited would cost more than maxCost, no node visited later can cost
+     * less, and the run stops.
+     * 
+     * @requires A valid node start, a valid collection of nodes ends, and
+     *           maxCost >= 1.
+     * @effects Discards the state of the previous run, and visits nodes from
+     *          start until all nodes of ends are visited, until all nodes
+     *          reachable from start are visited, or until the cost of the
+     *          path to the next node would be greater than maxCost. After it
+     *          returns, costTo and pathTo give, for every node of ends whose
+     *          path costs at most maxCost, the result
+     *          invokeAlgorithm(start, end) would have returned.
+     * @return true if at least one of ends has been visited during this run,
+     *         false otherwise.
+     */
+    public boolean runToAll(WeightedNode start, Collection<WeightedNode> ends, int maxCost) {
+        this.resetState();
+        this._maxCost = maxCost;
+
+        int startId = this._graph.indexOf(start);
+        if (startId < 0) {
+            // a node which is not in the graph has no children
+            this._strayStart = start;
+            return ends.contains(start);
         }
+        for (WeightedNode end : ends) {
+            this.addTarget(end);
+        }
+        int targets = this._remainingTargets;
 
-        start.setColor("Grey");
+        this.traverse(startId);
+        return this._remainingTargets < targets;
+    }
 
-        if (start.equals(end)) {
+    /**
+     * Visits nodes from a start node, in DFS order, until all end nodes of the
+     * current run are visited.
+     * <p>
+     * The algorithm is iterative: instead of recursing into every child, it
+     * keeps its own stack of frames, where a frame holds the id of a node on
+     * the current DFS path, the number of its children read so far, and a
+     * cursor into them (see IndexedGraph.nextChild). The children in the
+     * compact graph are already sorted in VISIT_ORDER, so they are taken one
+     * after the other, without allocating anything. The depth of
+     * the graph is not limited by the depth of the Java call stack.
+     * 
+     * @requires 0 <= startId < _graph.size(), and the state was reset.
+     * @return true if the run stopped since all its end nodes were visited
+     *         (there must be at least one), false if it visited every node
+     *         reachable from the start node, or stopped since the next node
+     *         would cost more than _maxCost.
+     */
+    private boolean traverse(int startId) {
+        this._depth = 0;
+        if (this.push(startId)) {
             return true;
         }
 
-        WeightedNode child = pq.poll();
-        while (child != null) {
-            if (!(this._visited.contains(child))) {
-                if (run(child, end) == true) {
-                    return true;
+        while (this._depth > 0) {
+            if (this._visitCount + 1 + this._logSize > this._maxCost) {
+                return false;
+            }
+            int top = this._depth - 1;
+            int nodeId = this._stackNodes[top];
+            if (this._stackCursors[top] < this._graph.childCount(nodeId)) {
+                this._stackCursors[top]++;
+                this._stackReaders[top] = this._graph.nextChild(nodeId, this._stackReaders[top]);
+                int childId = IndexedGraph.cursorChild(this._stackReaders[top]);
+                if (!(this.isVisited(childId))) {
+                    if (this.push(childId)) {
+                        return true;
+                    }
+                } else {
+                    this._backEdges[nodeId]++;
+                    if (this._logSize == this._backEdgeLog.length) {
+                        this._backEdgeLog = Arrays.copyOf(this._backEdgeLog, 2 * this._logSize);
+                    }
+                    this._backEdgeLog[this._logSize++] = nodeId;
                 }
             } else {
-                start.setBackEdges(start.getBackEdges() + 1);
+                this._depth--;
             }
-            child = pq.poll();
         }
 
-        start.setColor("Black");
+        return false;
+    }
+
+    /**
+     * Visits a node and pushes a new frame for it.
+     * 
+     * @requires 0 <= id < _graph.size()
+     * @effects Marks the node as visited, records its position in the visit
+     *          order and the number of back edges found so far, and pushes a
+     *          frame whose cursor points to its first child.
+     * @return true if this was the last end node of the run to be visited,
+     *         false otherwise.
+     */
+    private boolean push(int id) {
+        if (id >= this._visitStamps.length) {
+            this.growState(id);
+        }
+        this._visitStamps[id] = this._epoch;
+        this._visitPositions[id] = this._visitCount;
+        this._visitLogSizes[id] = this._logSize;
+        this._visitOrder[this._visitCount++] = id;
+        this._backEdges[id] = 0;
+
+        if (this._depth == this._stackNodes.length) {
+            int capacity = 2 * this._stackNodes.length;
+            this._stackNodes = Arrays.copyOf(this._stackNodes, capacity);
+            this._stackCursors = Arrays.copyOf(this._stackCursors, capacity);
+            this._stackReaders = Arrays.copyOf(this._stackReaders, capacity);
+        }
+        this._stackNodes[this._depth] = id;
+        this._stackCursors[this._depth] = 0;
+        this._stackReaders[this._depth] = this._graph.childCursor(id);
+        this._depth++;
 
+        if (this._targetStamps[id] == this._epoch) {
+            this._remainingTargets--;
+            return this._remainingTargets == 0;
+        }
         return false;
+    }
+
+    /**
+     * Returns the number of back edges found from a node during the last run.
+     * 
+     * @requires A valid node.
+     * @return The number of back edges counted for n by the last run, or zero
+     *         if n was not visited by it.
+     */
+    public int getBackEdges(WeightedNode n) {
+        int id = (this._graph == null) ? -1 : this._graph.indexOf(n);
+        if ((id < 0) || (this._visitStamps == null) || !(this.isVisited(id))) {
+            return 0;
+        }
+        return this._backEdges[id];
+    }
 
+    /**
+     * Returns the cost of the path from the start node of the last run to a
+     * given node.
+     * 
+     * @requires A valid node.
+     * @return The cost of the path invokeAlgorithm(start, end) would have
+     *         returned, where start is the start node of the last run, or -1
+     *         if end was not visited by the last run.
+     */
+    public int costTo(WeightedNode end) {
+        if (this._strayStart != null) {
+            return this._strayStart.equals(end) ? 1 : -1;
+        }
+        int id = (this._graph == null) ? -1 : this._graph.indexOf(end);
+        if ((id < 0) || (this._visitStamps == null) || !(this.isVisited(id))) {
+            return -1;
+        }
+        return this._visitPositions[id] + 1 + this._visitLogSizes[id];
     }
 
-    private NodeCountingPath recalcPath(NodeCountingPath ncp) {
+    /**
+     * Returns the path from the start node of the last run to a given node.
+     * 
+     * @requires A valid node.
+     * @return The path invokeAlgorithm(start, end) would have returned, where
+     *         start is the start node of the last run, or null if end was not
+     *         visited by the last run.
+     */
+    public NodeCountingPath pathTo(WeightedNode end) {
+        if (this.costTo(end) < 0) {
+            return null;
+        }
+        if (this._strayStart != null) {
+            return new NodeCountingPath(this._strayStart);
+        }
+        int endId = this._graph.indexOf(end);
+
+        // Count the back edges found before end was visited, using the
+        // entries of _backEdges of the nodes visited up to end, which are
+        // restored afterwards.
+        int last = this._visitPositions[endId];
+        int[] finalBackEdges = new int[last + 1];
+        for (int i = 0; i <= last; i++) {
+            int id = this._visitOrder[i];
+            finalBackEdges[i] = this._backEdges[id];
+            this._backEdges[id] = 0;
+        }
+        for (int k = 0; k < this._visitLogSizes[endId]; k++) {
+            this._backEdges[this._backEdgeLog[k]]++;
+        }
+
         NodeCountingPath retPath = null;
-        Iterator<WeightedNode> iter = ncp.iterator();
-        while (iter.hasNext()) {
+        for (int i = 0; i <= last; i++) {
+            int id = this._visitOrder[i];
             if (retPath == null) {
-                retPath = new NodeCountingPath(iter.next());
+                retPath = new NodeCountingPath(this._graph.getNode(id), this._backEdges[id]);
             } else {
-                retPath = retPath.extend(iter.next());
+                retPath = retPath.extend(this._graph.getNode(id), this._backEdges[id]);
             }
+            this._backEdges[id] = finalBackEdges[i];
         }
         return retPath;
     }
 
+    /**
+     * Builds the path of the nodes visited by the last run, in the order they
+     * were visited, with the back edges counted for each of them.
+     */
+    private NodeCountingPath visitedPath() {
+        if (this._strayStart != null) {
+            return new NodeCountingPath(this._strayStart);
+        }
+        NodeCountingPath retPath = null;
+        for (int i = 0; i < this._visitCount; i++) {
+            int id = this._visitOrder[i];
+            if (retPath == null) {
+                retPath = new NodeCountingPath(this._graph.getNode(id), this._backEdges[id]);
+            } else {
+                retPath = retPath.extend(this._graph.getNode(id), this._backEdges[id]);
+            }
+        }
+        return retPath;
+    }
+
+    /**
+     * Checks, without traversing the graph, if a run from a start node could
+     * visit an end node.
+     * 
+     * @requires Valid nodes start and end.
+     * @return false if the graph this DfsAlgorithm runs on can rule out a
+     *         path from start to end (a compact graph, by its reachability
+     *         index). true otherwise.
+     */
+    public boolean mayReach(WeightedNode start, WeightedNode end) {
+        return this.compactGraph().mayReach(start, end);
+    }
+
     /**
      * Invokes the DfsAlgorithm from the given start node to the given end node.
+     * <p>
+     * If the graph has a reachability index, which shows that there is no
+     * path from start to end, null is returned without traversing it, and the
+     * run visits no nodes.
      * 
      * @requires Two valid nodes in the graph, start and end.
-     * @effects All nodes in graph are colored white, all counts of backedges
-     *          are zero, current path is null, visited list is cleared
      * @return A node counting path from start to end using the DFS algorithm,
      *         or null if no such path was found.
      */
     public NodeCountingPath invokeAlgorithm(WeightedNode start, WeightedNode end) {
-        // Initially, all nodes should be colored white, current path and
-        // visited should be cleared (so next run begins a new path)
-        this.colorAll("White");
-        this.zeroBackEdges();
-        this._currentPath = null;
-        this._visited.clear();
-
+        if (!(this.mayReach(start, end))) {
+            this.resetState();
+            return null;
+        }
         if (this.run(start, end) == true) {
-            // Finally, all nodes should be colored white, current path and
-            // visited should be cleared (so next run begins a new path)
-            NodeCountingPath retPath = this.recalcPath(this._currentPath);
-            this.colorAll("White");
-            this.zeroBackEdges();
-            this._currentPath = null;
-            this._visited.clear();
-            return retPath;
+            return this.visitedPath();
         } else {
-            // Finally, all nodes should be colored white, current path and
-            // visited should be cleared (so next run begins a new path)
-            this.colorAll("White");
-            this.zeroBackEdges();
-            this._currentPath = null;
-            this._visited.clear();
             return null;
         }
-
     }
 
     /**
      * Invokes the DfsAlgorithm from the given start node.
      * 
      * @requires A valid node in the graph, start.
-     * @effects All nodes in graph are colored white, all counts of backedges
-     *          are zero, current path is null, visited list is cleared
      * @return A node counting path from start until all nodes were visited in
      *         the DFS algorithm.
      */
     public NodeCountingPath invokeAlgorithm(WeightedNode start) {
-        // Initially, all nodes should be colored white, current path and
-        // visited should be cleared (so next run begins a new path)
-        this.colorAll("White");
-        this.zeroBackEdges();
-        this._currentPath = null;
-        this._visited.clear();
-
         /*
          * In the case where no end node is provided, null is sent as end node,
          * which will cause the comparison start.equals(end) to always return
@@ -183,16 +577,6 @@ public class DfsAlgorithm {
          */
         this.run(start, null);
 
-        NodeCountingPath retPath = this.recalcPath(this._currentPath);
-
-        // Finally, all nodes should be colored white, current path and
-        // visited should be cleared (so next run begins a new path)
-        this.colorAll("White");
-        this.zeroBackEdges();
-        this._currentPath = null;
-        this._visited.clear();
-
-        return retPath;
-
+        return this.visitedPath();
     }
 }
@@ -0,0 +1,245 @@
+package homework2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/***
+ * DijkstraAlgorithm is a class intended to find the cheapest path between two
+ * sets of nodes of a given graph, where the cost of a path is the sum of the
+ * costs of its nodes, as in WeightedNodePath. More information on Dijkstra's
+ * algorithm and on A* can be found here:
+ * https://en.wikipedia.org/wiki/Dijkstra%27s_algorithm
+ * https://en.wikipedia.org/wiki/A*_search_algorithm
+ * <p>
+ * Since costs are on the nodes rather than on the edges, following the edge
+ * from a node to its child adds the cost of the child to the path, and the
+ * cost of a start node is the cost of the path made of that node alone. All
+ * costs must be non-negative.
+ * <p>
+ * The nodes waiting to be settled are kept in an IndexedHeap of node ids in
+ * the compact graph, so a run takes O(E log V) time. Like DfsAlgorithm, the
+ * state of a run is kept by the DijkstraAlgorithm object, and a node is
+ * reached by the current run iff its stamp equals the current epoch, so a new
+ * run doesn't have to clear the state of the previous one. A single
+ * DijkstraAlgorithm object should not be used by more than one thread.
+ * <p>
+ * If a Heuristic is set, the algorithm runs as A*: a node is settled by order
+ * of the cost of the path to it plus the estimate of the heuristic for it.
+ */
+
+public class DijkstraAlgorithm {
+
+    /**
+     * A Heuristic estimates, for a node, the cost that is still to be paid
+     * from it to the end nodes of a run. It must be admissible: the estimate
+     * for a node must be non-negative, and must be no more than the sum of the
+     * costs of the nodes that follow it on the cheapest path from it to an end
+     * node (so it must be zero for the end nodes themselves).
+     */
+    public interface Heuristic {
+
+        /**
+         * Returns a lower bound of the cost from a node to an end node.
+         *
+         * @requires A valid node of the graph.
+         * @return A non-negative lower bound of the cost of the cheapest path
+         *         from n to an end node, not counting the cost of n.
+         */
+        long estimate(WeightedNode n);
+    }
+
+    private Graph<WeightedNode>        _source;
+    private IndexedGraph<WeightedNode> _graph;
+    private Heuristic                  _heuristic;
+    private IndexedHeap                _open;
+    private int[]                      _reachStamps;
+    private int[]                      _targetStamps;
+    private int                        _epoch;
+    private long[]                     _costs;
+    private long[]                     _estimates;
+    private int[]                      _parents;
+
+    /**
+     * Creates a DijkstraAlgorithm object, for a given graph.
+     *
+     * @requires A valid graph.
+     * @effects Constructs a new DijkstraAlgorithm object with no heuristic.
+     *          Each run searches the graph as it is when the run starts.
+     */
+    public DijkstraAlgorithm(Graph<WeightedNode> graph) {
+        this._source = graph;
+        this._graph = null;
+        this._heuristic = null;
+        this._open = null;
+    }
+
+    /**
+     * Creates a DijkstraAlgorithm object, for a given indexed graph, such as a
+     * CompactGraph or a MappedGraph.
+     *
+     * @requires A valid indexed graph.
+     * @effects Constructs a new DijkstraAlgorithm object with no heuristic.
+     */
+    public DijkstraAlgorithm(IndexedGraph<WeightedNode> graph) {
+        this._source = null;
+        this._graph = graph;
+        this._heuristic = null;
+        this._open = null;
+    }
+
+    /**
+     * Sets the heuristic used by the following runs.
+     *
+     * @requires An admissible heuristic for the end nodes of the following
+     *           runs, or null.
+     * @modifies this
+     * @effects If heuristic != null, the following runs are A* runs guided by
+     *          it. Otherwise, they are plain Dijkstra runs.
+     */
+    public void setHeuristic(Heuristic heuristic) {
+        this._heuristic = heuristic;
+    }
+
+    /**
+     * Prepares the search state for a new run, on the up to date graph.
+     *
+     * @effects Forgets all nodes reached by the previous run.
+     */
+    private void resetState() {
+        if (this._source != null) {
+            // DfsAlgorithm.VISIT_ORDER, so both share the graph's frozen copy
+            this._graph = this._source.freeze(DfsAlgorithm.VISIT_ORDER);
+        }
+        // stamps of an older epoch mean nothing, so the arrays are only grown
+        if ((this._open == null) || (this._reachStamps.length < this._graph.size())) {
+            int size = this._graph.size();
+            this._open = new IndexedHeap(size);
+            this._reachStamps = new int[size];
+            this._targetStamps = new int[size];
+            this._costs = new long[size];
+            this._estimates = new long[size];
+            this._parents = new int[size];
+            this._epoch = 0;
+        }
+        this._open.clear();
+        if (this._epoch == Integer.MAX_VALUE) {
+            Arrays.fill(this._reachStamps, 0);
+            Arrays.fill(this._targetStamps, 0);
+            this._epoch = 0;
+        }
+        this._epoch++;
+    }
+
+    /**
+     * Finds the cheapest path from a start node to an end node.
+     *
+     * @requires Valid nodes start and end, and non-negative node costs.
+     * @return The cheapest path from start to end, or null if there is no
+     *         path from start to end.
+     */
+    public WeightedNodePath invokeAlgorithm(WeightedNode start, WeightedNode end) {
+        return this.invokeAlgorithm(Collections.singleton(start), Collections.singleton(end));
+    }
+
+    /**
+     * Finds the cheapest path from any of a set of start nodes to any of a set
+     * of end nodes.
+     *
+     * @requires Valid collections of nodes starts and ends, and non-negative
+     *           node costs.
+     * @effects Discards the state of the previous run.
+     * @return The cheapest path from a node of starts to a node of ends, or
+     *         null if there is no such path. If several paths are the
+     *         cheapest, one of them is returned, and the same one is returned
+     *         every time the same query is made on the same graph.
+     * @throws IllegalArgumentException if a node with a negative cost is
+     *         reached.
+     */
+    public WeightedNodePath invokeAlgorithm(Collection<WeightedNode> starts, Collection<WeightedNode> ends) {
+        this.resetState();
+
+        for (WeightedNode end : ends) {
+            int id = this._graph.indexOf(end);
+            if (id >= 0) {
+                this._targetStamps[id] = this._epoch;
+            }
+        }
+        for (WeightedNode start : starts) {
+            int id = this._graph.indexOf(start);
+            if (id >= 0) {
+                this.relax(id, -1, start.getCost());
+            } else if (ends.contains(start)) {
+                // a node which is not in the graph has no children
+                return new WeightedNodePath(start);
+            }
+        }
+
+        while (!(this._open.isEmpty())) {
+            int nodeId = this._open.poll();
+            if (this._targetStamps[nodeId] == this._epoch) {
+                return this.pathTo(nodeId);
+            }
+            long cost = this._costs[nodeId];
+            int childCount = this._graph.childCount(nodeId);
+            long cursor = this._graph.childCursor(nodeId);
+            for (int k = 0; k < childCount; k++) {
+                cursor = this._graph.nextChild(nodeId, cursor);
+                int childId = IndexedGraph.cursorChild(cursor);
+                this.relax(childId, nodeId, cost + this._graph.costOf(childId));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Offers a new path to a node.
+     * <p>
+     * A node may be offered again after it was settled, if the heuristic is
+     * admissible but not consistent. It is then put back into the heap, so the
+     * result is still the cheapest path.
+     *
+     * @requires 0 <= id < _graph.size(), and parent == -1 or the id of a node
+     *           reached by the current run.
+     * @effects If the node was not reached yet, or was reached by a path that
+     *          costs more than cost, records cost and parent for it, and
+     *          offers it to the heap.
+     * @throws IllegalArgumentException if the node has a negative cost.
+     */
+    private void relax(int id, int parent, long cost) {
+        boolean reached = (this._reachStamps[id] == this._epoch);
+        if (reached && (cost >= this._costs[id])) {
+            return;
+        }
+        if (!reached) {
+            if (this._graph.costOf(id) < 0) {
+                throw new IllegalArgumentException("Node " + this._graph.getNode(id) + " has a negative cost");
+            }
+            this._reachStamps[id] = this._epoch;
+            this._estimates[id] = (this._heuristic == null) ? 0 : this._heuristic.estimate(this._graph.getNode(id));
+        }
+        this._costs[id] = cost;
+        this._parents[id] = parent;
+        this._open.offer(id, cost + this._estimates[id]);
+    }
+
+    /**
+     * Returns the path the current run found to a node.
+     *
+     * @requires A node reached by the current run.
+     * @return The path from a start node to the node whose id is id, following
+     *         the recorded parents.
+     */
+    private WeightedNodePath pathTo(int id) {
+        ArrayList<WeightedNode> nodes = new ArrayList<WeightedNode>();
+        for (int cur = id; cur >= 0; cur = this._parents[cur]) {
+            nodes.add(this._graph.getNode(cur));
+        }
+        WeightedNodePath retPath = new WeightedNodePath(nodes.get(nodes.size() - 1));
+        for (int i = nodes.size() - 2; i >= 0; i--) {
+            retPath = retPath.extend(nodes.get(i));
+        }
+        return retPath;
+    }
+}
@@ -0,0 +1,161 @@
+package homework2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Set;
+
+/***
+ * ExploredGraph is the part of a Traversable graph that a search has explored
+ * so far, seen as an IndexedGraph. A node gets the next free id when the
+ * search first meets it, and its children are asked from the Traversable, and
+ * sorted, the first time the search asks for them. So a search through an
+ * ExploredGraph pays only for the nodes it reaches, and size() grows as it
+ * goes on.
+ * <p>
+ * An ExploredGraph serves one search, by one thread, on a Traversable which
+ * doesn't change meanwhile.
+ */
+
+/*
+ * Representation invariant:
+ * _ids maps every node met so far to its id, the ids are exactly 0 .. _nodes.size() - 1,
+ * and _nodes.get(id) is the node whose id is id.
+ * _children.length >= _nodes.size(), and _children[id] is null until the children of
+ * id are asked for, and then holds their ids, sorted by _order if it is not null.
+ */
+final class ExploredGraph<N> implements IndexedGraph<N> {
+
+    private static final int[] NO_CHILDREN = new int[0];
+
+    private final Traversable<N>        _graph;
+    private final Comparator<? super N> _order;
+    private final HashMap<N, Integer>   _ids;
+    private final ArrayList<N>          _nodes;
+    private int[][]                     _children;
+
+    /**
+     * Creates an ExploredGraph of a graph, where nothing was explored yet.
+     *
+     * @requires A valid graph, and a valid comparator of its nodes or null.
+     * @effects Constructs a new ExploredGraph with no nodes, whose children
+     *          will be sorted by order, or kept in the order graph returns
+     *          them if it is null.
+     */
+    ExploredGraph(Traversable<N> graph, Comparator<? super N> order) {
+        _graph = graph;
+        _order = order;
+        _ids = new HashMap<N, Integer>();
+        _nodes = new ArrayList<N>();
+        _children = new int[16][];
+    }
+
+    /**
+     * Returns the id of a node, giving it one if it was not met yet.
+     *
+     * @requires n is in the graph.
+     */
+    private int intern(N n) {
+        Integer id = _ids.putIfAbsent(n, _nodes.size());
+        if (id != null) {
+            return id;
+        }
+        if (_nodes.size() == _children.length) {
+            _children = Arrays.copyOf(_children, 2 * _children.length);
+        }
+        _nodes.add(n);
+        return _nodes.size() - 1;
+    }
+
+    /**
+     * Returns the ids of the children of a node, asking the graph for them the
+     * first time.
+     */
+    @SuppressWarnings("unchecked")
+    private int[] children(int id) {
+        int[] children = _children[id];
+        if (children == null) {
+            Set<N> set = _graph.getChildren(_nodes.get(id));
+            children = NO_CHILDREN;
+            if ((set != null) && !set.isEmpty()) {
+                N[] nodes = (N[])set.toArray();
+                if (_order != null) {
+                    Arrays.sort(nodes, _order);
+                }
+                children = new int[nodes.length];
+                for (int k = 0; k < nodes.length; k++) {
+                    assert (nodes[k] != null) : "Found null node as node's child";
+                    children[k] = intern(nodes[k]);
+                }
+            }
+            _children[id] = children;
+        }
+        return children;
+    }
+
+    /**
+     * Returns the number of nodes met so far.
+     *
+     * @return The number of nodes which have an id.
+     */
+    public int size() {
+        return _nodes.size();
+    }
+
+    /**
+     * Returns the id of a given node, giving it one if it is in the graph and
+     * was not met yet.
+     *
+     * @requires A valid node or null.
+     * @return The id of n, or -1 if n is not in the graph.
+     */
+    public int indexOf(N n) {
+        Integer id = _ids.get(n);
+        if (id != null) {
+            return id;
+        }
+        return ((n != null) && _graph.nodeInGraph(n)) ? intern(n) : -1;
+    }
+
+    /**
+     * Returns the node with a given id.
+     *
+     * @requires 0 <= id < size()
+     * @return The node whose id is id.
+     */
+    public N getNode(int id) {
+        return _nodes.get(id);
+    }
+
+    /**
+     * Returns the number of children of a given node.
+     *
+     * @requires 0 <= id < size()
+     * @effects Gives ids to the children of the node which were not met yet.
+     * @return The number of children of the node whose id is id.
+     */
+    public int childCount(int id) {
+        return children(id).length;
+    }
+
+    /**
+     * Returns the id of a child of a given node.
+     *
+     * @requires 0 <= id < size() && 0 <= k < childCount(id)
+     * @effects Gives ids to the children of the node which were not met yet.
+     * @return The id of the k-th child of the node whose id is id.
+     */
+    public int childAt(int id, int k) {
+        return children(id)[k];
+    }
+
+    /**
+     * Returns the order the children of every node are sorted by.
+     *
+     * @return The order given to the constructor.
+     */
+    public Comparator<? super N> getChildOrder() {
+        return _order;
+    }
+}
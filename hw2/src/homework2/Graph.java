@@ -1,10 +1,24 @@
 package homework2;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /***
  * Graph represents a directed graph, i.e. a set of nodes with edges connecting
@@ -18,33 +32,151 @@ import java.util.Set;
 
 /*
  * Representation invariant:
- * No two equal elements as two separate keys in _nodes - this constraint is enforced by the container (HashMap).
- * No two equal elements in same key's value (HashSet) - also enforced by the container (HashSet).
- * Keys are not null in HashMap nodes.
- * Elements are not null in HashSet.
+ * Every node is interned to a dense int id when it is added: _ids maps every node
+ * to its id, and _nodeArray[id] is the node whose id is id, for every 0 <= id < _size.
+ * No two equal elements as two separate keys in _ids - this constraint is enforced by the container (ConcurrentHashMap).
+ * Keys are not null in ConcurrentHashMap _ids.
+ * The rows of the children are kept in chunks of CHUNK_SIZE nodes: the row of the node
+ * whose id is id is row(id) == _children[id >>> CHUNK_BITS][id & CHUNK_MASK], and its
+ * degree is degree(id) == _degrees[id >>> CHUNK_BITS][id & CHUNK_MASK].
+ * row(id) holds the ids of the children of the node whose id is id, in one of three
+ * tiers, by the number of children:
+ *   - no children: EMPTY_ROW, shared by all such nodes, and degree(id) == 0.
+ *   - up to SMALL_LIMIT children: an int[] whose first degree(id) cells are the children.
+ *     No id appears twice in it - this constraint is enforced by addEdge.
+ *   - more than SMALL_LIMIT children: an IntSet. No id appears twice in it - this
+ *     constraint is enforced by the container (IntSet).
+ * Every child id is in the range [0, _size), i.e. is the id of a node in the graph.
+ * _parents[id] and _inDegrees[id] hold the ids of the parents of the node whose id is id,
+ * in the same three tiers. p is in the parents of c iff c is in the children of p.
+ * _nodeArray.length == _parents.length == _inDegrees.length >= _size, and so is
+ * _childEpochs.length, once a snapshot was taken. _children, _degrees and _chunkEpochs
+ * have one cell per chunk of _nodeArray, and the chunks that hold the ids below _size
+ * are allocated, with _children[c].length == _degrees[c].length.
+ * _incomparable is true iff some node in the graph is not Comparable.
+ * _changedRows != null iff _frozen != null. It holds the ids below _frozen.size() of the
+ * nodes whose children changed since _frozen was built, which freeze() rebuilds; the
+ * other rows of _frozen, and the ids of the nodes, are still those of the graph.
+ *
+ * Snapshots (see GraphSnapshot) share the chunks and the rows of the children with the
+ * graph, and are copied on write, while _liveSnapshots is not empty:
+ *   - _chunkEpochs[c] is the number of snapshots taken (_epoch) when chunk c was created,
+ *     and a chunk created before the last snapshot is copied before a row or degree in it
+ *     is replaced. The cells of the ids added after a snapshot are not read by it, so
+ *     addNode writes them in place.
+ *   - The first degree(id) cells of an int[] row and the rows replaced by addEdge are never
+ *     modified, so only IntSet rows are copied on write: _childEpochs[id] is the epoch
+ *     when the IntSet row of id was created, and a row created before the last snapshot
+ *     is copied before it is modified.
+ * _liveSnapshots holds its snapshots weakly, so a snapshot which is dropped without being
+ * closed stops being live once it is garbage collected.
+ *
+ * The invariant is verified incrementally: every mutation checks only the entries
+ * it touched (checkNode, checkEdge), so building a graph with assertions enabled
+ * stays linear in its size. checkRep() verifies the whole graph, and is meant to
+ * be called on demand.
  */
 
 
-public class Graph<N> {
+public class Graph<N> implements Traversable<N> {
 	
-	private void checkRep() {
-		for (Map.Entry<N, HashSet<N>> entry : _nodes.entrySet()) {			
-			assert(entry.getKey() != null) : "Found null node in graph";
-			for (N n : entry.getValue()) {
-				assert(n != null) : "Found null node as node's child";
+	/**
+	 * Checks the representation invariant over the whole graph.
+	 * This takes time linear in the size of the graph, so it is not called by
+	 * the graph's operations.
+	 * @effects Fails an assertion if the representation invariant doesn't hold
+	 *          (when assertions are enabled).
+	 */
+	public void checkRep() {
+		assert(_ids.size() == _size) : "Ids don't match the number of nodes";
+		long edges = 0;
+		for (int id = 0; id < _size; id++) {
+			checkNode(nodeAt(id));
+			for (int slot = 0; slot < childSlotCount(id); slot++) {
+				int child = childSlot(id, slot);
+				assert((child == IntSet.EMPTY) || (child < _size)) : "Found node's child which is not in graph";
+				assert((child == IntSet.EMPTY) || rowContains(_parents, _inDegrees, child, id)) :
+					"Edge is missing from the parents of its child";
 			}
+			edges += childCount(id) - rowSize(_parents, _inDegrees, id);
 		}
+		assert(edges == 0) : "Parents don't match children";
+	}
+	
+	private void checkNode(N n) {
+		assert(n != null) : "Found null node in graph";
+		Integer id = _ids.get(n);
+		assert(id != null) : "Node is missing from graph";
+		assert(_nodeArray[id] == n) : "Node doesn't match its id";
+	}
+	
+	private void checkEdge(N n1, N n2) {
+		checkNode(n1);
+		assert(n2 != null) : "Found null node as node's child";
+		assert(_ids.containsKey(n2)) : "Found node's child which is not in graph";
+		assert(childRowContains(_ids.get(n1), _ids.get(n2))) : "Edge is missing from graph";
+		assert(rowContains(_parents, _inDegrees, _ids.get(n2), _ids.get(n1))) : "Edge is missing from parents";
 	}
 	
-	private HashMap<N, HashSet<N>> _nodes;
+	/**
+	 * The largest number of children (or parents) kept in an int[] and not in
+	 * an IntSet.
+	 */
+	static final int SMALL_LIMIT = 16;
+	
+	private static final int[] EMPTY_ROW = new int[0];
+	
+	/**
+	 * The children rows are kept in chunks of CHUNK_SIZE == 1 << CHUNK_BITS
+	 * nodes, which snapshots share and the graph copies on write, so taking a
+	 * snapshot copies one reference per chunk and not per node.
+	 */
+	static final int CHUNK_BITS = 12;
+	static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	
+	private ConcurrentHashMap<N, Integer> _ids;
+	private Object[] _nodeArray;
+	private Object[][] _children;
+	private int[][] _degrees;
+	private int[] _chunkEpochs;
+	private Object[] _parents;
+	private int[] _inDegrees;
+	private int _size;
+	private CompactGraph<N> _frozen;
+	private IntSet _changedRows;
+	private boolean _incomparable;
+	private long _version;
+	private boolean _indexReachability;
+	private int _epoch;
+	private int[] _childEpochs;
+	private final Set<GraphSnapshot<N>> _liveSnapshots =
+			Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<GraphSnapshot<N>, Boolean>()));
 	
 	/**
      * Creates an empty graph.
      * @effects Constructs a new empty graph.
      */
 	public Graph() {
-		_nodes = new HashMap<N, HashSet<N>>();
-		checkRep();
+		this(16);
+	}
+	
+	/**
+	 * Creates an empty graph, sized to hold a given number of nodes before it
+	 * has to grow.
+	 * @requires expectedNodes >= 0
+	 * @effects Constructs a new empty graph.
+	 */
+	public Graph(int expectedNodes) {
+		int capacity = Math.max(16, expectedNodes);
+		_ids = new ConcurrentHashMap<N, Integer>(capacity);
+		_nodeArray = new Object[capacity];
+		_children = new Object[chunkCount(capacity)][];
+		_degrees = new int[chunkCount(capacity)][];
+		_chunkEpochs = new int[chunkCount(capacity)];
+		_parents = new Object[capacity];
+		_inDegrees = new int[capacity];
+		_size = 0;
 	}
 	
 	/**
@@ -55,52 +187,667 @@ public class Graph<N> {
 	 */
 	
 	public int addNode(N n) {
-		checkRep();
-		HashSet<N> retVal = _nodes.putIfAbsent(n, new HashSet<N>());
+		Integer retVal = _ids.putIfAbsent(n, _size);
 		if (retVal == null) {
-			checkRep();
+			if (_size == _nodeArray.length) {
+				ensureCapacity(2 * _size);
+			}
+			_nodeArray[_size] = n;
+			_incomparable |= !(n instanceof Comparable);
+			ensureChunk(_size);
+			_children[_size >>> CHUNK_BITS][_size & CHUNK_MASK] = EMPTY_ROW;
+			_degrees[_size >>> CHUNK_BITS][_size & CHUNK_MASK] = 0;
+			_parents[_size] = EMPTY_ROW;
+			_inDegrees[_size] = 0;
+			_size++;
+			markChanged(_size - 1);
+			_version++;
+			checkNode(n);
 			return 0;
 		}
 		else {
-			checkRep();
 			return 1;
 		}
 	}
 	
+	/**
+	 * Grows the node arrays of the graph to hold a given number of nodes.
+	 * @modifies _nodeArray, _children, _degrees, _chunkEpochs, _parents, _inDegrees, _childEpochs
+	 * @effects Makes the node arrays at least capacity long, and the arrays of
+	 *          chunks long enough for them. The chunks are allocated by
+	 *          ensureChunk, as nodes are added.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity <= _nodeArray.length) {
+			return;
+		}
+		_nodeArray = Arrays.copyOf(_nodeArray, capacity);
+		_children = Arrays.copyOf(_children, chunkCount(capacity));
+		_degrees = Arrays.copyOf(_degrees, chunkCount(capacity));
+		_chunkEpochs = Arrays.copyOf(_chunkEpochs, chunkCount(capacity));
+		_parents = Arrays.copyOf(_parents, capacity);
+		_inDegrees = Arrays.copyOf(_inDegrees, capacity);
+		if (_childEpochs != null) {
+			_childEpochs = Arrays.copyOf(_childEpochs, capacity);
+		}
+	}
+	
+	/**
+	 * Returns the number of chunks that hold a given number of nodes.
+	 */
+	private static int chunkCount(int nodes) {
+		return (nodes + CHUNK_MASK) >>> CHUNK_BITS;
+	}
+	
+	/**
+	 * Makes sure the chunk of the children rows holding a given id is
+	 * allocated and long enough to hold it. Every chunk but the first is
+	 * allocated at its full size; the first grows with the node arrays, so a
+	 * small graph takes little memory.
+	 * @requires id < _nodeArray.length
+	 * @modifies _children, _degrees, _chunkEpochs
+	 */
+	private void ensureChunk(int id) {
+		int chunk = id >>> CHUNK_BITS;
+		if ((_children[chunk] == null) || (_children[chunk].length <= (id & CHUNK_MASK))) {
+			int length = Math.min(CHUNK_SIZE, _nodeArray.length - (chunk << CHUNK_BITS));
+			_children[chunk] = (_children[chunk] == null) ? new Object[length] : Arrays.copyOf(_children[chunk], length);
+			_degrees[chunk] = (_degrees[chunk] == null) ? new int[length] : Arrays.copyOf(_degrees[chunk], length);
+			_chunkEpochs[chunk] = _epoch;
+		}
+	}
+	
+	/**
+	 * Prepares the chunk of the children rows holding a given id for a change
+	 * of a row or a degree in it, by copying it if a live snapshot may be
+	 * reading it.
+	 * @requires 0 <= id < _size
+	 * @modifies _children, _degrees, _chunkEpochs
+	 * @effects Replaces the chunk of id (and its degrees) with a copy, if it
+	 *          was created before the last snapshot and there are live
+	 *          snapshots.
+	 * @return The index of the chunk of id.
+	 */
+	private int unshareChunk(int id) {
+		int chunk = id >>> CHUNK_BITS;
+		if (_chunkEpochs[chunk] != _epoch) {
+			if (hasLiveSnapshots()) {
+				_children[chunk] = _children[chunk].clone();
+				_degrees[chunk] = _degrees[chunk].clone();
+			}
+			_chunkEpochs[chunk] = _epoch;
+		}
+		return chunk;
+	}
+	
+	/**
+	 * Checks if the graph has live snapshots, which share its rows.
+	 * Forgets the snapshots which were garbage collected without being closed.
+	 */
+	private boolean hasLiveSnapshots() {
+		return !_liveSnapshots.isEmpty();
+	}
+	
+	/**
+	 * Records that the children of a node changed, or that it was added, so
+	 * the next freeze() rebuilds its row of the compact copy and copies the
+	 * others. Once more than an eighth of the rows changed, the compact copy
+	 * is dropped, and freeze() builds a new one from the graph.
+	 * @modifies _frozen, _changedRows
+	 */
+	private void markChanged(int id) {
+		if (_frozen == null) {
+			return;
+		}
+		if (id < _frozen.size()) {
+			_changedRows.add(id);
+		}
+		if (8L * (_changedRows.size() + _size - _frozen.size()) > _frozen.size()) {
+			_frozen = null;
+			_changedRows = null;
+		}
+	}
+	
+	/**
+	 * Adds nodes to the graph, in the order they are iterated over, so every
+	 * new node gets the next id (see indexOf). The arrays of the graph grow
+	 * once for all of them.
+	 * @requires A valid collection of nodes of type N.
+	 * @effects Adds every node of nodes to the graph, if it does not already
+	 *          exists in the graph.
+	 * @return The number of nodes added.
+	 */
+	public int addNodes(Collection<? extends N> nodes) {
+		ensureCapacity(Math.max(_size + nodes.size(), 2 * _size));
+		if ((_size == 0) && !hasLiveSnapshots()) {
+			// size the map once, instead of growing it step by step
+			_ids = new ConcurrentHashMap<N, Integer>(nodes.size());
+		}
+		int added = 0;
+		for (N n : nodes) {
+			added += 1 - addNode(n);
+		}
+		return added;
+	}
+	
 	/**
 	 * Adds an edge to the graph, directed from n1 to n2.
 	 * @requires Two valid nodes, and both n1 and n2 are in the graph.
-	 * @effects Connects n1 to n2, if there is no edge between them, in this direction, already.
+	 * @effects Connects n1 to n2, if there is no edge between them, in this direction, already,
+	 *          and records n1 as a parent of n2.
 	 * @return 0 if the edge was successfully added, 1 if the edge already exists in the graph.
 	 */
 	public int addEdge(N n1, N n2) {
-		checkRep();
-		HashSet<N> retVal = _nodes.get(n1);
-		if (retVal.contains(n2)) {
+		int id1 = _ids.get(n1);
+		int id2 = _ids.get(n2);
+		// the chunk first, since unshareChildren may replace the row in it
+		int chunk = unshareChunk(id1);
+		if (_childEpochs != null) {
+			unshareChildren(id1, id2);
+		}
+		if (!addToRow(_children[chunk], _degrees[chunk], id1 & CHUNK_MASK, id2)) {
 			return 1;
 		}
-		retVal.add(n2);
-		checkRep();
+		addToRow(_parents, _inDegrees, id2, id1);
+		markChanged(id1);
+		_version++;
+		checkEdge(n1, n2);
 		return 0;
 	}
 	
+	/**
+	 * Adds edges to the graph, given as the ids of their nodes (see indexOf):
+	 * the i-th edge is directed from the node whose id is sources[i] to the
+	 * node whose id is targets[i]. Edges which are already in the graph, or
+	 * appear more than once, are added once.
+	 * <p>
+	 * The edges are grouped by their source with a counting sort, and every
+	 * row grows once, to its final tier, for all the edges added to it. This
+	 * takes time linear in the number of nodes and edges, and 8 bytes of
+	 * memory per edge and per node for the sort.
+	 * @requires Valid arrays of ids, of the same length.
+	 * @effects Connects every pair of nodes sources[i], targets[i], if there
+	 *          is no edge between them, in this direction, already, and
+	 *          records the source as a parent of the target.
+	 * @return The number of edges added.
+	 * @throws IllegalArgumentException if sources and targets don't have the
+	 *         same length, or one of them holds an id which is not the id of
+	 *         a node in the graph. No edge is added then.
+	 */
+	public int addEdges(int[] sources, int[] targets) {
+		return addEdges(sources, targets, null, 1);
+	}
+	
+	/**
+	 * Adds edges to the graph like addEdges, adding them to the rows of their
+	 * nodes on several threads of the common ForkJoinPool.
+	 * @requires Valid arrays of ids, of the same length.
+	 * @effects Connects every pair of nodes sources[i], targets[i], if there
+	 *          is no edge between them, in this direction, already, and
+	 *          records the source as a parent of the target.
+	 * @return The number of edges added.
+	 * @throws IllegalArgumentException if sources and targets don't have the
+	 *         same length, or one of them holds an id which is not the id of
+	 *         a node in the graph. No edge is added then.
+	 */
+	public int addEdgesParallel(int[] sources, int[] targets) {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		return addEdges(sources, targets, pool, pool.getParallelism());
+	}
+	
+	/**
+	 * Adds edges to the graph like addEdges, on several threads of a given
+	 * executor.
+	 * <p>
+	 * After the edges are grouped by their source, the nodes are split into
+	 * parallelism ranges with about the same number of edges, and every
+	 * worker adds the edges of one range to the children rows of their
+	 * sources, which no other worker touches. The edges which turned out to be
+	 * new are then grouped by their target, and added to the parents rows the
+	 * same way.
+	 * @requires A valid executor, parallelism >= 1, and valid arrays of ids,
+	 *           of the same length. The graph must not be used by other
+	 *           threads while the edges are added.
+	 * @effects Connects every pair of nodes sources[i], targets[i], if there
+	 *          is no edge between them, in this direction, already, and
+	 *          records the source as a parent of the target.
+	 * @return The number of edges added.
+	 * @throws IllegalArgumentException if sources and targets don't have the
+	 *         same length, or one of them holds an id which is not the id of
+	 *         a node in the graph. No edge is added then.
+	 */
+	public int addEdgesParallel(int[] sources, int[] targets, ExecutorService executor, int parallelism) {
+		return addEdges(sources, targets, executor, parallelism);
+	}
+	
+	private int addEdges(int[] sources, int[] targets, ExecutorService executor, int parallelism) {
+		if (sources.length != targets.length) {
+			throw new IllegalArgumentException("Got " + sources.length + " sources and " + targets.length + " targets");
+		}
+		for (int i = 0; i < sources.length; i++) {
+			if ((sources[i] < 0) || (sources[i] >= _size) || (targets[i] < 0) || (targets[i] >= _size)) {
+				throw new IllegalArgumentException("Edge " + sources[i] + " -> " + targets[i] + " is not between nodes in the graph");
+			}
+		}
+		
+		// group the targets by their source; the children rows keep only the
+		// new edges in the groups, and mark the others with -1
+		final int[] childOffsets = new int[_size + 1];
+		final int[] bySource = groupBy(sources, targets, sources.length, childOffsets);
+		for (int chunk = 0; chunk < chunkCount(_size); chunk++) {
+			// copy the shared chunks here, as the ranges may split a chunk
+			int end = Math.min(_size, (chunk + 1) << CHUNK_BITS);
+			if (childOffsets[end] > childOffsets[chunk << CHUNK_BITS]) {
+				unshareChunk(chunk << CHUNK_BITS);
+			}
+		}
+		runRanges(childOffsets, executor, parallelism, (from, to) -> mergeChildren(childOffsets, bySource, from, to));
+		
+		int[] newSources = new int[bySource.length];
+		int[] newTargets = new int[bySource.length];
+		int added = 0;
+		for (int id = 0; id < _size; id++) {
+			for (int k = childOffsets[id]; k < childOffsets[id + 1]; k++) {
+				if (bySource[k] >= 0) {
+					newSources[added] = id;
+					newTargets[added++] = bySource[k];
+				}
+			}
+		}
+		final int[] parentOffsets = childOffsets;
+		Arrays.fill(parentOffsets, 0);
+		final int[] byTarget = groupBy(newTargets, newSources, added, parentOffsets);
+		runRanges(parentOffsets, executor, parallelism, (from, to) -> mergeParents(parentOffsets, byTarget, from, to));
+		
+		if (added > 0) {
+			_frozen = null;
+			_changedRows = null;
+			_version += added;
+		}
+		return added;
+	}
+	
+	/**
+	 * Groups the first count values by the first count keys, with a counting
+	 * sort.
+	 * @requires count <= keys.length, values.length, every key is in the range
+	 *           [0, _size), and offsets.length == _size + 1 is all zeros.
+	 * @modifies offsets
+	 * @effects Sets offsets[id] to the start of the group of id in the
+	 *          returned array, for every 0 <= id <= _size.
+	 * @return An array holding the values of every key, from offsets[key] to
+	 *         offsets[key + 1].
+	 */
+	private int[] groupBy(int[] keys, int[] values, int count, int[] offsets) {
+		for (int i = 0; i < count; i++) {
+			offsets[keys[i] + 1]++;
+		}
+		for (int id = 0; id < _size; id++) {
+			offsets[id + 1] += offsets[id];
+		}
+		int[] grouped = new int[count];
+		int[] fill = Arrays.copyOf(offsets, _size);
+		for (int i = 0; i < count; i++) {
+			grouped[fill[keys[i]]++] = values[i];
+		}
+		return grouped;
+	}
+	
+	/**
+	 * A task over a range of node ids.
+	 */
+	private interface IdRangeTask {
+		void run(int from, int to);
+	}
+	
+	/**
+	 * Splits the ids of the nodes into up to parallelism ranges with about
+	 * the same number of grouped values, by the offsets of their groups, and
+	 * runs task on each range: on executor, or in this thread if executor is
+	 * null.
+	 */
+	private void runRanges(int[] offsets, ExecutorService executor, int parallelism, IdRangeTask task) {
+		if ((executor == null) || (parallelism <= 1)) {
+			task.run(0, _size);
+			return;
+		}
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		long total = offsets[_size];
+		int from = 0;
+		for (int w = 1; (w <= parallelism) && (from < _size); w++) {
+			int to = from;
+			while ((to < _size) && ((w == parallelism) || ((long)offsets[to] * parallelism < total * w))) {
+				to++;
+			}
+			if (to > from) {
+				final int rangeFrom = from;
+				final int rangeTo = to;
+				workers.add(executor.submit(() -> task.run(rangeFrom, rangeTo)));
+			}
+			from = to;
+		}
+		for (Future<?> worker : workers) {
+			try {
+				worker.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+	
+	/**
+	 * Adds the grouped children of the nodes whose ids are in [from, to) to
+	 * their rows, and marks every child which was not added (since it was
+	 * already a child, or repeats a child before it) with -1.
+	 */
+	private void mergeChildren(int[] offsets, int[] bySource, int from, int to) {
+		for (int id = from; id < to; id++) {
+			int start = offsets[id];
+			int end = offsets[id + 1];
+			if (start == end) {
+				continue;
+			}
+			Arrays.sort(bySource, start, end);
+			int fresh = 0;
+			int firstFresh = -1;
+			for (int k = start; k < end; k++) {
+				int child = bySource[k];
+				if (((k > start) && (child == bySource[k - 1])) || childRowContains(id, child)) {
+					// keep the repeated value for the comparison with the next one
+					continue;
+				}
+				if (fresh++ == 0) {
+					firstFresh = child;
+				}
+			}
+			if (fresh == 0) {
+				Arrays.fill(bySource, start, end, -1);
+				continue;
+			}
+			if (_childEpochs != null) {
+				unshareChildren(id, firstFresh);
+			}
+			Object[] rows = _children[id >>> CHUNK_BITS];
+			int[] degrees = _degrees[id >>> CHUNK_BITS];
+			growRow(rows, degrees, id & CHUNK_MASK, fresh);
+			for (int k = start; k < end; k++) {
+				if (!addToRow(rows, degrees, id & CHUNK_MASK, bySource[k])) {
+					bySource[k] = -1;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds the grouped parents of the nodes whose ids are in [from, to) to
+	 * their rows.
+	 * @requires None of the parents is in the row of its node already, and no
+	 *           parent appears twice in a group.
+	 */
+	private void mergeParents(int[] offsets, int[] byTarget, int from, int to) {
+		for (int id = from; id < to; id++) {
+			if (offsets[id] == offsets[id + 1]) {
+				continue;
+			}
+			growRow(_parents, _inDegrees, id, offsets[id + 1] - offsets[id]);
+			for (int k = offsets[id]; k < offsets[id + 1]; k++) {
+				addToRow(_parents, _inDegrees, id, byTarget[k]);
+			}
+		}
+	}
+	
+	/**
+	 * Makes room in the row of a node for a given number of new ids, moving
+	 * the row to its final tier at once.
+	 */
+	private static void growRow(Object[] rows, int[] degrees, int id, int extra) {
+		Object row = rows[id];
+		if (row instanceof IntSet) {
+			return;
+		}
+		int[] small = (int[])row;
+		int degree = degrees[id];
+		if (degree + extra > SMALL_LIMIT) {
+			IntSet hub = new IntSet(degree + extra);
+			for (int k = 0; k < degree; k++) {
+				hub.add(small[k]);
+			}
+			rows[id] = hub;
+			degrees[id] = 0;
+		}
+		else if (degree + extra > small.length) {
+			rows[id] = Arrays.copyOf(small, degree + extra);
+		}
+	}
+	
+	/**
+	 * Prepares the children row of a node for adding a child, by copying it
+	 * if it is an IntSet which a live snapshot may be reading.
+	 * @requires The chunk of id is not shared with a snapshot (see unshareChunk).
+	 * @modifies _children, _childEpochs
+	 * @effects Replaces the row of id with a copy, if it is an IntSet created
+	 *          before the last snapshot, there are live snapshots, and value
+	 *          is not in it already.
+	 */
+	private void unshareChildren(int id, int value) {
+		Object row = _children[id >>> CHUNK_BITS][id & CHUNK_MASK];
+		if (!(row instanceof IntSet)) {
+			// the row may become an IntSet now, which no snapshot has seen
+			_childEpochs[id] = _epoch;
+		}
+		else if ((_childEpochs[id] != _epoch) && hasLiveSnapshots() && !((IntSet)row).contains(value)) {
+			_children[id >>> CHUNK_BITS][id & CHUNK_MASK] = new IntSet((IntSet)row);
+			_childEpochs[id] = _epoch;
+		}
+	}
+	
+	/**
+	 * Adds an id to the row of a node, in the children (or parents) rows,
+	 * moving the row to the next tier when it outgrows its current one.
+	 * @return true if value was added, false if it was already in the row.
+	 */
+	private static boolean addToRow(Object[] rows, int[] degrees, int id, int value) {
+		Object row = rows[id];
+		if (row instanceof IntSet) {
+			return ((IntSet)row).add(value);
+		}
+		int[] small = (int[])row;
+		int degree = degrees[id];
+		for (int k = 0; k < degree; k++) {
+			if (small[k] == value) {
+				return false;
+			}
+		}
+		if (degree == SMALL_LIMIT) {
+			IntSet hub = new IntSet(2 * SMALL_LIMIT);
+			for (int k = 0; k < degree; k++) {
+				hub.add(small[k]);
+			}
+			hub.add(value);
+			rows[id] = hub;
+			degrees[id] = 0;
+			return true;
+		}
+		if (degree == small.length) {
+			small = Arrays.copyOf(small, Math.max(1, Math.min(2 * degree, SMALL_LIMIT)));
+			rows[id] = small;
+		}
+		small[degree] = value;
+		degrees[id] = degree + 1;
+		return true;
+	}
+	
+	/**
+	 * Checks if the row of a node holds a given id.
+	 */
+	private static boolean rowContains(Object[] rows, int[] degrees, int id, int value) {
+		Object row = rows[id];
+		if (row instanceof IntSet) {
+			return ((IntSet)row).contains(value);
+		}
+		int[] small = (int[])row;
+		for (int k = 0; k < degrees[id]; k++) {
+			if (small[k] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the number of ids in the row of a node.
+	 */
+	private static int rowSize(Object[] rows, int[] degrees, int id) {
+		Object row = rows[id];
+		return (row instanceof IntSet) ? ((IntSet)row).size() : degrees[id];
+	}
+	
+	/**
+	 * Returns the number of slots in the row of a node.
+	 */
+	private static int rowSlotCount(Object[] rows, int[] degrees, int id) {
+		Object row = rows[id];
+		return (row instanceof IntSet) ? ((IntSet)row).slotCount() : degrees[id];
+	}
+	
+	/**
+	 * Returns the id in a slot of the row of a node, or IntSet.EMPTY.
+	 */
+	private static int rowSlot(Object[] rows, int id, int slot) {
+		Object row = rows[id];
+		return (row instanceof IntSet) ? ((IntSet)row).slotAt(slot) : ((int[])row)[slot];
+	}
+	
+	/**
+	 * Returns the modification version of the graph.
+	 * @return A number which starts at 0 for a new graph, and grows by one
+	 *         every time a node or an edge is successfully added to it. Two
+	 *         calls return the same number iff the graph was not modified
+	 *         between them.
+	 */
+	public long getVersion() {
+		return _version;
+	}
+	
 	/**
 	 * Returns a set of all existing nodes in the graph.
-	 * @return A set containing all nodes in the graph.
+	 * @return An unmodifiable view of the set of all nodes in the graph, which
+	 *         reflects later changes to the graph.
 	 */
 	public Set<N> getNodes() {
-		checkRep();
-		return _nodes.keySet();
+		return Collections.unmodifiableSet(_ids.keySet());
 	}
 	
 	/**
-	 * Returns a HashSet of all the children of a given node.
-	 * @requires A valid node of type N, which exists in the graph.
-	 * @return An ArrayList containing all the children of node n.
+	 * Returns a set of all the children of a given node.
+	 * @requires A valid node of type N.
+	 * @return An unmodifiable view of the set of all the children of node n,
+	 *         which reflects later changes to the graph, or null if n is not in
+	 *         the graph.
 	 */
-	public HashSet<N> getChildren(N n) {
-		checkRep();
-		return _nodes.get(n);
+	public Set<N> getChildren(N n) {
+		Integer id = _ids.get(n);
+		return (id == null) ? null : new RowView(id, false);
+	}
+	
+	/**
+	 * Returns a set of all the parents of a given node. The parents are kept
+	 * up to date by addEdge, so this takes constant time.
+	 * @requires A valid node of type N.
+	 * @return An unmodifiable view of the set of all the parents of node n,
+	 *         which reflects later changes to the graph, or null if n is not in
+	 *         the graph.
+	 */
+	public Set<N> getParents(N n) {
+		Integer id = _ids.get(n);
+		return (id == null) ? null : new RowView(id, true);
+	}
+	
+	/**
+	 * Returns the number of parents of a given node.
+	 * @requires A valid node of type N.
+	 * @return The number of edges into n, or -1 if n is not in the graph.
+	 */
+	public int getInDegree(N n) {
+		Integer id = _ids.get(n);
+		return (id == null) ? -1 : rowSize(_parents, _inDegrees, id);
+	}
+	
+	/**
+	 * Returns the number of children of a given node.
+	 * @requires A valid node of type N.
+	 * @return The number of edges out of n, or -1 if n is not in the graph.
+	 */
+	public int getOutDegree(N n) {
+		Integer id = _ids.get(n);
+		return (id == null) ? -1 : childCount(id);
+	}
+	
+	/**
+	 * An unmodifiable view of the children or the parents of a node. It reads
+	 * the rows of the graph on every call, so it reflects later changes.
+	 */
+	private class RowView extends AbstractSet<N> {
+		private final int _id;
+		private final boolean _ofParents;
+		
+		RowView(int id, boolean ofParents) {
+			_id = id;
+			_ofParents = ofParents;
+		}
+		
+		private Object[] rows() {
+			return _ofParents ? _parents : _children[_id >>> CHUNK_BITS];
+		}
+		
+		private int[] degrees() {
+			return _ofParents ? _inDegrees : _degrees[_id >>> CHUNK_BITS];
+		}
+		
+		/**
+		 * Returns the index of the row in rows().
+		 */
+		private int index() {
+			return _ofParents ? _id : (_id & CHUNK_MASK);
+		}
+		
+		public Iterator<N> iterator() {
+			return new Iterator<N>() {
+				private int _slot = nextSlot(0);
+				
+				private int nextSlot(int slot) {
+					while ((slot < rowSlotCount(rows(), degrees(), index())) && (rowSlot(rows(), index(), slot) == IntSet.EMPTY)) {
+						slot++;
+					}
+					return slot;
+				}
+				
+				public boolean hasNext() {
+					return _slot < rowSlotCount(rows(), degrees(), index());
+				}
+				
+				public N next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					N node = nodeAt(rowSlot(rows(), index(), _slot));
+					_slot = nextSlot(_slot + 1);
+					return node;
+				}
+			};
+		}
+		
+		public int size() {
+			return rowSize(rows(), degrees(), index());
+		}
+		
+		public boolean contains(Object o) {
+			Integer other = _ids.get(o);
+			return (other != null) && rowContains(rows(), degrees(), index(), other);
+		}
 	}
 	
 	/**
@@ -109,8 +856,330 @@ public class Graph<N> {
 	 * @return true if n exists in the graph, false if it doesn't.
 	 */
 	public boolean nodeInGraph(N n) {
-		checkRep();
-		return _nodes.containsKey(n);
+		return _ids.containsKey(n);
+	}
+	
+	/**
+	 * Returns the number of nodes in the graph, which are given the ids
+	 * 0 .. nodeCount() - 1 in the order they were added.
+	 */
+	int nodeCount() {
+		return _size;
+	}
+	
+	/**
+	 * Returns the map from the nodes of the graph to their ids, which the
+	 * compact copies of the graph share. Nodes added later are put in the
+	 * same map, with ids past the size of the copies. Safe to read while the
+	 * graph is being modified by another thread.
+	 */
+	Map<N, Integer> idMap() {
+		return _ids;
+	}
+	
+	/**
+	 * Returns the node with a given id.
+	 * @requires 0 <= id < nodeCount()
+	 */
+	@SuppressWarnings("unchecked")
+	N nodeAt(int id) {
+		return (N)_nodeArray[id];
+	}
+	
+	/**
+	 * Returns the number of children of the node with a given id.
+	 * @requires 0 <= id < nodeCount()
+	 */
+	int childCount(int id) {
+		return rowSize(_children[id >>> CHUNK_BITS], _degrees[id >>> CHUNK_BITS], id & CHUNK_MASK);
+	}
+	
+	/**
+	 * Returns the number of slots the children of the node with a given id
+	 * are kept in. For every 0 <= slot < childSlotCount(id), childSlot(id, slot)
+	 * is either the id of a child or IntSet.EMPTY, and every child is in one
+	 * slot.
+	 * @requires 0 <= id < nodeCount()
+	 */
+	int childSlotCount(int id) {
+		return rowSlotCount(_children[id >>> CHUNK_BITS], _degrees[id >>> CHUNK_BITS], id & CHUNK_MASK);
+	}
+	
+	/**
+	 * Returns the child id in a slot of the node with a given id.
+	 * @requires 0 <= id < nodeCount() && 0 <= slot < childSlotCount(id)
+	 * @return The id of a child, or IntSet.EMPTY if the slot is empty.
+	 */
+	int childSlot(int id, int slot) {
+		return rowSlot(_children[id >>> CHUNK_BITS], id & CHUNK_MASK, slot);
+	}
+	
+	/**
+	 * Checks if the node with a given id has a child with another given id.
+	 * @requires 0 <= id < nodeCount()
+	 */
+	private boolean childRowContains(int id, int child) {
+		return rowContains(_children[id >>> CHUNK_BITS], _degrees[id >>> CHUNK_BITS], id & CHUNK_MASK, child);
+	}
+	
+	/**
+	 * Reports how the children of the nodes of the graph are stored.
+	 * @return A report of the number of nodes in each tier of the children
+	 *         representation (no children, up to SMALL_LIMIT children in an
+	 *         array, more in a hash set), and of the memory the children and
+	 *         the parents index take.
+	 */
+	public AdjacencyReport memoryReport() {
+		int emptyNodes = 0;
+		int smallNodes = 0;
+		int hubNodes = 0;
+		// the row arrays themselves
+		long bytes = AdjacencyReport.referenceArrayBytes(_parents.length) + AdjacencyReport.arrayBytes(_inDegrees.length)
+				+ 2 * AdjacencyReport.referenceArrayBytes(_children.length);
+		for (int chunk = 0; chunk < chunkCount(_size); chunk++) {
+			bytes += AdjacencyReport.referenceArrayBytes(_children[chunk].length)
+					+ AdjacencyReport.arrayBytes(_degrees[chunk].length);
+		}
+		for (int id = 0; id < _size; id++) {
+			Object children = _children[id >>> CHUNK_BITS][id & CHUNK_MASK];
+			if (children == EMPTY_ROW) {
+				emptyNodes++;
+			}
+			else if (children instanceof IntSet) {
+				hubNodes++;
+			}
+			else {
+				smallNodes++;
+			}
+			bytes += rowBytes(children) + rowBytes(_parents[id]);
+		}
+		return new AdjacencyReport(emptyNodes, smallNodes, hubNodes, childEdgeCount(), bytes);
+	}
+	
+	/**
+	 * Returns the estimated number of bytes a row takes, where the shared
+	 * EMPTY_ROW takes none.
+	 */
+	private static long rowBytes(Object row) {
+		if (row == EMPTY_ROW) {
+			return 0;
+		}
+		if (row instanceof IntSet) {
+			return AdjacencyReport.OBJECT_BYTES + AdjacencyReport.arrayBytes(((IntSet)row).slotCount());
+		}
+		return AdjacencyReport.arrayBytes(((int[])row).length);
+	}
+	
+	/**
+	 * Returns the number of edges in the graph.
+	 */
+	private long childEdgeCount() {
+		long edges = 0;
+		for (int id = 0; id < _size; id++) {
+			edges += childCount(id);
+		}
+		return edges;
+	}
+	
+	/**
+	 * Returns an immutable compact copy of the graph, which is faster to
+	 * traverse. See CompactGraph.
+	 * @effects Builds a new CompactGraph if the graph was modified since the
+	 *          last call, otherwise reuses the one built by that call.
+	 * @return A CompactGraph with the same nodes and edges as the graph, whose
+	 *         children are sorted in descending order if the nodes are
+	 *         Comparable.
+	 */
+	public CompactGraph<N> freeze() {
+		return freeze(defaultChildOrder());
+	}
+	
+	/**
+	 * Returns the order freeze() sorts the children by, without looking at
+	 * the nodes.
+	 * @return The reverse natural order if all nodes are Comparable, null
+	 *         otherwise.
+	 */
+	Comparator<? super N> defaultChildOrder() {
+		return CompactGraph.defaultChildOrder(!_incomparable);
+	}
+	
+	/**
+	 * Returns an immutable compact copy of the graph, which is faster to
+	 * traverse, with the children of every node sorted by a given order.
+	 * @requires A valid comparator of the nodes in the graph, or null.
+	 * @effects Builds a new CompactGraph if the graph was modified since the
+	 *          last call, or if that call asked for another order. Otherwise
+	 *          reuses the one built by that call. If few nodes and edges were
+	 *          added since the last call, and it asked for the same order, the
+	 *          new CompactGraph copies the rows of the nodes whose children
+	 *          didn't change from the last one. Builds its reachability index,
+	 *          if the index is on and it wasn't built yet.
+	 * @return A CompactGraph with the same nodes and edges as the graph, whose
+	 *         children are sorted by childOrder.
+	 */
+	public CompactGraph<N> freeze(Comparator<? super N> childOrder) {
+		if ((_frozen != null) && ((_changedRows.size() > 0) || (_frozen.size() != _size))) {
+			// rebuild only the rows that changed, if the order is the same
+			_frozen = Objects.equals(_frozen.getChildOrder(), childOrder) ? _frozen.update(this, changedRows()) : null;
+		}
+		if ((_frozen != null) && (childOrder != null)) {
+			// only the order changed: re-sort, keeping the ids and the index
+			_frozen = _frozen.sortChildren(childOrder);
+		}
+		else if ((_frozen == null) || !Objects.equals(_frozen.getChildOrder(), childOrder)) {
+			_frozen = new CompactGraph<N>(this, childOrder);
+		}
+		if (_changedRows == null || (_changedRows.size() > 0)) {
+			_changedRows = new IntSet();
+		}
+		if (_indexReachability) {
+			_frozen.buildReachabilityIndex();
+		}
+		return _frozen;
+	}
+	
+	/**
+	 * Returns the ids of the nodes whose children changed since the compact
+	 * copy was built.
+	 * @requires _changedRows != null
+	 * @return The ids in _changedRows, in increasing order.
+	 */
+	private int[] changedRows() {
+		int[] ids = new int[_changedRows.size()];
+		int count = 0;
+		for (int slot = 0; slot < _changedRows.slotCount(); slot++) {
+			if (_changedRows.slotAt(slot) != IntSet.EMPTY) {
+				ids[count++] = _changedRows.slotAt(slot);
+			}
+		}
+		Arrays.sort(ids);
+		return ids;
+	}
+	
+	/**
+	 * Turns the reachability index of the graph on or off. When it is on, the
+	 * compact copies returned by freeze() have a ReachabilityIndex, which lets
+	 * DfsAlgorithm and PathFinder skip searches between nodes that have no
+	 * path between them. The index is rebuilt by the first freeze() after the
+	 * graph is modified.
+	 * @effects Turns the reachability index on if enabled is true, off
+	 *          otherwise.
+	 */
+	public void setReachabilityIndexed(boolean enabled) {
+		_indexReachability = enabled;
+	}
+	
+	/**
+	 * Checks if the reachability index of the graph is on.
+	 * @return true if the reachability index is on, false if it is off.
+	 */
+	public boolean isReachabilityIndexed() {
+		return _indexReachability;
+	}
+	
+	/**
+	 * Returns an immutable view of the graph as it is now, which can be read,
+	 * searched and frozen by other threads while this graph keeps being
+	 * modified. The view shares the children of the nodes with the graph, in
+	 * chunks of CHUNK_SIZE nodes, so taking it costs a copy of one reference
+	 * per chunk, and no copy of the rows or the edges. A chunk is copied the
+	 * first time the children of a node in it change after the snapshot, and
+	 * so is the hash set of a node whose children are kept in one, so the
+	 * view keeps seeing the old ones.
+	 * <p>
+	 * The snapshot is live until it is closed, and the graph keeps copying
+	 * chunks and hash sets while any snapshot is live, so every snapshot
+	 * should be closed once its readers are done with it (e.g. by
+	 * try-with-resources). A snapshot which is dropped without being closed
+	 * stops being live once it is garbage collected.
+	 * Like the other methods of Graph, this must not be called while the graph
+	 * is being modified by another thread.
+	 * @effects Registers a new live snapshot of the graph.
+	 * @return A GraphSnapshot with the nodes and edges of the graph.
+	 */
+	public GraphSnapshot<N> snapshot() {
+		if (_childEpochs == null) {
+			_childEpochs = new int[_nodeArray.length];
+		}
+		_epoch++;
+		int chunks = chunkCount(_size);
+		GraphSnapshot<N> snapshot = new GraphSnapshot<N>(this, _nodeArray, Arrays.copyOf(_children, chunks),
+				Arrays.copyOf(_degrees, chunks), _size, _version, defaultChildOrder());
+		_liveSnapshots.add(snapshot);
+		return snapshot;
+	}
+	
+	/**
+	 * Forgets a closed snapshot, so the graph stops copying the rows it shares
+	 * with it.
+	 * @effects Removes snapshot from the live snapshots of the graph.
+	 */
+	void release(GraphSnapshot<N> snapshot) {
+		_liveSnapshots.remove(snapshot);
+	}
+	
+	/**
+	 * Returns the number of snapshots of the graph which were not closed (or
+	 * garbage collected) yet. Safe to call while snapshots are closed by other
+	 * threads.
+	 */
+	public int getLiveSnapshotCount() {
+		return _liveSnapshots.size();
+	}
+	
+	/**
+	 * Estimates the memory held only by the live snapshots of the graph: their
+	 * own copies of the rows arrays, the children rows which the graph has
+	 * replaced or copied since, and old node arrays. Rows shared by several
+	 * snapshots are counted once.
+	 * @return The estimated number of bytes which would be reclaimed if all
+	 *         live snapshots were closed and dropped.
+	 */
+	public long getRetainedSnapshotBytes() {
+		List<GraphSnapshot<N>> snapshots;
+		synchronized (_liveSnapshots) {
+			snapshots = new ArrayList<GraphSnapshot<N>>(_liveSnapshots);
+		}
+		Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		long bytes = 0;
+		for (GraphSnapshot<N> snapshot : snapshots) {
+			Object[][] rows = snapshot.rows();
+			int[][] degrees = snapshot.degrees();
+			bytes += 2 * AdjacencyReport.referenceArrayBytes(rows.length);
+			if ((snapshot.nodeArray() != _nodeArray) && counted.add(snapshot.nodeArray())) {
+				bytes += AdjacencyReport.referenceArrayBytes(snapshot.nodeArray().length);
+			}
+			for (int chunk = 0; chunk < rows.length; chunk++) {
+				// a chunk the graph still has holds the same rows
+				if ((rows[chunk] == _children[chunk]) || !counted.add(rows[chunk])) {
+					continue;
+				}
+				bytes += AdjacencyReport.referenceArrayBytes(rows[chunk].length)
+						+ AdjacencyReport.arrayBytes(degrees[chunk].length);
+				int count = Math.min(rows[chunk].length, snapshot.size() - (chunk << CHUNK_BITS));
+				for (int k = 0; k < count; k++) {
+					Object row = rows[chunk][k];
+					if ((row != _children[chunk][k]) && counted.add(row)) {
+						bytes += rowBytes(row);
+					}
+				}
+			}
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Returns the id of a node. The nodes of the graph get the ids
+	 * 0, 1, 2, ... in the order they are added, and the ids are used by the
+	 * bulk operations (addEdges) and kept by the compact copies (freeze).
+	 * Safe to call while the graph is being modified by another thread.
+	 * @requires A valid node of type N.
+	 * @return The id of n, or -1 if n is not in the graph.
+	 */
+	public int indexOf(N n) {
+		Integer id = (n == null) ? null : _ids.get(n);
+		return (id == null) ? -1 : id;
 	}
 	
 //	/**
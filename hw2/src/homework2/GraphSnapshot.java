@@ -0,0 +1,296 @@
+package homework2;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/***
+ * GraphSnapshot is an immutable view of a Graph as it was when the snapshot
+ * was taken (see Graph.snapshot()). It can be read, searched and frozen by
+ * any number of threads while the graph keeps being modified, and never sees
+ * nodes or edges added after it was taken.
+ * <p>
+ * A snapshot shares the children of the nodes with its graph, in chunks which
+ * the graph copies before changing them, so taking it costs a copy of one
+ * reference per chunk of Graph.CHUNK_SIZE nodes. A snapshot should be closed
+ * once its readers are done with it, so the graph stops preserving the chunks
+ * and rows it shares with it. The memory it holds is reclaimed once it is
+ * closed and no longer referenced; a snapshot which is never closed stops
+ * being preserved once it is garbage collected. Reading a closed snapshot is
+ * an error.
+ */
+
+/*
+ * Representation invariant:
+ * _size <= _nodeArray.length, and _nodeArray[id] is the node whose id in _graph is id, for
+ * every 0 <= id < _size. _rows.length == _degrees.length is the number of chunks that
+ * hold _size nodes.
+ * row(id) == _rows[id >>> Graph.CHUNK_BITS][id & Graph.CHUNK_MASK] is the children row of
+ * id in _graph when the snapshot was taken: either an int[] whose first degree(id) cells
+ * are the children (from _degrees, in the same way), or an IntSet (and then degree(id) is
+ * ignored). No chunk, and no row, is modified at the ids below _size while the snapshot is
+ * open - this constraint is enforced by _graph (Graph.unshareChunk, Graph.unshareChildren).
+ */
+public class GraphSnapshot<N> implements Traversable<N>, AutoCloseable {
+
+    private final Graph<N>              _graph;
+    private final Object[]              _nodeArray;
+    private final Object[][]            _rows;
+    private final int[][]               _degrees;
+    private final int                   _size;
+    private final long                  _version;
+    private final Comparator<? super N> _defaultOrder;
+    private volatile boolean            _closed;
+    private volatile CompactGraph<N>    _frozen;
+
+    /**
+     * Creates a snapshot of the first size nodes of a graph from the given
+     * arrays of chunks, which it takes ownership of (except nodeArray and the
+     * chunks, which it shares with graph), and the order freeze() sorts
+     * children by.
+     */
+    GraphSnapshot(Graph<N> graph, Object[] nodeArray, Object[][] rows, int[][] degrees, int size, long version,
+            Comparator<? super N> defaultOrder) {
+        _graph = graph;
+        _nodeArray = nodeArray;
+        _rows = rows;
+        _degrees = degrees;
+        _size = size;
+        _version = version;
+        _defaultOrder = defaultOrder;
+        _closed = false;
+        _frozen = null;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert (_rows.length == _degrees.length) : "Rows don't match degrees";
+        assert (_rows.length == (_size + Graph.CHUNK_MASK) >>> Graph.CHUNK_BITS) : "Rows don't match the number of nodes";
+        assert (_size <= _nodeArray.length) : "Nodes don't match the number of nodes";
+    }
+
+    private void checkOpen() {
+        if (_closed) {
+            throw new IllegalStateException("Snapshot is closed");
+        }
+    }
+
+    Object[] nodeArray() {
+        return _nodeArray;
+    }
+
+    Object[][] rows() {
+        return _rows;
+    }
+
+    int[][] degrees() {
+        return _degrees;
+    }
+
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Returns the id of a node in the snapshot.
+     *
+     * @return The id of n, or -1 if n is not in the snapshot.
+     */
+    @SuppressWarnings("unchecked")
+    private int indexOf(Object n) {
+        int id = _graph.indexOf((N)n);
+        return (id < _size) ? id : -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private N nodeAt(int id) {
+        return (N)_nodeArray[id];
+    }
+
+    private Object row(int id) {
+        return _rows[id >>> Graph.CHUNK_BITS][id & Graph.CHUNK_MASK];
+    }
+
+    private int degree(int id) {
+        return _degrees[id >>> Graph.CHUNK_BITS][id & Graph.CHUNK_MASK];
+    }
+
+    private int rowSlotCount(int id) {
+        Object row = row(id);
+        return (row instanceof IntSet) ? ((IntSet)row).slotCount() : degree(id);
+    }
+
+    private int rowSlot(int id, int slot) {
+        Object row = row(id);
+        return (row instanceof IntSet) ? ((IntSet)row).slotAt(slot) : ((int[])row)[slot];
+    }
+
+    /**
+     * Returns the modification version the graph had when the snapshot was
+     * taken. See Graph.getVersion().
+     */
+    public long getVersion() {
+        return _version;
+    }
+
+    /**
+     * Checks if the snapshot was closed.
+     *
+     * @return true if close() was called, false otherwise.
+     */
+    public boolean isClosed() {
+        return _closed;
+    }
+
+    /**
+     * Returns a set of all nodes in the snapshot.
+     *
+     * @throws IllegalStateException if the snapshot is closed.
+     * @return An unmodifiable set of all nodes in the snapshot, which iterates
+     *         over them in the order they were added to the graph.
+     */
+    public Set<N> getNodes() {
+        checkOpen();
+        return new AbstractSet<N>() {
+            public Iterator<N> iterator() {
+                return new Iterator<N>() {
+                    private int _id = 0;
+
+                    public boolean hasNext() {
+                        return _id < _size;
+                    }
+
+                    public N next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return nodeAt(_id++);
+                    }
+                };
+            }
+
+            public int size() {
+                return _size;
+            }
+
+            public boolean contains(Object o) {
+                return indexOf(o) >= 0;
+            }
+        };
+    }
+
+    /**
+     * Returns a set of all the children of a given node in the snapshot.
+     *
+     * @requires A valid node of type N.
+     * @throws IllegalStateException if the snapshot is closed.
+     * @return An unmodifiable set of all the children of node n, or null if n
+     *         is not in the snapshot.
+     */
+    public Set<N> getChildren(N n) {
+        checkOpen();
+        final int id = indexOf(n);
+        if (id < 0) {
+            return null;
+        }
+        return new AbstractSet<N>() {
+            public Iterator<N> iterator() {
+                return new Iterator<N>() {
+                    private int _slot = nextSlot(0);
+
+                    private int nextSlot(int slot) {
+                        while ((slot < rowSlotCount(id)) && (rowSlot(id, slot) == IntSet.EMPTY)) {
+                            slot++;
+                        }
+                        return slot;
+                    }
+
+                    public boolean hasNext() {
+                        return _slot < rowSlotCount(id);
+                    }
+
+                    public N next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        N node = nodeAt(rowSlot(id, _slot));
+                        _slot = nextSlot(_slot + 1);
+                        return node;
+                    }
+                };
+            }
+
+            public int size() {
+                Object row = row(id);
+                return (row instanceof IntSet) ? ((IntSet)row).size() : degree(id);
+            }
+        };
+    }
+
+    /**
+     * Checks if a given node is in the snapshot.
+     *
+     * @requires A valid node of type N.
+     * @throws IllegalStateException if the snapshot is closed.
+     * @return true if n was in the graph when the snapshot was taken, false
+     *         otherwise.
+     */
+    public boolean nodeInGraph(N n) {
+        checkOpen();
+        return indexOf(n) >= 0;
+    }
+
+    /**
+     * Returns an immutable compact copy of the snapshot, with children sorted
+     * in descending order if the nodes are Comparable. See Graph.freeze().
+     *
+     * @throws IllegalStateException if the snapshot is closed.
+     * @return A CompactGraph with the nodes and edges of the snapshot, where
+     *         every node has the same id as in the graph.
+     */
+    public CompactGraph<N> freeze() {
+        return freeze(_defaultOrder);
+    }
+
+    /**
+     * Returns an immutable compact copy of the snapshot, with the children of
+     * every node sorted by a given order. The copy is built once, and reused
+     * by later calls (re-sorted if they ask for another order).
+     *
+     * @requires A valid comparator of the nodes in the snapshot, or null.
+     * @throws IllegalStateException if the snapshot is closed.
+     * @return A CompactGraph with the nodes and edges of the snapshot, where
+     *         every node has the same id as in the graph, and the children are
+     *         sorted by childOrder.
+     */
+    public CompactGraph<N> freeze(Comparator<? super N> childOrder) {
+        checkOpen();
+        CompactGraph<N> frozen = _frozen;
+        if ((frozen != null) && (childOrder != null)) {
+            frozen = frozen.sortChildren(childOrder);
+        } else if ((frozen == null) || !Objects.equals(frozen.getChildOrder(), childOrder)) {
+            frozen = CompactGraph.snapshot(getNodes(), n -> getChildren(n), childOrder);
+        }
+        _frozen = frozen;
+        return frozen;
+    }
+
+    /**
+     * Closes the snapshot. Must be called only once all readers of the
+     * snapshot are done with it.
+     *
+     * @effects Makes the snapshot unreadable, and lets its graph stop
+     *          preserving the rows it shares with it. Does nothing if the
+     *          snapshot is already closed.
+     */
+    @Override
+    public void close() {
+        if (!_closed) {
+            _closed = true;
+            _graph.release(this);
+        }
+    }
+}
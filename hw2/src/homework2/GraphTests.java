@@ -1,8 +1,16 @@
 package homework2;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
@@ -71,6 +79,116 @@ public class GraphTests extends ScriptFileTests {
         assertEquals("addEdge(n1, n2)", 1, graph.addEdge(n1, n2));
     }
 
+    /**
+     * Builds a graph with a chain of edges and checks its representation
+     * invariant on demand. Expects no assertion to fail
+     */
+    @Test
+    public void CheckRepOnDemand() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode prev = new WeightedNode("n0", 0);
+        graph.addNode(prev);
+        for (int i = 1; i < 100; i++) {
+            WeightedNode n = new WeightedNode("n" + i, i);
+            graph.addNode(n);
+            graph.addEdge(prev, n);
+            prev = n;
+        }
+        graph.checkRep();
+        assertEquals("graph.getNodes().size()", 100, graph.getNodes().size());
+    }
+
+    /**
+     * Adds nodes and edges, including a duplicate edge, after getting a view
+     * of the children of a node. Expects the view to reflect the edges added
+     * after it was taken, without duplicates
+     */
+    @Test
+    public void ChildrenViewReflectsChanges() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode n1 = new WeightedNode("n1", 1);
+        WeightedNode n2 = new WeightedNode("n2", 2);
+        WeightedNode n3 = new WeightedNode("n3", 3);
+        graph.addNode(n1);
+        Set<WeightedNode> children = graph.getChildren(n1);
+        assertEquals("graph.getChildren(n1).size()", 0, children.size());
+        graph.addNode(n2);
+        graph.addNode(n3);
+        graph.addEdge(n1, n2);
+        graph.addEdge(n1, n3);
+        graph.addEdge(n1, n2);
+        assertEquals("graph.getChildren(n1)", new HashSet<WeightedNode>(Arrays.asList(n2, n3)), children);
+        assertEquals("graph.getChildren(n1).contains(n1)", false, children.contains(n1));
+        assertEquals("graph.getChildren(n2).isEmpty()", true, graph.getChildren(n2).isEmpty());
+        assertEquals("graph.getChildren(new node)", null, graph.getChildren(new WeightedNode("n4", 4)));
+    }
+
+    /**
+     * Gives one node no children, one a few children and one more children
+     * than fit in a small array, adding every edge twice. Expects one node in
+     * each tier of the memory report, and all children to be kept once
+     */
+    @Test
+    public void AdjacencyTiers() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[2 * Graph.SMALL_LIMIT];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, i);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            graph.addEdge(nodes[0], nodes[i]);
+            assertEquals("graph.addEdge(n0, n" + i + ")", 1, graph.addEdge(nodes[0], nodes[i]));
+        }
+        graph.addEdge(nodes[1], nodes[0]);
+        graph.addEdge(nodes[1], nodes[2]);
+        assertEquals("graph.addEdge(n1, n2)", 1, graph.addEdge(nodes[1], nodes[2]));
+        for (int i = 2; i < nodes.length; i++) {
+            graph.addEdge(nodes[i], nodes[0]);
+        }
+        graph.checkRep();
+        AdjacencyReport report = graph.memoryReport();
+        assertEquals("report.getHubNodes()", 1, report.getHubNodes());
+        assertEquals("report.getSmallNodes()", nodes.length - 1, report.getSmallNodes());
+        assertEquals("report.getEdges()", nodes.length + 2 + nodes.length - 2, report.getEdges());
+        assertEquals("graph.getChildren(n0)", new HashSet<WeightedNode>(Arrays.asList(nodes)),
+                graph.getChildren(nodes[0]));
+        assertEquals("graph.getChildren(n1)", new HashSet<WeightedNode>(Arrays.asList(nodes[0], nodes[2])),
+                graph.getChildren(nodes[1]));
+
+        WeightedNode leaf = new WeightedNode("leaf", 0);
+        graph.addNode(leaf);
+        assertEquals("graph.memoryReport().getEmptyNodes()", 1, graph.memoryReport().getEmptyNodes());
+    }
+
+    /**
+     * Adds edges into and out of a node. Expects getParents, getInDegree and
+     * getOutDegree to match the edges, and -1 degrees for a node that is not
+     * in the graph
+     */
+    @Test
+    public void ParentsIndex() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode n1 = new WeightedNode("n1", 1);
+        WeightedNode n2 = new WeightedNode("n2", 2);
+        WeightedNode n3 = new WeightedNode("n3", 3);
+        graph.addNode(n1);
+        graph.addNode(n2);
+        graph.addNode(n3);
+        Set<WeightedNode> parents = graph.getParents(n2);
+        graph.addEdge(n1, n2);
+        graph.addEdge(n3, n2);
+        graph.addEdge(n3, n2);
+        graph.addEdge(n2, n1);
+        graph.checkRep();
+        assertEquals("graph.getParents(n2)", new HashSet<WeightedNode>(Arrays.asList(n1, n3)), parents);
+        assertEquals("graph.getInDegree(n2)", 2, graph.getInDegree(n2));
+        assertEquals("graph.getOutDegree(n2)", 1, graph.getOutDegree(n2));
+        assertEquals("graph.getInDegree(n3)", 0, graph.getInDegree(n3));
+        assertEquals("graph.getParents(n3).isEmpty()", true, graph.getParents(n3).isEmpty());
+        assertEquals("graph.getInDegree(new node)", -1, graph.getInDegree(new WeightedNode("n4", 4)));
+    }
+
     // white-box tests for DFS
     /**
      * Invokes DfsAlgorithm.invokeAlgorithm with two nodes and one edge between
@@ -103,11 +221,13 @@ public class GraphTests extends ScriptFileTests {
     }
 
     /**
-     * Invokes DfsAlgorithm.invokeAlgorithm, after algorithm is done expects all
-     * nodes in graph to be white
+     * Invokes DfsAlgorithm.invokeAlgorithm with two DfsAlgorithm objects on the
+     * same nodes, expects the nodes to be unchanged (equal to fresh copies,
+     * with the same hash codes), and every object to keep the back edges of
+     * its own run
      */
     @Test
-    public void AllNodesWhite() {
+    public void DfsLeavesNodesUntouched() {
         Graph<WeightedNode> graph = new Graph<WeightedNode>();
         WeightedNode n1 = new WeightedNode("n1", 1);
         WeightedNode n2 = new WeightedNode("n2", 2);
@@ -117,11 +237,19 @@ public class GraphTests extends ScriptFileTests {
         graph.addNode(n3);
         graph.addEdge(n1, n2);
         graph.addEdge(n2, n3);
-        DfsAlgorithm dfs = new DfsAlgorithm(graph);
-        dfs.invokeAlgorithm(n1, n3);
-        assertEquals("node.getColor()", "White", n1.getColor());
-        assertEquals("node.getColor()", "White", n2.getColor());
-        assertEquals("node.getColor()", "White", n3.getColor());
+        graph.addEdge(n3, n2);
+        DfsAlgorithm first = new DfsAlgorithm(graph);
+        DfsAlgorithm second = new DfsAlgorithm(graph);
+        first.invokeAlgorithm(n1, n3);
+        second.invokeAlgorithm(n3);
+        for (WeightedNode n : new WeightedNode[] { n1, n2, n3 }) {
+            WeightedNode copy = new WeightedNode(n.getName(), n.getCost());
+            assertEquals("node after two runs", copy, n);
+            assertEquals("node.hashCode() after two runs", copy.hashCode(), n.hashCode());
+            assertEquals("node.toString() after two runs", copy.toString(), n.toString());
+        }
+        assertEquals("first.getBackEdges(n3)", 0, first.getBackEdges(n3));
+        assertEquals("second.getBackEdges(n2)", 1, second.getBackEdges(n2));
     }
 
     /**
@@ -159,8 +287,8 @@ public class GraphTests extends ScriptFileTests {
     }
 
     /**
-     * Invokes DfsAlgorithm.invokeAlgorithm for a graph with a back-edge.
-     * Expects node.backEdges=1
+     * Invokes DfsAlgorithm.run for a graph with a back-edge. Expects
+     * dfs.getBackEdges(node)=1
      */
     @Test
     public void OneBackEdge() {
@@ -176,7 +304,7 @@ public class GraphTests extends ScriptFileTests {
         graph.addEdge(n2, n1);
         DfsAlgorithm dfs = new DfsAlgorithm(graph);
         dfs.run(n1, n3);
-        assertEquals("WeightedNode.getBackEdges()", 1, n2.getBackEdges());
+        assertEquals("dfs.getBackEdges(n2)", 1, dfs.getBackEdges(n2));
     }
 
     /**
@@ -194,6 +322,146 @@ public class GraphTests extends ScriptFileTests {
         assertEquals("dfs.invokeAlgorithm(n1, n2)", null, dfs.invokeAlgorithm(n1, n2));
     }
 
+    /**
+     * Runs DfsAlgorithm from several threads at the same time, on the same
+     * graph. Expects every thread to find the same path as a single run
+     */
+    @Test
+    public void ConcurrentDfs() throws InterruptedException {
+        final Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        final WeightedNode[] nodes = new WeightedNode[50];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, i % 7);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            graph.addEdge(nodes[i], nodes[(i + 1) % nodes.length]);
+            graph.addEdge(nodes[i], nodes[(i * 3 + 1) % nodes.length]);
+            graph.addEdge(nodes[i], nodes[(i * 5 + 2) % nodes.length]);
+        }
+        final NodeCountingPath expected = new DfsAlgorithm(graph).invokeAlgorithm(nodes[0], nodes[42]);
+        final CompactGraph<WeightedNode> compact = graph.freeze();
+        final boolean[] same = new boolean[8];
+        Thread[] threads = new Thread[same.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int index = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    DfsAlgorithm dfs = new DfsAlgorithm(compact);
+                    boolean allSame = true;
+                    for (int i = 0; i < 100; i++) {
+                        NodeCountingPath path = dfs.invokeAlgorithm(nodes[0], nodes[42]);
+                        allSame = allSame && expected.equals(path) && (expected.getCost() == path.getCost());
+                    }
+                    same[index] = allSame;
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (boolean allSame : same) {
+            assertEquals("same path in every thread", true, allSame);
+        }
+    }
+
+    /**
+     * Invokes DfsAlgorithm.invokeAlgorithm on a long chain of nodes, deeper
+     * than the Java call stack allows for recursion. Expects a path through
+     * the whole chain
+     */
+    @Test
+    public void DeepChainDfs() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode first = new WeightedNode("n0", 1);
+        WeightedNode prev = first;
+        graph.addNode(first);
+        for (int i = 1; i < 20000; i++) {
+            WeightedNode n = new WeightedNode("n" + i, 1);
+            graph.addNode(n);
+            graph.addEdge(prev, n);
+            prev = n;
+        }
+        DfsAlgorithm dfs = new DfsAlgorithm(graph);
+        NodeCountingPath path = dfs.invokeAlgorithm(first, prev);
+        assertEquals("path.getCost()", 20000.0, path.getCost(), 0);
+        assertEquals("path.getEnd()", prev, path.getEnd());
+    }
+
+    /**
+     * Reuses one DfsAlgorithm for many runs on a graph with cycles, mixing
+     * runs to an end node and full traversals, so every run starts from the
+     * visit stamps of the one before. Expects every run to return the same
+     * path, and the same back edges, as a new DfsAlgorithm
+     */
+    @Test
+    public void ReusedDfsMatchesFreshDfs() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[50];
+        java.util.Random random = new java.util.Random(5);
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, 1 + random.nextInt(5));
+            graph.addNode(nodes[i]);
+        }
+        for (int e = 0; e < 120; e++) {
+            graph.addEdge(nodes[random.nextInt(nodes.length)], nodes[random.nextInt(nodes.length)]);
+        }
+        DfsAlgorithm reused = new DfsAlgorithm(graph);
+        for (int run = 0; run < 300; run++) {
+            WeightedNode start = nodes[random.nextInt(nodes.length)];
+            DfsAlgorithm fresh = new DfsAlgorithm(graph);
+            if (run % 3 == 0) {
+                assertEquals("reused.invokeAlgorithm(" + start + ") in run " + run, fresh.invokeAlgorithm(start),
+                        reused.invokeAlgorithm(start));
+            } else {
+                WeightedNode end = nodes[random.nextInt(nodes.length)];
+                assertEquals("reused.invokeAlgorithm(" + start + ", " + end + ") in run " + run,
+                        fresh.invokeAlgorithm(start, end), reused.invokeAlgorithm(start, end));
+            }
+            for (WeightedNode n : nodes) {
+                assertEquals("reused.getBackEdges(" + n + ") in run " + run, fresh.getBackEdges(n),
+                        reused.getBackEdges(n));
+            }
+        }
+    }
+
+    /**
+     * Invokes DfsAlgorithm.runToAll with every node of a graph with back edges
+     * as an end node. Expects pathTo and costTo of every node to match
+     * invokeAlgorithm for that node alone
+     */
+    @Test
+    public void RunToAllMatchesSingleRuns() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[6];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, i % 3);
+            graph.addNode(nodes[i]);
+        }
+        graph.addEdge(nodes[0], nodes[1]);
+        graph.addEdge(nodes[0], nodes[2]);
+        graph.addEdge(nodes[1], nodes[0]);
+        graph.addEdge(nodes[1], nodes[3]);
+        graph.addEdge(nodes[2], nodes[1]);
+        graph.addEdge(nodes[2], nodes[4]);
+        graph.addEdge(nodes[4], nodes[0]);
+        DfsAlgorithm all = new DfsAlgorithm(graph);
+        all.runToAll(nodes[0], Arrays.asList(nodes));
+        DfsAlgorithm single = new DfsAlgorithm(graph);
+        for (WeightedNode end : nodes) {
+            NodeCountingPath expected = single.invokeAlgorithm(nodes[0], end);
+            NodeCountingPath actual = all.pathTo(end);
+            assertEquals("all.pathTo(end)", expected, actual);
+            if (expected != null) {
+                assertEquals("all.pathTo(end).getCost()", expected.getCost(), actual.getCost(), 0);
+                assertEquals("all.costTo(end)", (int)expected.getCost(), all.costTo(end));
+            } else {
+                assertEquals("all.costTo(end)", -1, all.costTo(end));
+            }
+        }
+    }
+
     // white-box tests for PathFinder
     /**
      * Invokes PathFinder.findMinPath() with no start nodes. Expects to return
@@ -270,4 +538,1263 @@ public class GraphTests extends ScriptFileTests {
         assertEquals("pf.findMinPath()", ncp, pf.findMinPath());
     }
 
+    // white-box tests for CompactGraph
+    /**
+     * Freezes a graph with two nodes and one edge. Expects the compact graph to
+     * hold the same nodes and edge
+     */
+    @Test
+    public void FreezeKeepsEdges() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode n1 = new WeightedNode("n1", 5);
+        WeightedNode n2 = new WeightedNode("n2", 5);
+        graph.addNode(n1);
+        graph.addNode(n2);
+        graph.addEdge(n1, n2);
+        CompactGraph<WeightedNode> compact = graph.freeze();
+        assertEquals("compact.size()", 2, compact.size());
+        assertEquals("compact.edgeCount()", 1, compact.edgeCount());
+        assertEquals("compact.getChildren(n1)", n2, compact.getChildren(n1).get(0));
+        assertEquals("compact.childCount(n2)", 0, compact.childCount(compact.indexOf(n2)));
+    }
+
+    /**
+     * Freezes a graph twice, then modifies it and freezes it again. Expects the
+     * same compact graph to be returned until the graph is modified
+     */
+    @Test
+    public void FreezeAfterModification() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode n1 = new WeightedNode("n1", 5);
+        graph.addNode(n1);
+        CompactGraph<WeightedNode> compact = graph.freeze();
+        assertSame("graph.freeze()", compact, graph.freeze());
+        graph.addNode(new WeightedNode("n2", 5));
+        assertEquals("graph.freeze().size()", 2, graph.freeze().size());
+        assertEquals("compact.size()", 1, compact.size());
+    }
+
+    /**
+     * Freezes a large graph, then repeatedly adds a few edges (to small rows
+     * and to a row of many children) or a node and freezes it again. Expects
+     * every compact graph to hold the same nodes, ids and sorted children as
+     * a compact graph built from scratch, the earlier compact graphs to stay
+     * unchanged, and a reused DfsAlgorithm to find the same paths as a new one
+     */
+    @Test
+    public void FreezeAfterFewEdits() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        List<WeightedNode> nodes = new ArrayList<WeightedNode>();
+        java.util.Random random = new java.util.Random(11);
+        for (int i = 0; i < 400; i++) {
+            nodes.add(new WeightedNode("n" + i, random.nextInt(4)));
+            graph.addNode(nodes.get(i));
+        }
+        for (int e = 0; e < 1200; e++) {
+            graph.addEdge(nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())));
+        }
+        for (int i = 0; i < 40; i++) {
+            graph.addEdge(nodes.get(0), nodes.get(random.nextInt(nodes.size())));
+        }
+        DfsAlgorithm reused = new DfsAlgorithm(graph);
+        CompactGraph<WeightedNode> previous = graph.freeze(DfsAlgorithm.VISIT_ORDER);
+        for (int step = 0; step < 30; step++) {
+            int previousEdges = previous.edgeCount();
+            if (step % 5 == 4) {
+                nodes.add(new WeightedNode("n" + nodes.size(), step % 4));
+                graph.addNode(nodes.get(nodes.size() - 1));
+            }
+            for (int e = 0; e < 3; e++) {
+                WeightedNode source = nodes.get((e == 0) ? 0 : random.nextInt(nodes.size()));
+                graph.addEdge(source, nodes.get(random.nextInt(nodes.size())));
+            }
+            CompactGraph<WeightedNode> updated = graph.freeze(DfsAlgorithm.VISIT_ORDER);
+            CompactGraph<WeightedNode> rebuilt = new CompactGraph<WeightedNode>(graph, DfsAlgorithm.VISIT_ORDER);
+            assertEquals("updated.size() in step " + step, rebuilt.size(), updated.size());
+            assertEquals("updated.edgeCount() in step " + step, rebuilt.edgeCount(), updated.edgeCount());
+            assertEquals("updated.getNodes() in step " + step, graph.getNodes(), updated.getNodes());
+            for (WeightedNode n : nodes) {
+                assertEquals("updated.indexOf(" + n + ")", graph.indexOf(n), updated.indexOf(n));
+                assertEquals("updated.getChildren(" + n + ") in step " + step, rebuilt.getChildren(n),
+                        updated.getChildren(n));
+            }
+            assertEquals("previous.edgeCount() in step " + step, previousEdges, previous.edgeCount());
+            assertEquals("previous.indexOf(last node)", (step % 5 == 4) ? -1 : nodes.size() - 1,
+                    previous.indexOf(nodes.get(nodes.size() - 1)));
+            WeightedNode start = nodes.get(random.nextInt(nodes.size()));
+            WeightedNode end = nodes.get(random.nextInt(nodes.size()));
+            assertEquals("reused.invokeAlgorithm(" + start + ", " + end + ") in step " + step,
+                    new DfsAlgorithm(graph).invokeAlgorithm(start, end), reused.invokeAlgorithm(start, end));
+            previous = updated;
+        }
+    }
+
+    /**
+     * Freezes a graph whose node has three children. Expects the children to be
+     * sorted in descending order, by cost and then by name
+     */
+    @Test
+    public void FreezeSortsChildren() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode parent = new WeightedNode("p", 1);
+        WeightedNode a = new WeightedNode("a", 2);
+        WeightedNode b = new WeightedNode("b", 2);
+        WeightedNode c = new WeightedNode("c", 1);
+        graph.addNode(parent);
+        graph.addNode(a);
+        graph.addNode(b);
+        graph.addNode(c);
+        graph.addEdge(parent, c);
+        graph.addEdge(parent, a);
+        graph.addEdge(parent, b);
+        List<WeightedNode> children = graph.freeze().getChildren(parent);
+        assertEquals("children.get(0)", b, children.get(0));
+        assertEquals("children.get(1)", a, children.get(1));
+        assertEquals("children.get(2)", c, children.get(2));
+    }
+
+    /**
+     * Freezes graphs of Comparable nodes, then adds a node which is not
+     * Comparable. Expects the children to be sorted in descending order, the
+     * same copy to be returned while the graph is unchanged, and no order
+     * once a node is not Comparable, in a Graph, its snapshots and a
+     * ConcurrentGraph
+     */
+    @Test
+    public void FreezeDefaultOrder() {
+        Graph<Object> graph = new Graph<Object>();
+        ConcurrentGraph<Object> concurrent = new ConcurrentGraph<Object>();
+        for (String n : new String[] { "a", "b" }) {
+            graph.addNode(n);
+            concurrent.addNode(n);
+        }
+        graph.addEdge("a", "b");
+        concurrent.addEdge("a", "b");
+        CompactGraph<Object> frozen = graph.freeze();
+        assertEquals("graph.freeze().getChildOrder() != null", true, frozen.getChildOrder() != null);
+        assertSame("graph.freeze() again", frozen, graph.freeze());
+        assertEquals("concurrent.freeze().getChildOrder() != null", true,
+                concurrent.freeze().getChildOrder() != null);
+        assertSame("concurrent.freeze() again", concurrent.freeze(), concurrent.freeze());
+
+        GraphSnapshot<Object> before = graph.snapshot();
+        Object other = new Object();
+        graph.addNode(other);
+        concurrent.addNode(other);
+        GraphSnapshot<Object> after = graph.snapshot();
+        assertEquals("graph.freeze().getChildOrder() with a node not Comparable", null,
+                graph.freeze().getChildOrder());
+        assertEquals("concurrent.freeze().getChildOrder() with a node not Comparable", null,
+                concurrent.freeze().getChildOrder());
+        assertEquals("before.freeze().getChildOrder() != null", true, before.freeze().getChildOrder() != null);
+        assertEquals("after.freeze().getChildOrder()", null, after.freeze().getChildOrder());
+        before.close();
+        after.close();
+    }
+
+    /**
+     * Invokes DfsAlgorithm.invokeAlgorithm on a compact graph, expects the same
+     * path as on the graph it was built from
+     */
+    @Test
+    public void DfsOnCompactGraph() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode n1 = new WeightedNode("n1", 1);
+        WeightedNode n2 = new WeightedNode("n2", 2);
+        WeightedNode n3 = new WeightedNode("n3", 3);
+        graph.addNode(n1);
+        graph.addNode(n2);
+        graph.addNode(n3);
+        graph.addEdge(n1, n2);
+        graph.addEdge(n1, n3);
+        graph.addEdge(n3, n2);
+        DfsAlgorithm dfs = new DfsAlgorithm(graph.freeze());
+        assertEquals("dfs.invokeAlgorithm(n1, n2)", new DfsAlgorithm(graph).invokeAlgorithm(n1, n2),
+                dfs.invokeAlgorithm(n1, n2));
+    }
+
+    /**
+     * Builds a compact graph whose children are sorted by cost, which many
+     * nodes share, and sorts a compact graph with the default order by cost.
+     * Expects the children of every node sorted by cost, each sort keeping the
+     * children of the same cost in the order they had before it, and both
+     * graphs to have the same children
+     */
+    @Test
+    public void CompactChildrenSortedWithTies() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[40];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, i % 3);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            for (int j = 0; j < nodes.length; j++) {
+                if ((i * 5 + j * 11) % 7 < 3) {
+                    graph.addEdge(nodes[i], nodes[j]);
+                }
+            }
+        }
+        Comparator<WeightedNode> byCost = Comparator.comparingInt(WeightedNode::getCost);
+        CompactGraph<WeightedNode> unsorted = new CompactGraph<WeightedNode>(graph, null);
+        CompactGraph<WeightedNode> built = new CompactGraph<WeightedNode>(graph, byCost);
+        CompactGraph<WeightedNode> resorted = new CompactGraph<WeightedNode>(graph).sortChildren(byCost);
+        for (WeightedNode n : nodes) {
+            List<WeightedNode> expected = new ArrayList<WeightedNode>(unsorted.getChildren(n));
+            expected.sort(byCost);
+            assertEquals("built.getChildren(" + n + ")", expected, built.getChildren(n));
+            expected = new ArrayList<WeightedNode>(new CompactGraph<WeightedNode>(graph).getChildren(n));
+            expected.sort(byCost);
+            assertEquals("resorted.getChildren(" + n + ")", expected, resorted.getChildren(n));
+        }
+    }
+
+    /**
+     * Invokes PathFinder.findMinPathBounded() on a dense graph with several
+     * start and end nodes. Expects the same path and cost as findMinPath()
+     */
+    @Test
+    public void BoundedMatchesExhaustive() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[12];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, i % 4);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            for (int j = 0; j < nodes.length; j++) {
+                if ((i * 7 + j * 3) % 5 < 2) {
+                    graph.addEdge(nodes[i], nodes[j]);
+                }
+            }
+        }
+        HashSet<WeightedNode> startSet = new HashSet<WeightedNode>(Arrays.asList(nodes[0], nodes[5], nodes[9]));
+        HashSet<WeightedNode> endSet = new HashSet<WeightedNode>(Arrays.asList(nodes[3], nodes[7], nodes[11]));
+        PathFinder pf = new PathFinder(graph, startSet, endSet);
+        NodeCountingPath expected = pf.findMinPath();
+        NodeCountingPath actual = pf.findMinPathBounded();
+        assertEquals("pf.findMinPathBounded()", expected, actual);
+        assertEquals("pf.findMinPathBounded().getCost()", expected.getCost(), actual.getCost(), 0);
+    }
+
+    /**
+     * Invokes PathFinder.findMinPathParallel() on a fixed thread pool, for a
+     * graph where many start nodes have paths of equal cost. Expects the same
+     * path and cost as findMinPath()
+     */
+    @Test
+    public void ParallelMatchesSequential() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[60];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, i % 3);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            graph.addEdge(nodes[i], nodes[(i + 1) % nodes.length]);
+            graph.addEdge(nodes[i], nodes[(i * 7) % nodes.length]);
+        }
+        HashSet<WeightedNode> startSet = new HashSet<WeightedNode>();
+        HashSet<WeightedNode> endSet = new HashSet<WeightedNode>();
+        for (int i = 0; i < nodes.length; i += 2) {
+            startSet.add(nodes[i]);
+        }
+        for (int i = 1; i < nodes.length; i += 9) {
+            endSet.add(nodes[i]);
+        }
+        PathFinder pf = new PathFinder(graph, startSet, endSet);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            NodeCountingPath expected = pf.findMinPath();
+            NodeCountingPath actual = pf.findMinPathParallel(executor, 4);
+            assertEquals("pf.findMinPathParallel()", expected, actual);
+            assertEquals("pf.findMinPathParallel().getCost()", expected.getCost(), actual.getCost(), 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Invokes DijkstraAlgorithm.invokeAlgorithm(n1, n4) on a graph where the
+     * DFS path from n1 to n4 is not the cheapest. Expects the path n1, n3, n4
+     */
+    @Test
+    public void DijkstraCheapestPath() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode n1 = new WeightedNode("n1", 1);
+        WeightedNode n2 = new WeightedNode("n2", 9);
+        WeightedNode n3 = new WeightedNode("n3", 2);
+        WeightedNode n4 = new WeightedNode("n4", 1);
+        graph.addNode(n1);
+        graph.addNode(n2);
+        graph.addNode(n3);
+        graph.addNode(n4);
+        graph.addEdge(n1, n2);
+        graph.addEdge(n1, n3);
+        graph.addEdge(n2, n4);
+        graph.addEdge(n3, n4);
+        DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(graph);
+        WeightedNodePath expected = new WeightedNodePath(n1).extend(n3).extend(n4);
+        WeightedNodePath actual = dijkstra.invokeAlgorithm(n1, n4);
+        assertEquals("dijkstra.invokeAlgorithm(n1, n4)", expected, actual);
+        assertEquals("dijkstra.invokeAlgorithm(n1, n4).getCost()", 4, actual.getCost(), 0);
+        assertEquals("dijkstra.invokeAlgorithm(n4, n1)", null, dijkstra.invokeAlgorithm(n4, n1));
+    }
+
+    /**
+     * Invokes DijkstraAlgorithm.invokeAlgorithm(starts, ends) on a grid, with
+     * and without an admissible heuristic. Expects paths of the same cost
+     */
+    @Test
+    public void AStarMatchesDijkstra() {
+        final int side = 12;
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[side * side];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, 1 + (i * 7) % 5);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            if (i % side < side - 1) {
+                graph.addEdge(nodes[i], nodes[i + 1]);
+                graph.addEdge(nodes[i + 1], nodes[i]);
+            }
+            if (i + side < nodes.length) {
+                graph.addEdge(nodes[i], nodes[i + side]);
+                graph.addEdge(nodes[i + side], nodes[i]);
+            }
+        }
+        List<WeightedNode> startList = Arrays.asList(nodes[0], nodes[side - 1]);
+        List<WeightedNode> endList = Arrays.asList(nodes[nodes.length - 1]);
+        DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(graph.freeze());
+        WeightedNodePath expected = dijkstra.invokeAlgorithm(startList, endList);
+        dijkstra.setHeuristic(new DijkstraAlgorithm.Heuristic() {
+            public long estimate(WeightedNode n) {
+                // every step costs at least 1
+                int i = Integer.parseInt(n.getName().substring(1));
+                return (side - 1 - i % side) + (side - 1 - i / side);
+            }
+        });
+        WeightedNodePath actual = dijkstra.invokeAlgorithm(startList, endList);
+        assertEquals("dijkstra.invokeAlgorithm(starts, ends).getCost()", expected.getCost(), actual.getCost(), 0);
+        assertEquals("dijkstra.invokeAlgorithm(starts, ends).getEnd()", nodes[nodes.length - 1], actual.getEnd());
+    }
+
+    /**
+     * Repeats a PathCache.findMinPath query before and after the graph is
+     * modified. Expects one miss per version of the graph, and the same path
+     * as PathFinder.findMinPath()
+     */
+    @Test
+    public void PathCacheInvalidatedByModification() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode n1 = new WeightedNode("n1", 1);
+        WeightedNode n2 = new WeightedNode("n2", 2);
+        WeightedNode n3 = new WeightedNode("n3", 3);
+        graph.addNode(n1);
+        graph.addNode(n2);
+        graph.addEdge(n1, n2);
+        HashSet<WeightedNode> startSet = new HashSet<WeightedNode>(Arrays.asList(n1));
+        HashSet<WeightedNode> endSet = new HashSet<WeightedNode>(Arrays.asList(n3));
+        PathCache cache = new PathCache(4);
+        long version = graph.getVersion();
+        assertEquals("cache.findMinPath(graph, {n1}, {n3})", null, cache.findMinPath(graph, startSet, endSet));
+        assertEquals("cache.findMinPath(graph, {n1}, {n3})", null, cache.findMinPath(graph, startSet, endSet));
+        assertEquals("cache.getHits()", 1, cache.getHits());
+        assertEquals("graph.addEdge(n1, n2)", 1, graph.addEdge(n1, n2));
+        assertEquals("graph.getVersion()", version, graph.getVersion());
+
+        graph.addNode(n3);
+        graph.addEdge(n2, n3);
+        NodeCountingPath expected = new PathFinder(graph, startSet, endSet).findMinPath();
+        assertEquals("cache.findMinPath(graph, {n1}, {n3})", expected, cache.findMinPath(graph, startSet, endSet));
+        assertEquals("cache.findMinPath(graph, {n1}, {n3})", expected, cache.findMinPath(graph, startSet, endSet));
+        assertEquals("cache.invokeAlgorithm(graph, n1, n3)", expected, cache.invokeAlgorithm(graph, n1, n3));
+        assertEquals("cache.getHits()", 3, cache.getHits());
+        assertEquals("cache.getMisses()", 2, cache.getMisses());
+    }
+
+    /**
+     * Makes more distinct PathCache queries than the cache can hold, touching
+     * the first one in between. Expects the least recently used results to be
+     * evicted
+     */
+    @Test
+    public void PathCacheEvictsLeastRecentlyUsed() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[4];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, i);
+            graph.addNode(nodes[i]);
+        }
+        PathCache cache = new PathCache(2);
+        cache.invokeAlgorithm(graph, nodes[0], nodes[0]);
+        cache.invokeAlgorithm(graph, nodes[1], nodes[1]);
+        cache.invokeAlgorithm(graph, nodes[0], nodes[0]);
+        cache.invokeAlgorithm(graph, nodes[2], nodes[2]);
+        assertEquals("cache.getEvictions()", 1, cache.getEvictions());
+        assertEquals("cache.size()", 2, cache.size());
+        cache.invokeAlgorithm(graph, nodes[0], nodes[0]);
+        assertEquals("cache.getHits()", 2, cache.getHits());
+        cache.invokeAlgorithm(graph, nodes[1], nodes[1]);
+        assertEquals("cache.getMisses()", 4, cache.getMisses());
+        assertEquals("cache.getEvictions()", 2, cache.getEvictions());
+    }
+
+    /**
+     * Builds the reachability index of a graph with a cycle and a node that
+     * the cycle doesn't reach, then adds an edge to that node. Expects the
+     * cycle to be one component, the unreachable pair to be rejected, and the
+     * index to be rebuilt after the edge is added
+     */
+    @Test
+    public void ReachabilityIndexRejectsUnreachable() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode n1 = new WeightedNode("n1", 1);
+        WeightedNode n2 = new WeightedNode("n2", 2);
+        WeightedNode n3 = new WeightedNode("n3", 3);
+        WeightedNode n4 = new WeightedNode("n4", 4);
+        graph.addNode(n1);
+        graph.addNode(n2);
+        graph.addNode(n3);
+        graph.addNode(n4);
+        graph.addEdge(n1, n2);
+        graph.addEdge(n2, n3);
+        graph.addEdge(n3, n1);
+        graph.setReachabilityIndexed(true);
+        ReachabilityIndex<WeightedNode> index = graph.freeze().getReachabilityIndex();
+        CompactGraph<WeightedNode> compact = index.getGraph();
+        assertEquals("index.componentCount()", 2, index.componentCount());
+        assertEquals("index.componentOf(n1) == index.componentOf(n3)", index.componentOf(compact.indexOf(n1)),
+                index.componentOf(compact.indexOf(n3)));
+        assertEquals("index.mayReach(n3, n2)", true, index.mayReach(n3, n2));
+        assertEquals("index.mayReach(n1, n4)", false, index.mayReach(n1, n4));
+
+        DfsAlgorithm dfs = new DfsAlgorithm(graph);
+        assertEquals("dfs.invokeAlgorithm(n1, n4)", null, dfs.invokeAlgorithm(n1, n4));
+        HashSet<WeightedNode> startSet = new HashSet<WeightedNode>(Arrays.asList(n1, n2));
+        HashSet<WeightedNode> endSet = new HashSet<WeightedNode>(Arrays.asList(n4));
+        assertEquals("pf.findMinPath()", null, new PathFinder(graph, startSet, endSet).findMinPath());
+
+        graph.addEdge(n3, n4);
+        assertEquals("dfs.mayReach(n1, n4)", true, dfs.mayReach(n1, n4));
+        assertEquals("pf.findMinPath().getEnd()", n4, new PathFinder(graph, startSet, endSet).findMinPath().getEnd());
+    }
+
+    /**
+     * Runs DfsAlgorithm and PathFinder on the reverse of a graph, and on a
+     * graph built with the reverse edges. Expects the same paths from both
+     */
+    @Test
+    public void ReversedSearchMatchesReversedGraph() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        Graph<WeightedNode> reversed = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[10];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, i % 3);
+            graph.addNode(nodes[i]);
+            reversed.addNode(nodes[i]);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            for (int j = 0; j < nodes.length; j++) {
+                if ((i * 5 + j * 3) % 7 < 2) {
+                    graph.addEdge(nodes[i], nodes[j]);
+                    reversed.addEdge(nodes[j], nodes[i]);
+                }
+            }
+        }
+        CompactGraph<WeightedNode> compact = graph.freeze();
+        assertSame("compact.reverse().reverse()", compact, compact.reverse().reverse());
+        assertEquals("new DfsAlgorithm(graph, true).invokeAlgorithm(n9)",
+                new DfsAlgorithm(reversed).invokeAlgorithm(nodes[9]),
+                new DfsAlgorithm(graph, true).invokeAlgorithm(nodes[9]));
+        HashSet<WeightedNode> startSet = new HashSet<WeightedNode>(Arrays.asList(nodes[1], nodes[8]));
+        HashSet<WeightedNode> endSet = new HashSet<WeightedNode>(Arrays.asList(nodes[0], nodes[4]));
+        assertEquals("new PathFinder(graph, starts, ends, true).findMinPath()",
+                new PathFinder(reversed, startSet, endSet).findMinPath(),
+                new PathFinder(graph, startSet, endSet, true).findMinPath());
+        assertEquals("new PathFinder(graph, starts, ends, true).findMinPathParallel()",
+                new PathFinder(reversed, startSet, endSet).findMinPath(),
+                new PathFinder(graph, startSet, endSet, true).findMinPathParallel());
+    }
+
+    /**
+     * Finds paths with PathFinder's bidirectional searches on a graph where
+     * the path with the fewest nodes is not the cheapest one. Expects the
+     * shorter path from findShortestPathBidirectional(), and the cheaper path
+     * from findCheapestPathBidirectional(true)
+     */
+    @Test
+    public void BidirectionalSearches() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode n1 = new WeightedNode("n1", 1);
+        WeightedNode n2 = new WeightedNode("n2", 10);
+        WeightedNode n3 = new WeightedNode("n3", 1);
+        WeightedNode n4 = new WeightedNode("n4", 1);
+        WeightedNode n5 = new WeightedNode("n5", 1);
+        graph.addNode(n1);
+        graph.addNode(n2);
+        graph.addNode(n3);
+        graph.addNode(n4);
+        graph.addNode(n5);
+        graph.addEdge(n1, n2);
+        graph.addEdge(n2, n5);
+        graph.addEdge(n1, n3);
+        graph.addEdge(n3, n4);
+        graph.addEdge(n4, n5);
+        HashSet<WeightedNode> startSet = new HashSet<WeightedNode>(Arrays.asList(n1));
+        HashSet<WeightedNode> endSet = new HashSet<WeightedNode>(Arrays.asList(n5));
+        PathFinder pf = new PathFinder(graph, startSet, endSet);
+        assertEquals("pf.findShortestPathBidirectional()", new NodeCountingPath(n1).extend(n2).extend(n5),
+                pf.findShortestPathBidirectional());
+        WeightedNodePath cheapest = pf.findCheapestPathBidirectional(true);
+        assertEquals("pf.findCheapestPathBidirectional(true)",
+                new WeightedNodePath(n1).extend(n3).extend(n4).extend(n5), cheapest);
+        assertEquals("pf.findCheapestPathBidirectional(true).getCost()", 4, cheapest.getCost(), 0);
+
+        PathFinder backwards = new PathFinder(graph, endSet, startSet);
+        assertEquals("backwards.findShortestPathBidirectional()", null, backwards.findShortestPathBidirectional());
+        assertEquals("backwards.findCheapestPathBidirectional(true)", null,
+                backwards.findCheapestPathBidirectional(true));
+
+        // the state of the previous query is reused, until the graph changes
+        assertEquals("pf.findShortestPathBidirectional() again", new NodeCountingPath(n1).extend(n2).extend(n5),
+                pf.findShortestPathBidirectional());
+        graph.addEdge(n5, n1);
+        assertEquals("backwards.findShortestPathBidirectional() after addEdge(n5, n1)",
+                new NodeCountingPath(n5).extend(n1), backwards.findShortestPathBidirectional());
+        assertEquals("backwards.findCheapestPathBidirectional(true) after addEdge(n5, n1)",
+                new WeightedNodePath(n5).extend(n1), backwards.findCheapestPathBidirectional(true));
+    }
+
+    /**
+     * Runs bidirectional searches between close nodes of a large grid, with two
+     * PathFinders. Expects each search to explore a small part of the grid and
+     * to find a cheapest path, and both PathFinders to share one search object,
+     * released to the compact graph they search
+     */
+    @Test
+    public void BidirectionalSearchesShareState() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        int side = 200;
+        WeightedNode[][] grid = new WeightedNode[side][side];
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                grid[row][col] = new WeightedNode(row + "," + col, 1 + (row * 7 + col * 3) % 4);
+                graph.addNode(grid[row][col]);
+            }
+        }
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                if (row > 0) {
+                    graph.addEdge(grid[row][col], grid[row - 1][col]);
+                    graph.addEdge(grid[row - 1][col], grid[row][col]);
+                }
+                if (col > 0) {
+                    graph.addEdge(grid[row][col], grid[row][col - 1]);
+                    graph.addEdge(grid[row][col - 1], grid[row][col]);
+                }
+            }
+        }
+        PathFinder first = new PathFinder(graph, new HashSet<WeightedNode>(Arrays.asList(grid[100][100])),
+                new HashSet<WeightedNode>(Arrays.asList(grid[102][103])));
+        PathFinder second = new PathFinder(graph, new HashSet<WeightedNode>(Arrays.asList(grid[50][50])),
+                new HashSet<WeightedNode>(Arrays.asList(grid[47][52])));
+        int bound = side * side / 100;
+        for (int run = 0; run < 3; run++) {
+            first.findCheapestPathBidirectional(true);
+            assertEquals("first.getExploredCount() < " + bound, true, first.getExploredCount() < bound);
+            second.findCheapestPathBidirectional(true);
+            assertEquals("second.getExploredCount() < " + bound, true, second.getExploredCount() < bound);
+            second.findShortestPathBidirectional();
+            assertEquals("second.getExploredCount() < " + bound + " for the shortest path", true,
+                    second.getExploredCount() < bound);
+        }
+        CompactGraph<WeightedNode> frozen = graph.freeze(DfsAlgorithm.VISIT_ORDER);
+        BidirectionalSearch shared = BidirectionalSearch.acquire(frozen);
+        BidirectionalSearch other = BidirectionalSearch.acquire(frozen);
+        assertEquals("shared.getExploredCount()", second.getExploredCount(), shared.getExploredCount());
+        assertEquals("other.getExploredCount()", 0, other.getExploredCount());
+        shared.release();
+        assertSame("BidirectionalSearch.acquire(frozen) after release", shared, BidirectionalSearch.acquire(frozen));
+    }
+
+    /**
+     * Adds the same edges to a ConcurrentGraph from several threads at once,
+     * while another thread lists the children of a hub node. Expects every
+     * edge to be added exactly once, and DfsAlgorithm to find the same path on
+     * the ConcurrentGraph as on a Graph with the same edges
+     */
+    @Test
+    public void ConcurrentGraphWriters() throws InterruptedException {
+        final ConcurrentGraph<WeightedNode> concurrent = new ConcurrentGraph<WeightedNode>();
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        final WeightedNode[] nodes = new WeightedNode[100];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, i % 7);
+            concurrent.addNode(nodes[i]);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            graph.addEdge(nodes[0], nodes[i]);
+            graph.addEdge(nodes[i], nodes[(i * 3 + 1) % nodes.length]);
+            graph.addEdge(nodes[i], nodes[(i * 7 + 2) % nodes.length]);
+        }
+        final int[] added = new int[4];
+        final boolean[] readerOk = new boolean[1];
+        Thread[] threads = new Thread[added.length + 1];
+        for (int t = 0; t < added.length; t++) {
+            final int index = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    // every thread adds all edges, starting at a different node
+                    for (int k = 0; k < nodes.length; k++) {
+                        int i = (k + index * 25) % nodes.length;
+                        added[index] += 1 - concurrent.addEdge(nodes[0], nodes[i]);
+                        added[index] += 1 - concurrent.addEdge(nodes[i], nodes[(i * 3 + 1) % nodes.length]);
+                        added[index] += 1 - concurrent.addEdge(nodes[i], nodes[(i * 7 + 2) % nodes.length]);
+                    }
+                }
+            };
+        }
+        threads[added.length] = new Thread() {
+            public void run() {
+                boolean ok = true;
+                for (int k = 0; k < 200; k++) {
+                    HashSet<WeightedNode> seen = new HashSet<WeightedNode>();
+                    for (WeightedNode child : concurrent.getChildren(nodes[0])) {
+                        ok = ok && seen.add(child);
+                    }
+                }
+                readerOk[0] = ok;
+            }
+        };
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        int total = 0;
+        int edges = 0;
+        for (int count : added) {
+            total += count;
+        }
+        for (WeightedNode n : graph.getNodes()) {
+            edges += graph.getChildren(n).size();
+            assertEquals("concurrent.getChildren(" + n + ")", graph.getChildren(n), concurrent.getChildren(n));
+        }
+        assertEquals("edges added by all threads", edges, total);
+        assertEquals("children listed at most once while adding", true, readerOk[0]);
+        assertEquals("concurrent.getNodes()", graph.getNodes(), concurrent.getNodes());
+        concurrent.checkRep();
+        assertSame("concurrent.freeze() again", concurrent.freeze(), concurrent.freeze());
+        assertEquals("new DfsAlgorithm(concurrent.freeze()).invokeAlgorithm(n0, n42)",
+                new DfsAlgorithm(graph).invokeAlgorithm(nodes[0], nodes[42]),
+                new DfsAlgorithm(concurrent.freeze()).invokeAlgorithm(nodes[0], nodes[42]));
+    }
+
+    /**
+     * Takes a snapshot of a graph, and keeps adding nodes and edges to the
+     * graph (also to a node whose children are in a hash set) while another
+     * thread searches the snapshot. Expects the snapshot to keep the nodes,
+     * children and paths of the graph as it was, the graph to count it as live
+     * and to report memory retained by it, until it is closed
+     */
+    @Test
+    public void SnapshotIsolatedFromChanges() throws InterruptedException {
+        final Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        final WeightedNode[] nodes = new WeightedNode[60];
+        for (int i = 0; i < 40; i++) {
+            nodes[i] = new WeightedNode("n" + i, i % 5);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < 40; i++) {
+            graph.addEdge(nodes[0], nodes[i]);
+            graph.addEdge(nodes[i], nodes[(i * 3 + 1) % 40]);
+        }
+        final Set<WeightedNode> hubChildren = new HashSet<WeightedNode>(graph.getChildren(nodes[0]));
+        final Set<WeightedNode> oldChildren = new HashSet<WeightedNode>(graph.getChildren(nodes[5]));
+        final NodeCountingPath expected = new DfsAlgorithm(graph).invokeAlgorithm(nodes[1], nodes[39]);
+        final GraphSnapshot<WeightedNode> snapshot = graph.snapshot();
+        assertEquals("graph.getLiveSnapshotCount()", 1, graph.getLiveSnapshotCount());
+        final boolean[] same = new boolean[1];
+        Thread reader = new Thread() {
+            public void run() {
+                boolean allSame = true;
+                for (int k = 0; k < 50; k++) {
+                    DfsAlgorithm dfs = new DfsAlgorithm(snapshot.freeze());
+                    allSame = allSame && expected.equals(dfs.invokeAlgorithm(nodes[1], nodes[39]))
+                            && hubChildren.equals(snapshot.getChildren(nodes[0]))
+                            && (snapshot.getNodes().size() == 40);
+                }
+                same[0] = allSame;
+            }
+        };
+        reader.start();
+        for (int i = 40; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, 1);
+            graph.addNode(nodes[i]);
+            graph.addEdge(nodes[0], nodes[i]);
+            graph.addEdge(nodes[5], nodes[i]);
+            graph.addEdge(nodes[1], nodes[i]);
+            graph.addEdge(nodes[i], nodes[39]);
+        }
+        reader.join();
+        assertEquals("same path and children in the snapshot", true, same[0]);
+        assertEquals("snapshot.getChildren(n5)", oldChildren, snapshot.getChildren(nodes[5]));
+        assertEquals("snapshot.nodeInGraph(n59)", false, snapshot.nodeInGraph(nodes[59]));
+        assertEquals("graph.getChildren(n0).size()", 60, graph.getChildren(nodes[0]).size());
+        assertEquals("graph.getRetainedSnapshotBytes() > 0", true, graph.getRetainedSnapshotBytes() > 0);
+        graph.checkRep();
+
+        snapshot.close();
+        assertEquals("graph.getLiveSnapshotCount() after close", 0, graph.getLiveSnapshotCount());
+        assertEquals("graph.getRetainedSnapshotBytes() after close", 0, graph.getRetainedSnapshotBytes());
+        try {
+            snapshot.getNodes();
+            assertEquals("snapshot.getNodes() after close throws", true, false);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Takes a snapshot of a graph of several chunks, then adds edges from a
+     * node of one chunk, one by one and in bulk. Expects the snapshot to
+     * retain almost nothing when it is taken, and less than two chunks once
+     * the edges are added, to keep the children it had, and to stop being live
+     * once a snapshot dropped without being closed is garbage collected
+     */
+    @Test
+    public void SnapshotCopiesChunksOnWrite() throws InterruptedException {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[3 * Graph.CHUNK_SIZE + 5];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, 1);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i + 1 < nodes.length; i++) {
+            graph.addEdge(nodes[i], nodes[i + 1]);
+        }
+        GraphSnapshot<WeightedNode> snapshot = graph.snapshot();
+        long chunkBytes = AdjacencyReport.referenceArrayBytes(Graph.CHUNK_SIZE)
+                + AdjacencyReport.arrayBytes(Graph.CHUNK_SIZE);
+        assertEquals("graph.getRetainedSnapshotBytes() < 100", true, graph.getRetainedSnapshotBytes() < 100);
+        WeightedNode changed = nodes[Graph.CHUNK_SIZE + 7];
+        graph.addEdge(changed, nodes[0]);
+        graph.addEdges(new int[] { Graph.CHUNK_SIZE + 7, Graph.CHUNK_SIZE + 7 }, new int[] { 1, 2 });
+        long retained = graph.getRetainedSnapshotBytes();
+        assertEquals("graph.getRetainedSnapshotBytes() >= one chunk", true, retained >= chunkBytes);
+        assertEquals("graph.getRetainedSnapshotBytes() < two chunks", true, retained < 2 * chunkBytes);
+        assertEquals("snapshot.getChildren(changed)",
+                new HashSet<WeightedNode>(Arrays.asList(nodes[Graph.CHUNK_SIZE + 8])), snapshot.getChildren(changed));
+        assertEquals("graph.getChildren(changed).size()", 4, graph.getChildren(changed).size());
+        assertEquals("snapshot.getChildren(last chunk)",
+                new HashSet<WeightedNode>(Arrays.asList(nodes[nodes.length - 1])),
+                snapshot.getChildren(nodes[nodes.length - 2]));
+        snapshot.close();
+        assertEquals("graph.getRetainedSnapshotBytes() after close", 0, graph.getRetainedSnapshotBytes());
+
+        graph.snapshot();
+        for (int k = 0; (k < 100) && (graph.getLiveSnapshotCount() > 0); k++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals("graph.getLiveSnapshotCount() after the snapshot was dropped", 0, graph.getLiveSnapshotCount());
+    }
+
+    /**
+     * Builds the same graph with addNode and addEdge, with addNodes and
+     * addEdges, and with addEdgesParallel, where some edges repeat and some
+     * are already in the graph, and a node gets enough children for a hash
+     * set. Expects the same children, parents and version in all three, and
+     * an IllegalArgumentException for an id which is not in the graph
+     */
+    @Test
+    public void BulkAddMatchesSingleAdds() {
+        WeightedNode[] nodes = new WeightedNode[30];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, i);
+        }
+        int[] sources = new int[90];
+        int[] targets = new int[90];
+        for (int k = 0; k < sources.length; k++) {
+            sources[k] = (k < 30) ? 0 : (k * 7) % nodes.length;
+            targets[k] = (k < 30) ? k : (k * 11) % nodes.length;
+        }
+        Graph<WeightedNode> single = new Graph<WeightedNode>();
+        Graph<WeightedNode> bulk = new Graph<WeightedNode>(nodes.length);
+        Graph<WeightedNode> parallel = new Graph<WeightedNode>(nodes.length);
+        int expected = 0;
+        for (WeightedNode n : nodes) {
+            single.addNode(n);
+        }
+        single.addEdge(nodes[3], nodes[(3 * 11) % nodes.length]);
+        for (int k = 0; k < sources.length; k++) {
+            expected += 1 - single.addEdge(nodes[sources[k]], nodes[targets[k]]);
+        }
+        assertEquals("bulk.addNodes(nodes)", nodes.length, bulk.addNodes(Arrays.asList(nodes)));
+        assertEquals("bulk.addNodes(nodes) again", 0, bulk.addNodes(Arrays.asList(nodes)));
+        parallel.addNodes(Arrays.asList(nodes));
+        bulk.addEdge(nodes[3], nodes[(3 * 11) % nodes.length]);
+        parallel.addEdge(nodes[3], nodes[(3 * 11) % nodes.length]);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertEquals("bulk.addEdges(sources, targets)", expected, bulk.addEdges(sources, targets));
+            assertEquals("parallel.addEdgesParallel(sources, targets)", expected,
+                    parallel.addEdgesParallel(sources, targets, executor, 3));
+        } finally {
+            executor.shutdown();
+        }
+        for (WeightedNode n : nodes) {
+            assertEquals("bulk.getChildren(" + n + ")", single.getChildren(n), bulk.getChildren(n));
+            assertEquals("parallel.getChildren(" + n + ")", single.getChildren(n), parallel.getChildren(n));
+            assertEquals("bulk.getParents(" + n + ")", single.getParents(n), bulk.getParents(n));
+            assertEquals("parallel.getParents(" + n + ")", single.getParents(n), parallel.getParents(n));
+        }
+        assertEquals("bulk.getVersion()", single.getVersion(), bulk.getVersion());
+        assertEquals("bulk.memoryReport().getHubNodes()", 1, bulk.memoryReport().getHubNodes());
+        bulk.checkRep();
+        parallel.checkRep();
+        try {
+            bulk.addEdges(new int[] { 0 }, new int[] { nodes.length });
+            assertEquals("bulk.addEdges(ids not in graph) throws", true, false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Returns the nodes of the graph the IndexedGraph backends are tested on.
+     * Every third node has a name which is not ASCII.
+     */
+    private static WeightedNode[] backendNodes(int count) {
+        WeightedNode[] nodes = new WeightedNode[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = new WeightedNode("n" + i + ((i % 3 == 0) ? "\u00e9" : ""), i % 6);
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the edges of the graph the IndexedGraph backends are tested on,
+     * as pairs of indices of its nodes (see backendNodes). Every node has up
+     * to two children, n0 is a parent of every node, and every edge is given
+     * twice.
+     */
+    private static int[][] backendEdges(int count) {
+        int[][] edges = new int[6 * count][];
+        int e = 0;
+        for (int i = 0; i < count; i++) {
+            for (int twice = 0; twice < 2; twice++) {
+                edges[e++] = new int[] { i, (i * 3 + 1) % count };
+                edges[e++] = new int[] { i, (i * 7 + 2) % count };
+                edges[e++] = new int[] { 0, i };
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Expects an IndexedGraph to have the same nodes, ids, costs and children
+     * as a compact graph with children in VISIT_ORDER, and the searches to
+     * find the same paths on both.
+     */
+    private static void assertSameIndexedGraph(CompactGraph<WeightedNode> compact, IndexedGraph<WeightedNode> indexed) {
+        String name = indexed.getClass().getSimpleName();
+        assertEquals(name + ".size()", compact.size(), indexed.size());
+        for (int id = 0; id < compact.size(); id++) {
+            WeightedNode n = compact.getNode(id);
+            assertEquals(name + ".getNode(" + id + ")", n, indexed.getNode(id));
+            assertEquals(name + ".costOf(" + id + ")", n.getCost(), indexed.costOf(id));
+            assertEquals(name + ".indexOf(" + n + ")", id, indexed.indexOf(n));
+            assertEquals(name + ".childCount(" + id + ")", compact.childCount(id), indexed.childCount(id));
+            for (int k = 0; k < compact.childCount(id); k++) {
+                assertEquals(name + ".childAt(" + id + ", " + k + ")", compact.childAt(id, k), indexed.childAt(id, k));
+            }
+        }
+        assertEquals(name + ".indexOf(node not in graph)", -1, indexed.indexOf(new WeightedNode("n1", 2)));
+
+        WeightedNode from = compact.getNode(1);
+        WeightedNode to = compact.getNode(30);
+        assertEquals("new DfsAlgorithm(" + name + ").invokeAlgorithm(n1, n30)",
+                new DfsAlgorithm(compact).invokeAlgorithm(from, to),
+                new DfsAlgorithm(indexed).invokeAlgorithm(from, to));
+        assertEquals("new DijkstraAlgorithm(" + name + ").invokeAlgorithm(n1, n30)",
+                new DijkstraAlgorithm(compact).invokeAlgorithm(from, to),
+                new DijkstraAlgorithm(indexed).invokeAlgorithm(from, to));
+        HashSet<WeightedNode> startSet = new HashSet<WeightedNode>(Arrays.asList(from, compact.getNode(5)));
+        HashSet<WeightedNode> endSet = new HashSet<WeightedNode>(Arrays.asList(to, compact.getNode(17)));
+        NodeCountingPath expected = new PathFinder(compact, startSet, endSet).findMinPath();
+        assertEquals("new PathFinder(" + name + ", ...).findMinPath()", expected,
+                new PathFinder(indexed, startSet, endSet).findMinPath());
+        assertEquals("new PathFinder(" + name + ", ...).findMinPathParallel()", expected,
+                new PathFinder(indexed, startSet, endSet).findMinPathParallel());
+    }
+
+    /**
+     * Writes a graph to a file and maps it back. Expects the same graph in
+     * the MappedGraph, and a file which is not a graph file to be rejected
+     */
+    @Test
+    public void MappedGraphMatchesGraph() throws java.io.IOException {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = backendNodes(40);
+        graph.addNodes(Arrays.asList(nodes));
+        for (int[] edge : backendEdges(nodes.length)) {
+            graph.addEdge(nodes[edge[0]], nodes[edge[1]]);
+        }
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("graph", ".bin");
+        try {
+            MappedGraph.write(graph, file);
+            MappedGraph mapped = MappedGraph.open(file);
+            CompactGraph<WeightedNode> compact = graph.freeze(DfsAlgorithm.VISIT_ORDER);
+            assertEquals("mapped.edgeCount()", (long)compact.edgeCount(), mapped.edgeCount());
+            assertSameIndexedGraph(compact, mapped);
+
+            java.nio.file.Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+            try {
+                MappedGraph.open(file);
+                assertEquals("MappedGraph.open(not a graph file) throws", true, false);
+            } catch (java.io.IOException e) {
+                // expected
+            }
+        } finally {
+            java.nio.file.Files.delete(file);
+        }
+    }
+
+    /**
+     * Copies a graph off the heap, and builds the same graph from duplicate
+     * edges. Expects the same graph in the OffHeapGraphs, the graph's frozen
+     * copy to be kept by copying it, and a closed OffHeapGraph to be
+     * unreadable
+     */
+    @Test
+    public void OffHeapGraphMatchesGraph() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        OffHeapGraph.Builder builder = new OffHeapGraph.Builder();
+        WeightedNode[] nodes = backendNodes(40);
+        for (WeightedNode n : nodes) {
+            graph.addNode(n);
+            builder.addNode(n);
+        }
+        for (int[] edge : backendEdges(nodes.length)) {
+            graph.addEdge(nodes[edge[0]], nodes[edge[1]]);
+            builder.addEdge(nodes[edge[0]], nodes[edge[1]]);
+        }
+        CompactGraph<WeightedNode> compact = graph.freeze(DfsAlgorithm.VISIT_ORDER);
+        for (OffHeapGraph offHeap : new OffHeapGraph[] { OffHeapGraph.copyOf(graph), builder.build() }) {
+            assertSame("graph.freeze(VISIT_ORDER) after OffHeapGraph.copyOf(graph)", compact,
+                    graph.freeze(DfsAlgorithm.VISIT_ORDER));
+            assertEquals("offHeap.edgeCount()", (long)compact.edgeCount(), offHeap.edgeCount());
+            assertSameIndexedGraph(compact, offHeap);
+
+            assertEquals("offHeap.offHeapBytes() > 0", true, offHeap.offHeapBytes() > 0);
+            offHeap.close();
+            assertEquals("offHeap.isClosed()", true, offHeap.isClosed());
+            assertEquals("offHeap.offHeapBytes() after close()", 0L, offHeap.offHeapBytes());
+            try {
+                offHeap.childCount(0);
+                assertEquals("offHeap.childCount() after close() throws", true, false);
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            offHeap.close();
+            assertEquals("offHeap.isClosed() after closing twice", true, offHeap.isClosed());
+        }
+    }
+
+    /**
+     * Builds a graph on disk with a cache of two pages, and reopens it.
+     * Expects the same graph in the PagedGraph, both before and after
+     * reopening, the cache to stay in its budget by writing back pages, freed
+     * blocks to be reused, and searches reused after the graph grows to see
+     * the new nodes
+     */
+    @Test
+    public void PagedGraphMatchesGraph() throws java.io.IOException {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = backendNodes(60);
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("graph");
+        try {
+            PagedGraph paged = PagedGraph.open(directory, 2 * PagedGraph.PAGE_SIZE);
+            for (WeightedNode n : nodes) {
+                assertEquals("paged.addNode(" + n + ")", graph.addNode(n), paged.addNode(n));
+            }
+            for (int[] edge : backendEdges(nodes.length)) {
+                assertEquals("paged.addEdge(" + nodes[edge[0]] + ", " + nodes[edge[1]] + ")",
+                        graph.addEdge(nodes[edge[0]], nodes[edge[1]]), paged.addEdge(nodes[edge[0]], nodes[edge[1]]));
+                assertEquals("paged.getCachedPages() <= 2", true, paged.getCachedPages() <= 2);
+            }
+            assertEquals("paged.getPagesWritten() > 0 before flush()", true, paged.getPagesWritten() > 0);
+            assertEquals("paged.supportsConcurrentReads()", false, paged.supportsConcurrentReads());
+            for (int reopen = 0; reopen < 2; reopen++) {
+                assertEquals("paged.getNodes()", graph.getNodes(), paged.getNodes());
+                for (WeightedNode n : nodes) {
+                    assertEquals("paged.getChildren(" + n + ")", graph.getChildren(n), paged.getChildren(n));
+                    assertEquals("paged.nodeInGraph(" + n + ")", true, paged.nodeInGraph(n));
+                }
+                assertSameIndexedGraph(graph.freeze(DfsAlgorithm.VISIT_ORDER), paged);
+                assertEquals("paged.getCachedPages() <= 2", true, paged.getCachedPages() <= 2);
+                paged.close();
+                paged = PagedGraph.open(directory, 2 * PagedGraph.PAGE_SIZE);
+            }
+            assertEquals("paged.getPagesRead() > 0 after reopening", true, paged.getPagesRead() > 0);
+
+            DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(paged);
+            DfsAlgorithm dfs = new DfsAlgorithm(paged);
+            dijkstra.invokeAlgorithm(nodes[1], nodes[30]);
+            dfs.invokeAlgorithm(nodes[1], nodes[30]);
+            WeightedNode added = new WeightedNode("added", 1);
+            WeightedNode reusing = new WeightedNode("reusing", 2);
+            for (WeightedNode n : new WeightedNode[] { added, reusing }) {
+                graph.addNode(n);
+                paged.addNode(n);
+            }
+            // the fifth child moves the children of added out of the smallest block
+            for (int i = 1; i <= 5; i++) {
+                graph.addEdge(added, nodes[i]);
+                paged.addEdge(added, nodes[i]);
+            }
+            long fileBytes = paged.getFileBytes();
+            graph.addEdge(reusing, added);
+            paged.addEdge(reusing, added);
+            assertEquals("paged.getFileBytes() after reusing a freed block", fileBytes, paged.getFileBytes());
+            graph.addEdge(nodes[30], reusing);
+            paged.addEdge(nodes[30], reusing);
+            assertEquals("dijkstra.invokeAlgorithm(n1, added) after growing",
+                    new DijkstraAlgorithm(graph).invokeAlgorithm(nodes[1], added),
+                    dijkstra.invokeAlgorithm(nodes[1], added));
+            assertEquals("dfs.invokeAlgorithm(n1, added) after growing",
+                    new DfsAlgorithm(graph).invokeAlgorithm(nodes[1], added),
+                    dfs.invokeAlgorithm(nodes[1], added));
+            paged.close();
+        } finally {
+            for (String name : new String[] { "adjacency.dat", "nodes.dat" }) {
+                java.nio.file.Files.deleteIfExists(directory.resolve(name));
+            }
+            java.nio.file.Files.delete(directory);
+        }
+    }
+
+    /**
+     * Returns the cell of an 8 by 8 grid at a given column and row.
+     */
+    private static WeightedNode gridCell(int x, int y) {
+        return new WeightedNode(x + "," + y, (7 * x + 3 * y) % 5);
+    }
+
+    /**
+     * Returns the cells of the grid next to a given cell: right, down, and
+     * left on even rows.
+     */
+    private static List<WeightedNode> gridNeighbors(WeightedNode cell) {
+        String[] xy = cell.getName().split(",");
+        int x = Integer.parseInt(xy[0]);
+        int y = Integer.parseInt(xy[1]);
+        List<WeightedNode> neighbors = new ArrayList<WeightedNode>();
+        if (x < 7) {
+            neighbors.add(gridCell(x + 1, y));
+        }
+        if (y < 7) {
+            neighbors.add(gridCell(x, y + 1));
+        }
+        if ((x > 0) && (y % 2 == 0)) {
+            neighbors.add(gridCell(x - 1, y));
+        }
+        return neighbors;
+    }
+
+    /**
+     * Searches a grid described by a LazyGraph, and the same grid built as a
+     * Graph. Expects the same paths in both, and also through the Graph as a
+     * Traversable, the memo to stay in its capacity and to be hit by repeated
+     * searches, and a start node which is not in the graph to be its own path
+     */
+    @Test
+    public void LazyGraphMatchesGraph() {
+        final Set<WeightedNode> cells = new HashSet<WeightedNode>();
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                cells.add(gridCell(x, y));
+            }
+        }
+        for (WeightedNode cell : cells) {
+            graph.addNode(cell);
+        }
+        for (WeightedNode cell : cells) {
+            for (WeightedNode neighbor : gridNeighbors(cell)) {
+                graph.addEdge(cell, neighbor);
+            }
+        }
+        LazyGraph<WeightedNode> lazy = new LazyGraph<WeightedNode>(GraphTests::gridNeighbors, cells::contains, 10);
+        Traversable<WeightedNode> traversable = graph;
+
+        WeightedNode[][] queries = { { gridCell(0, 0), gridCell(5, 5) }, { gridCell(3, 6), gridCell(1, 7) },
+                { gridCell(4, 1), gridCell(0, 1) }, { gridCell(7, 7), gridCell(0, 0) } };
+        for (WeightedNode[] query : queries) {
+            NodeCountingPath expected = new DfsAlgorithm(graph).invokeAlgorithm(query[0], query[1]);
+            assertEquals("new DfsAlgorithm(lazy).invokeAlgorithm(" + query[0] + ", " + query[1] + ")",
+                    expected, new DfsAlgorithm(lazy).invokeAlgorithm(query[0], query[1]));
+            assertEquals("new DfsAlgorithm(traversable).invokeAlgorithm(" + query[0] + ", " + query[1] + ")",
+                    expected, new DfsAlgorithm(traversable).invokeAlgorithm(query[0], query[1]));
+        }
+        assertEquals("new DfsAlgorithm(lazy).invokeAlgorithm(0,0)",
+                new DfsAlgorithm(graph).invokeAlgorithm(gridCell(0, 0)),
+                new DfsAlgorithm(lazy).invokeAlgorithm(gridCell(0, 0)));
+        assertEquals("new DfsAlgorithm(lazy).invokeAlgorithm(node not in graph)",
+                new NodeCountingPath(gridCell(9, 9)),
+                new DfsAlgorithm(lazy).invokeAlgorithm(gridCell(9, 9), gridCell(9, 9)));
+
+        HashSet<WeightedNode> startSet = new HashSet<WeightedNode>(Arrays.asList(gridCell(2, 3), gridCell(6, 0)));
+        HashSet<WeightedNode> endSet = new HashSet<WeightedNode>(Arrays.asList(gridCell(4, 6), gridCell(1, 5)));
+        NodeCountingPath expected = new PathFinder(graph, startSet, endSet).findMinPath();
+        assertEquals("new PathFinder(lazy, ...).findMinPath()", expected,
+                new PathFinder(lazy, startSet, endSet).findMinPath());
+        long hits = lazy.getMemoHits();
+        assertEquals("new PathFinder(lazy, ...).findMinPathParallel()", expected,
+                new PathFinder(lazy, startSet, endSet).findMinPathParallel());
+        assertEquals("lazy.getMemoHits() grows", true, lazy.getMemoHits() > hits);
+        assertEquals("lazy.getMemoSize() <= 10", true, lazy.getMemoSize() <= 10);
+        assertEquals("lazy.getChildren(node not in graph)", null, lazy.getChildren(gridCell(9, 9)));
+    }
+
+    /**
+     * Relabels a graph by every NodeOrder, twice. Expects the same nodes with
+     * the same children in the same order, original ids which map every node
+     * back to its id in the frozen graph, and the same paths
+     */
+    @Test
+    public void RelabelKeepsPaths() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[50];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, i % 7);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            graph.addEdge(nodes[i], nodes[(i * 13 + 5) % nodes.length]);
+            graph.addEdge(nodes[i], nodes[(i * 7 + 3) % 40]);
+            graph.addEdge(nodes[(i * 3) % nodes.length], nodes[i]);
+        }
+        CompactGraph<WeightedNode> frozen = graph.freeze(DfsAlgorithm.VISIT_ORDER);
+        HashSet<WeightedNode> startSet = new HashSet<WeightedNode>(Arrays.asList(nodes[2], nodes[45]));
+        HashSet<WeightedNode> endSet = new HashSet<WeightedNode>(Arrays.asList(nodes[31], nodes[8]));
+        for (CompactGraph.NodeOrder order : CompactGraph.NodeOrder.values()) {
+            CompactGraph<WeightedNode> relabeled = frozen.relabel(order).relabel(CompactGraph.NodeOrder.BFS);
+            assertEquals(order + " size()", frozen.size(), relabeled.size());
+            assertEquals(order + " edgeCount()", frozen.edgeCount(), relabeled.edgeCount());
+            for (int id = 0; id < relabeled.size(); id++) {
+                int original = relabeled.originalId(id);
+                assertEquals(order + " getNode(" + id + ")", frozen.getNode(original), relabeled.getNode(id));
+                assertEquals(order + " getChildren(" + relabeled.getNode(id) + ")",
+                        frozen.getChildren(frozen.getNode(original)), relabeled.getChildren(relabeled.getNode(id)));
+            }
+            assertEquals(order + " invokeAlgorithm(n1, n30)", new DfsAlgorithm(frozen).invokeAlgorithm(nodes[1], nodes[30]),
+                    new DfsAlgorithm(relabeled).invokeAlgorithm(nodes[1], nodes[30]));
+            assertEquals(order + " findMinPath()", new PathFinder(frozen, startSet, endSet).findMinPath(),
+                    new PathFinder(relabeled, startSet, endSet).findMinPath());
+        }
+        assertEquals("frozen.originalId(7)", 7, frozen.originalId(7));
+    }
+
+    /**
+     * Compresses a graph whose nodes have mostly close children, and a few
+     * far ones. Expects the same children, read in order or by index, the
+     * same paths, and fewer bytes than the compact graph
+     */
+    @Test
+    public void CompressedGraphMatchesCompactGraph() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[300];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, (i * 7) % 11);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            for (int d = 1; d <= 3; d++) {
+                graph.addEdge(nodes[i], nodes[(i + d) % nodes.length]);
+            }
+            if (i % 10 == 0) {
+                graph.addEdge(nodes[i], nodes[(i * 37 + 150) % nodes.length]);
+            }
+        }
+        CompactGraph<WeightedNode> compact = graph.freeze(DfsAlgorithm.VISIT_ORDER);
+        CompressedGraph<WeightedNode> compressed = new CompressedGraph<WeightedNode>(compact);
+        assertEquals("compressed.size()", compact.size(), compressed.size());
+        assertEquals("compressed.edgeCount()", compact.edgeCount(), compressed.edgeCount());
+        for (int id = 0; id < compact.size(); id++) {
+            assertEquals("compressed.getNode(" + id + ")", compact.getNode(id), compressed.getNode(id));
+            assertEquals("compressed.indexOf(" + nodes[id] + ")", id, compressed.indexOf(nodes[id]));
+            assertEquals("compressed.childCount(" + id + ")", compact.childCount(id), compressed.childCount(id));
+            long cursor = compressed.childCursor(id);
+            for (int k = 0; k < compact.childCount(id); k++) {
+                cursor = compressed.nextChild(id, cursor);
+                assertEquals("compressed.nextChild(" + id + ")", compact.childAt(id, k), IndexedGraph.cursorChild(cursor));
+                assertEquals("compressed.childAt(" + id + ", " + k + ")", compact.childAt(id, k), compressed.childAt(id, k));
+            }
+        }
+        assertEquals("compressed.adjacencyBytes() < compact", true,
+                compressed.adjacencyBytes() < 4L * (compact.size() + 1) + 4L * compact.edgeCount());
+
+        HashSet<WeightedNode> startSet = new HashSet<WeightedNode>(Arrays.asList(nodes[3], nodes[120]));
+        HashSet<WeightedNode> endSet = new HashSet<WeightedNode>(Arrays.asList(nodes[250], nodes[77]));
+        assertEquals("new DfsAlgorithm(compressed).invokeAlgorithm(n5, n200)",
+                new DfsAlgorithm(compact).invokeAlgorithm(nodes[5], nodes[200]),
+                new DfsAlgorithm(compressed).invokeAlgorithm(nodes[5], nodes[200]));
+        assertEquals("new DijkstraAlgorithm(compressed).invokeAlgorithm(n5, n200)",
+                new DijkstraAlgorithm(compact).invokeAlgorithm(nodes[5], nodes[200]),
+                new DijkstraAlgorithm(compressed).invokeAlgorithm(nodes[5], nodes[200]));
+        assertEquals("new PathFinder(compressed, ...).findMinPath()",
+                new PathFinder(compact, startSet, endSet).findMinPath(),
+                new PathFinder(compressed, startSet, endSet).findMinPath());
+    }
+
+    /**
+     * Compresses a graph where a node has so many children that the rows of
+     * its block of nodes take more than 64 KB, and the same graph relabeled in
+     * its child order. Expects the same children in both compressed graphs as
+     * in their compact graphs, and the children of every node of the relabeled
+     * graph to be sorted by id
+     */
+    @Test
+    public void CompressedGraphWithLargeRows() {
+        Graph<WeightedNode> graph = new Graph<WeightedNode>();
+        WeightedNode[] nodes = new WeightedNode[70000];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new WeightedNode("n" + i, (i * 7) % 11);
+            graph.addNode(nodes[i]);
+        }
+        for (int i = 1; i < nodes.length; i++) {
+            graph.addEdge(nodes[3], nodes[i]);
+            graph.addEdge(nodes[i], nodes[(i * 31) % nodes.length]);
+        }
+        CompactGraph<WeightedNode> frozen = graph.freeze(DfsAlgorithm.VISIT_ORDER);
+        CompactGraph<WeightedNode> relabeled = frozen.relabel(CompactGraph.NodeOrder.CHILD_ORDER);
+        for (CompactGraph<WeightedNode> compact : Arrays.asList(frozen, relabeled)) {
+            CompressedGraph<WeightedNode> compressed = new CompressedGraph<WeightedNode>(compact);
+            for (int id = 0; id < compact.size(); id++) {
+                assertEquals("compressed.childCount(" + id + ")", compact.childCount(id), compressed.childCount(id));
+                long cursor = compressed.childCursor(id);
+                for (int k = 0; k < compact.childCount(id); k++) {
+                    cursor = compressed.nextChild(id, cursor);
+                    if (IndexedGraph.cursorChild(cursor) != compact.childAt(id, k)) {
+                        assertEquals("compressed.nextChild(" + id + ")", compact.childAt(id, k),
+                                IndexedGraph.cursorChild(cursor));
+                    }
+                }
+            }
+        }
+        for (int id = 0; id < relabeled.size(); id++) {
+            for (int k = 1; k < relabeled.childCount(id); k++) {
+                if (relabeled.childAt(id, k - 1) >= relabeled.childAt(id, k)) {
+                    assertEquals("relabeled.childAt(" + id + ", " + k + ") > the child before it", true, false);
+                }
+            }
+        }
+    }
+
 }
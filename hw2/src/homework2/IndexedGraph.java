@@ -0,0 +1,136 @@
+package homework2;
+
+import java.util.Comparator;
+
+/***
+ * IndexedGraph is a read-only directed graph whose nodes have dense int ids
+ * in the range [0, size()), and whose children are read by id. It is what the
+ * search algorithms (DfsAlgorithm, DijkstraAlgorithm) traverse, so they can
+ * run on any representation of a graph: a CompactGraph in memory, or a
+ * MappedGraph read straight from a file.
+ * <p>
+ * An IndexedGraph must not change while it is being traversed.
+ */
+public interface IndexedGraph<N> {
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return The number of nodes in the graph.
+     */
+    int size();
+
+    /**
+     * Returns the id of a given node.
+     *
+     * @requires A valid node of type N.
+     * @return The id of n, or -1 if n is not in the graph.
+     */
+    int indexOf(N n);
+
+    /**
+     * Returns the node with a given id.
+     *
+     * @requires 0 <= id < size()
+     * @return The node whose id is id.
+     */
+    N getNode(int id);
+
+    /**
+     * Returns the cost of the node with a given id. Graphs which decode their
+     * nodes in getNode (such as a MappedGraph) read it without decoding the
+     * node.
+     *
+     * @requires 0 <= id < size(), and nodes of type WeightedNode.
+     * @return The cost of the node whose id is id.
+     */
+    default int costOf(int id) {
+        return ((WeightedNode)getNode(id)).getCost();
+    }
+
+    /**
+     * Returns the number of children of a given node.
+     *
+     * @requires 0 <= id < size()
+     * @return The number of children of the node whose id is id.
+     */
+    int childCount(int id);
+
+    /**
+     * Returns the id of a child of a given node.
+     *
+     * @requires 0 <= id < size() && 0 <= k < childCount(id)
+     * @return The id of the k-th child of the node whose id is id.
+     */
+    int childAt(int id, int k);
+
+    /**
+     * Starts reading the children of a node one after the other, which
+     * graphs that can't read a child by its index in constant time (such as a
+     * CompressedGraph) do faster than childAt.
+     *
+     * @requires 0 <= id < size()
+     * @return A cursor before the first child of the node whose id is id, to
+     *         be passed to nextChild.
+     */
+    default long childCursor(int id) {
+        return 0;
+    }
+
+    /**
+     * Reads the next child of a node.
+     *
+     * @requires 0 <= id < size(), cursor was returned for id by childCursor or
+     *           nextChild, and fewer than childCount(id) children were read
+     *           from it.
+     * @return The cursor after the next child, whose id is
+     *         cursorChild(the returned cursor).
+     */
+    default long nextChild(int id, long cursor) {
+        // the index of the next child, and the id of the last one read
+        int k = (int)(cursor >>> 32);
+        return ((long)(k + 1) << 32) | (childAt(id, k) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the id of the child a cursor was moved past.
+     *
+     * @requires A cursor returned by nextChild.
+     * @return The id of the child the nextChild call which returned cursor
+     *         read.
+     */
+    static int cursorChild(long cursor) {
+        return (int)cursor;
+    }
+
+    /**
+     * Returns the order the children of every node are sorted by.
+     *
+     * @return The order the children are sorted by, or null if they are kept
+     *         in no particular order.
+     */
+    Comparator<? super N> getChildOrder();
+
+    /**
+     * Checks if several threads may read the graph at the same time.
+     *
+     * @return true if the graph can be read by several threads at the same
+     *         time, false if reading it changes its state (such as a page
+     *         cache), so it must be read by one thread at a time.
+     */
+    default boolean supportsConcurrentReads() {
+        return true;
+    }
+
+    /**
+     * Checks if there can be a path between two nodes. Graphs which have no
+     * way of ruling out a path always return true.
+     *
+     * @requires Valid nodes from and to.
+     * @return false if there is no path from from to to. true if there is
+     *         such a path, and possibly also if there isn't.
+     */
+    default boolean mayReach(N from, N to) {
+        return true;
+    }
+}
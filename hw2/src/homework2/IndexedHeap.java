@@ -0,0 +1,178 @@
+package homework2;
+
+import java.util.Arrays;
+
+/***
+ * IndexedHeap is a binary min-heap of int ids in the range [0, capacity), each
+ * with a long key. Unlike java.util.PriorityQueue, it holds primitive values
+ * only, and it can lower the key of an id already in the heap in O(log n),
+ * which is what Dijkstra's algorithm needs. Ids with equal keys are ordered by
+ * their value, so the order of removal doesn't depend on the order of
+ * insertion.
+ */
+
+/*
+ * Representation invariant:
+ * 0 <= _size <= _heap.length.
+ * _positions[_heap[i]] == i for every 0 <= i < _size, and _positions[id] == -1
+ * for every id not in _heap[0 .. _size - 1].
+ * For every 0 < i < _size, the parent of i, (i - 1) / 2, is not greater than i,
+ * comparing keys first and ids second.
+ */
+class IndexedHeap {
+
+    private int[]  _heap;
+    private int[]  _positions;
+    private long[] _keys;
+    private int    _size;
+
+    /**
+     * Creates an empty heap for ids in the range [0, capacity).
+     *
+     * @requires capacity >= 0
+     * @effects Constructs a new empty heap.
+     */
+    IndexedHeap(int capacity) {
+        _heap = new int[capacity];
+        _positions = new int[capacity];
+        _keys = new long[capacity];
+        Arrays.fill(_positions, -1);
+        _size = 0;
+    }
+
+    /**
+     * Returns the number of ids this heap can hold.
+     */
+    int capacity() {
+        return _positions.length;
+    }
+
+    int size() {
+        return _size;
+    }
+
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    boolean contains(int id) {
+        return _positions[id] >= 0;
+    }
+
+    /**
+     * Returns the key of an id in the heap.
+     *
+     * @requires contains(id)
+     */
+    long keyOf(int id) {
+        return _keys[id];
+    }
+
+    /**
+     * Returns the smallest key in the heap.
+     *
+     * @requires !isEmpty()
+     */
+    long minKey() {
+        return _keys[_heap[0]];
+    }
+
+    /**
+     * Adds an id to the heap, or lowers its key if it is already there.
+     *
+     * @requires 0 <= id < capacity()
+     * @modifies this
+     * @effects If id is not in the heap, adds it with the given key. If it is,
+     *          and its key is greater than key, sets its key to key.
+     * @return true if the heap was changed, false otherwise.
+     */
+    boolean offer(int id, long key) {
+        int pos = _positions[id];
+        if (pos < 0) {
+            _keys[id] = key;
+            _heap[_size] = id;
+            _positions[id] = _size;
+            siftUp(_size++);
+            return true;
+        }
+        if (key < _keys[id]) {
+            _keys[id] = key;
+            siftUp(pos);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the id with the smallest key (and the smallest value among ids
+     * with that key) from the heap.
+     *
+     * @requires !isEmpty()
+     * @modifies this
+     * @return The removed id.
+     */
+    int poll() {
+        int min = _heap[0];
+        _positions[min] = -1;
+        _size--;
+        if (_size > 0) {
+            _heap[0] = _heap[_size];
+            _positions[_heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Removes all ids from the heap.
+     *
+     * @modifies this
+     * @effects Empties the heap, in time linear in the number of ids it holds.
+     */
+    void clear() {
+        for (int i = 0; i < _size; i++) {
+            _positions[_heap[i]] = -1;
+        }
+        _size = 0;
+    }
+
+    private boolean less(int id1, int id2) {
+        return (_keys[id1] < _keys[id2]) || ((_keys[id1] == _keys[id2]) && (id1 < id2));
+    }
+
+    private void siftUp(int pos) {
+        int id = _heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!less(id, _heap[parent])) {
+                break;
+            }
+            _heap[pos] = _heap[parent];
+            _positions[_heap[pos]] = pos;
+            pos = parent;
+        }
+        _heap[pos] = id;
+        _positions[id] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int id = _heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= _size) {
+                break;
+            }
+            if ((child + 1 < _size) && less(_heap[child + 1], _heap[child])) {
+                child++;
+            }
+            if (!less(_heap[child], id)) {
+                break;
+            }
+            _heap[pos] = _heap[child];
+            _positions[_heap[pos]] = pos;
+            pos = child;
+        }
+        _heap[pos] = id;
+        _positions[id] = pos;
+    }
+}
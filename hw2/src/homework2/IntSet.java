@@ -0,0 +1,160 @@
+package homework2;
+
+import java.util.Arrays;
+
+/***
+ * IntSet is a set of non-negative ints, stored in an open-addressing hash
+ * table with linear probing. It holds its elements in a single int array, so
+ * an element costs 4 to 8 bytes, instead of the entry object and boxed
+ * reference that an element of a HashSet costs. Elements can only be added.
+ * <p>
+ * The elements are iterated over by the slots of the table: for every
+ * 0 <= slot < slotCount(), slotAt(slot) is either an element or EMPTY.
+ */
+
+/*
+ * Representation invariant:
+ * _table.length is a power of two, and 0 <= _size < _table.length.
+ * _size is the number of slots of _table that are not EMPTY, and every such
+ * slot holds a non-negative int, which appears in no other slot.
+ * An element is found by probing from its hash slot without passing an EMPTY
+ * slot.
+ */
+class IntSet {
+
+    static final int EMPTY = -1;
+
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] _table;
+    private int   _size;
+
+    /**
+     * Creates an empty set.
+     *
+     * @effects Constructs a new empty IntSet.
+     */
+    IntSet() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty set, which can hold a given number of elements before
+     * its table grows.
+     *
+     * @requires expectedSize >= 0
+     * @effects Constructs a new empty IntSet.
+     */
+    IntSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (3 * capacity < 4 * (expectedSize + 1)) {
+            capacity *= 2;
+        }
+        _table = new int[capacity];
+        Arrays.fill(_table, EMPTY);
+        _size = 0;
+    }
+
+    /**
+     * Creates a set with the same elements as a given one.
+     *
+     * @effects Constructs a new IntSet holding the elements of other, which
+     *          later changes to either set don't affect.
+     */
+    IntSet(IntSet other) {
+        _table = other._table.clone();
+        _size = other._size;
+    }
+
+    private static int hash(int value) {
+        // spread the bits, as ids are dense and would otherwise cluster
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Adds an element to the set.
+     *
+     * @requires value >= 0
+     * @modifies this
+     * @effects Adds value to the set, if it is not in it already.
+     * @return true if value was added, false if it was already in the set.
+     */
+    boolean add(int value) {
+        int mask = _table.length - 1;
+        int slot = hash(value) & mask;
+        while (_table[slot] != EMPTY) {
+            if (_table[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        _table[slot] = value;
+        _size++;
+        // keep the table at most 3/4 full
+        if (4 * _size > 3 * _table.length) {
+            rehash(2 * _table.length);
+        }
+        return true;
+    }
+
+    /**
+     * Checks if an element is in the set.
+     *
+     * @return true if value is in the set, false if it isn't.
+     */
+    boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int mask = _table.length - 1;
+        int slot = hash(value) & mask;
+        while (_table[slot] != EMPTY) {
+            if (_table[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of elements in the set.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Returns the number of slots in the table of the set.
+     */
+    int slotCount() {
+        return _table.length;
+    }
+
+    /**
+     * Returns the element in a slot of the table of the set.
+     *
+     * @requires 0 <= slot < slotCount()
+     * @return The element in slot, or EMPTY if there is none.
+     */
+    int slotAt(int slot) {
+        return _table[slot];
+    }
+
+    private void rehash(int capacity) {
+        int[] old = _table;
+        _table = new int[capacity];
+        Arrays.fill(_table, EMPTY);
+        int mask = capacity - 1;
+        for (int value : old) {
+            if (value != EMPTY) {
+                int slot = hash(value) & mask;
+                while (_table[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                _table[slot] = value;
+            }
+        }
+    }
+}
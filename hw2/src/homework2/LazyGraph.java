@@ -0,0 +1,161 @@
+package homework2;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/***
+ * LazyGraph is a directed graph which is never built: the children of a node
+ * are computed by a given function when they are asked for, and the nodes of
+ * the graph are the ones a given predicate accepts. It describes generated
+ * state spaces, such as grids or the configurations of a puzzle, which
+ * DfsAlgorithm and PathFinder can search while computing only the part of the
+ * graph they visit.
+ * <p>
+ * The children computed for the most recently used nodes can be memoized, up
+ * to a given number of nodes, so they are not computed again by later
+ * searches. When the memo is full, the children of the least recently used
+ * node are dropped. The graph counts the computations and the memo hits.
+ * <p>
+ * The functions must be pure: they must return the same children and answer
+ * for the same node every time, and only children the predicate accepts. A
+ * LazyGraph can be searched by several threads at the same time, if its
+ * functions can.
+ */
+
+/*
+ * Representation invariant:
+ * _memoCapacity >= 0 && _memo.size() <= _memoCapacity.
+ * _memo is in access order: its first entry is the least recently used. It maps nodes
+ * to the unmodifiable sets of their children, as _children computed them.
+ * _memo and the counters are guarded by the lock of _memo.
+ */
+public class LazyGraph<N> implements Traversable<N> {
+
+    private final Function<? super N, ? extends Collection<? extends N>> _children;
+    private final Predicate<? super N>                                   _contains;
+    private final int                                                    _memoCapacity;
+    private final LinkedHashMap<N, Set<N>>                               _memo;
+    private long                                                         _computations;
+    private long                                                         _memoHits;
+
+    private void checkRep() {
+        assert (_memoCapacity >= 0) : "Memo capacity is negative";
+        assert (_memo.size() <= _memoCapacity) : "Memo holds more nodes than its capacity";
+    }
+
+    /**
+     * Creates a graph of all the nodes of type N, whose children are computed
+     * by a given function, and not memoized.
+     *
+     * @requires A valid function, which never returns null.
+     * @effects Constructs a new LazyGraph.
+     */
+    public LazyGraph(Function<? super N, ? extends Collection<? extends N>> children) {
+        this(children, n -> true, 0);
+    }
+
+    /**
+     * Creates a graph of the nodes a given predicate accepts, whose children
+     * are computed by a given function, and memoized for up to a given number
+     * of nodes.
+     *
+     * @requires A valid function, which never returns null, and a valid
+     *           predicate.
+     * @effects Constructs a new LazyGraph, with an empty memo.
+     * @throws IllegalArgumentException if memoCapacity is negative.
+     */
+    public LazyGraph(Function<? super N, ? extends Collection<? extends N>> children, Predicate<? super N> contains,
+            int memoCapacity) {
+        if (memoCapacity < 0) {
+            throw new IllegalArgumentException("Memo capacity must not be negative: " + memoCapacity);
+        }
+        _children = children;
+        _contains = contains;
+        _memoCapacity = memoCapacity;
+        _memo = new LinkedHashMap<N, Set<N>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<N, Set<N>> eldest) {
+                return size() > LazyGraph.this._memoCapacity;
+            }
+        };
+        _computations = 0;
+        _memoHits = 0;
+        checkRep();
+    }
+
+    /**
+     * Returns a set of all the children of a given node.
+     *
+     * @requires A valid node of type N.
+     * @effects Computes the children of n, unless they are memoized, and
+     *          memoizes them.
+     * @return An unmodifiable set of all the children of node n, in the order
+     *         the function returned them, or null if n is not in the graph.
+     */
+    public Set<N> getChildren(N n) {
+        if (!nodeInGraph(n)) {
+            return null;
+        }
+        synchronized (_memo) {
+            Set<N> children = _memo.get(n);
+            if (children != null) {
+                _memoHits++;
+                return children;
+            }
+            _computations++;
+        }
+        Set<N> children = Collections.unmodifiableSet(new LinkedHashSet<N>(_children.apply(n)));
+        if (_memoCapacity > 0) {
+            synchronized (_memo) {
+                _memo.put(n, children);
+                checkRep();
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Checks if a given node is in the graph.
+     *
+     * @requires A valid node of type N.
+     * @return true if the predicate accepts n, false otherwise.
+     */
+    public boolean nodeInGraph(N n) {
+        return (n != null) && _contains.test(n);
+    }
+
+    /**
+     * Returns the number of times the children of a node were computed.
+     */
+    public long getComputations() {
+        synchronized (_memo) {
+            return _computations;
+        }
+    }
+
+    /**
+     * Returns the number of times the children of a node were found in the
+     * memo.
+     */
+    public long getMemoHits() {
+        synchronized (_memo) {
+            return _memoHits;
+        }
+    }
+
+    /**
+     * Returns the number of nodes whose children are memoized.
+     */
+    public int getMemoSize() {
+        synchronized (_memo) {
+            return _memo.size();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package homework2;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/***
+ * MappedGraph is a read-only graph of WeightedNodes stored in a binary file,
+ * which is memory-mapped and traversed in place: opening a file only maps it,
+ * so it takes the same short time whatever its size, and the operating system
+ * pages in only the parts of it that are read. Nodes are decoded from the file
+ * when they are asked for, so a node returned twice is equal, but not the same
+ * object.
+ * <p>
+ * A file is written from a Graph by write(). It holds the nodes in the order
+ * of their ids in the graph, and their children in compressed sparse row (CSR)
+ * form, sorted in DfsAlgorithm.VISIT_ORDER, so DfsAlgorithm and
+ * DijkstraAlgorithm can run on a MappedGraph directly. All numbers are
+ * big-endian, and every section starts at a multiple of 8 bytes:
+ * <pre>
+ *   header       magic "WGRF", format version, node count n, hash slot
+ *                count h (ints), edge count e, name bytes b (longs)
+ *   costs        int[n], the cost of every node
+ *   name offsets long[n + 1], where the name of a node starts in names
+ *   edge offsets long[n + 1], where the children of a node start in targets
+ *   hash table   int[h], node ids by the hash of the node, or -1 (h is a
+ *                power of two, and linear probing is used)
+ *   targets      int[e], the children of every node
+ *   names        byte[b], the names of all nodes in UTF-8
+ * </pre>
+ * Since a single mapping can't be larger than 2 GB, a large file is mapped in
+ * segments of SEGMENT_SIZE bytes. Each segment also maps the first 8 bytes of
+ * the next one, so every int and long can be read from one segment.
+ * <p>
+ * A MappedGraph is immutable, and can be shared between threads.
+ */
+
+/*
+ * Representation invariant:
+ * _segments[i] maps the file from i * SEGMENT_SIZE, through the first 8 bytes of segment i + 1
+ * (or to the end of the file), and _segments covers the whole file.
+ * The section positions match the header of the file, as computed by the constructor.
+ */
+public class MappedGraph implements IndexedGraph<WeightedNode> {
+
+    /**
+     * The first int of every graph file.
+     */
+    static final int MAGIC = 0x57475246;
+
+    /**
+     * The version of the file format written by write(), which is the only
+     * one open() reads.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    private static final int  HEADER_BYTES = 32;
+    private static final int  SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final int  EMPTY_SLOT   = -1;
+
+    private final MappedByteBuffer[] _segments;
+    private final int                _size;
+    private final int                _hashSlots;
+    private final long               _edgeCount;
+    private final long               _costsPos;
+    private final long               _nameOffsetsPos;
+    private final long               _edgeOffsetsPos;
+    private final long               _hashPos;
+    private final long               _targetsPos;
+    private final long               _namesPos;
+
+    private void checkRep() {
+        assert (_segments.length > 0) : "File is not mapped";
+        assert (_hashSlots > _size) && (Integer.bitCount(_hashSlots) == 1) : "Bad hash table size";
+        assert (longAt(_edgeOffsetsPos + 8L * _size) == _edgeCount) : "Edge offsets don't match the number of edges";
+    }
+
+    private MappedGraph(MappedByteBuffer[] segments, long fileSize) throws IOException {
+        _segments = segments;
+        if ((fileSize < HEADER_BYTES) || (intAt(0) != MAGIC)) {
+            throw new IOException("Not a graph file");
+        }
+        if (intAt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported graph file version " + intAt(4));
+        }
+        _size = intAt(8);
+        _hashSlots = intAt(12);
+        _edgeCount = longAt(16);
+        long nameBytes = longAt(24);
+        _costsPos = HEADER_BYTES;
+        _nameOffsetsPos = align(_costsPos + 4L * _size);
+        _edgeOffsetsPos = _nameOffsetsPos + 8L * (_size + 1);
+        _hashPos = _edgeOffsetsPos + 8L * (_size + 1);
+        _targetsPos = align(_hashPos + 4L * _hashSlots);
+        _namesPos = align(_targetsPos + 4L * _edgeCount);
+        if (_namesPos + nameBytes != fileSize) {
+            throw new IOException("Graph file is truncated or corrupt");
+        }
+        checkRep();
+    }
+
+    private static long align(long pos) {
+        return (pos + 7) & ~7L;
+    }
+
+    /**
+     * Opens a graph file written by write(), by mapping it into memory.
+     *
+     * @requires A valid path.
+     * @return A MappedGraph reading the graph in file.
+     * @throws IOException if file can't be read, or is not a graph file of
+     *         FORMAT_VERSION.
+     */
+    public static MappedGraph open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            int count = (int)Math.max(1, (fileSize + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long)i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(SEGMENT_SIZE + 8, fileSize - start));
+            }
+            // the mappings stay valid after the channel is closed
+            return new MappedGraph(segments, fileSize);
+        }
+    }
+
+    /**
+     * Writes a graph to a file, in the format open() reads.
+     *
+     * @requires A valid graph and a valid path.
+     * @effects Creates file, or replaces its contents, with the nodes and edges
+     *          graph has now. The ids of the nodes in the file are their ids
+     *          in graph.
+     * @throws IOException if file can't be written.
+     */
+    public static void write(Graph<WeightedNode> graph, Path file) throws IOException {
+        CompactGraph<WeightedNode> compact = graph.freeze(DfsAlgorithm.VISIT_ORDER);
+        int size = compact.size();
+        int hashSlots = 2;
+        while (hashSlots < 2L * size) {
+            hashSlots *= 2;
+        }
+        byte[][] names = new byte[size][];
+        long nameBytes = 0;
+        int[] table = new int[hashSlots];
+        Arrays.fill(table, EMPTY_SLOT);
+        for (int id = 0; id < size; id++) {
+            WeightedNode n = compact.getNode(id);
+            names[id] = n.getName().getBytes(StandardCharsets.UTF_8);
+            nameBytes += names[id].length;
+            int slot = hash(n) & (hashSlots - 1);
+            while (table[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) & (hashSlots - 1);
+            }
+            table[slot] = id;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(size);
+            out.writeInt(hashSlots);
+            out.writeLong(compact.edgeCount());
+            out.writeLong(nameBytes);
+            for (int id = 0; id < size; id++) {
+                out.writeInt(compact.getNode(id).getCost());
+            }
+            pad(out, 4L * size);
+            long nameOffset = 0;
+            for (int id = 0; id < size; id++) {
+                out.writeLong(nameOffset);
+                nameOffset += names[id].length;
+            }
+            out.writeLong(nameOffset);
+            long edgeOffset = 0;
+            for (int id = 0; id < size; id++) {
+                out.writeLong(edgeOffset);
+                edgeOffset += compact.childCount(id);
+            }
+            out.writeLong(edgeOffset);
+            for (int slot : table) {
+                out.writeInt(slot);
+            }
+            pad(out, 4L * hashSlots);
+            for (int id = 0; id < size; id++) {
+                for (int k = 0; k < compact.childCount(id); k++) {
+                    out.writeInt(compact.childAt(id, k));
+                }
+            }
+            pad(out, 4L * compact.edgeCount());
+            for (byte[] name : names) {
+                out.write(name);
+            }
+        }
+    }
+
+    /**
+     * Writes the zeros that align a section of a given length to 8 bytes.
+     */
+    private static void pad(DataOutputStream out, long length) throws IOException {
+        for (long k = length; k < align(length); k++) {
+            out.writeByte(0);
+        }
+    }
+
+    private static int hash(WeightedNode n) {
+        // the same spreading as IntSet, since String hashes of similar names
+        // are close to each other
+        int h = n.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int intAt(long pos) {
+        return _segments[(int)(pos >>> SEGMENT_BITS)].getInt((int)(pos & (SEGMENT_SIZE - 1)));
+    }
+
+    private long longAt(long pos) {
+        return _segments[(int)(pos >>> SEGMENT_BITS)].getLong((int)(pos & (SEGMENT_SIZE - 1)));
+    }
+
+    private byte byteAt(long pos) {
+        return _segments[(int)(pos >>> SEGMENT_BITS)].get((int)(pos & (SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * Returns the UTF-8 bytes of the name of the node with a given id.
+     */
+    private byte[] nameBytes(int id) {
+        long start = longAt(_nameOffsetsPos + 8L * id);
+        byte[] name = new byte[(int)(longAt(_nameOffsetsPos + 8L * (id + 1)) - start)];
+        for (int k = 0; k < name.length; k++) {
+            name[k] = byteAt(_namesPos + start + k);
+        }
+        return name;
+    }
+
+    /**
+     * Checks if the name of the node with a given id is given UTF-8 bytes.
+     */
+    private boolean nameEquals(int id, byte[] name) {
+        long start = longAt(_nameOffsetsPos + 8L * id);
+        if (longAt(_nameOffsetsPos + 8L * (id + 1)) - start != name.length) {
+            return false;
+        }
+        for (int k = 0; k < name.length; k++) {
+            if (byteAt(_namesPos + start + k) != name[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return The number of nodes in the graph.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return The number of edges in the graph.
+     */
+    public long edgeCount() {
+        return _edgeCount;
+    }
+
+    /**
+     * Returns the id of a given node, by looking it up in the hash table of
+     * the file.
+     *
+     * @requires A valid node or null.
+     * @return The id of n, or -1 if n is not in the graph.
+     */
+    public int indexOf(WeightedNode n) {
+        if (n == null) {
+            return -1;
+        }
+        byte[] name = null;
+        for (int slot = hash(n) & (_hashSlots - 1);; slot = (slot + 1) & (_hashSlots - 1)) {
+            int id = intAt(_hashPos + 4L * slot);
+            if (id == EMPTY_SLOT) {
+                return -1;
+            }
+            if (costOf(id) == n.getCost()) {
+                if (name == null) {
+                    name = n.getName().getBytes(StandardCharsets.UTF_8);
+                }
+                if (nameEquals(id, name)) {
+                    return id;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cost of the node with a given id, without decoding it.
+     *
+     * @requires 0 <= id < size()
+     * @return The cost of the node whose id is id.
+     */
+    public int costOf(int id) {
+        return intAt(_costsPos + 4L * id);
+    }
+
+    /**
+     * Returns the node with a given id, decoded from the file.
+     *
+     * @requires 0 <= id < size()
+     * @return A new WeightedNode equal to the node whose id is id.
+     */
+    public WeightedNode getNode(int id) {
+        return new WeightedNode(new String(nameBytes(id), StandardCharsets.UTF_8), costOf(id));
+    }
+
+    /**
+     * Returns the number of children of a given node.
+     *
+     * @requires 0 <= id < size()
+     * @return The number of children of the node whose id is id.
+     */
+    public int childCount(int id) {
+        return (int)(longAt(_edgeOffsetsPos + 8L * (id + 1)) - longAt(_edgeOffsetsPos + 8L * id));
+    }
+
+    /**
+     * Returns the id of a child of a given node.
+     *
+     * @requires 0 <= id < size() && 0 <= k < childCount(id)
+     * @return The id of the k-th child of the node whose id is id.
+     */
+    public int childAt(int id, int k) {
+        return intAt(_targetsPos + 4L * (longAt(_edgeOffsetsPos + 8L * id) + k));
+    }
+
+    /**
+     * Returns the order the children of every node are sorted by.
+     *
+     * @return DfsAlgorithm.VISIT_ORDER.
+     */
+    public Comparator<? super WeightedNode> getChildOrder() {
+        return DfsAlgorithm.VISIT_ORDER;
+    }
+}
@@ -54,38 +54,47 @@ public class NodeCountingPath implements Path<WeightedNode, NodeCountingPath> {
     private final int cost;
 
     /**
-     * Creates a NodeCountingPath containing one node.
+     * Creates a NodeCountingPath containing one node, with no back edges.
      * 
      * @requires node != null
      * @effects Creates a new NodeCountingPath which originates at
      *          <tte>node</tt>.
      */
     public NodeCountingPath(WeightedNode node) {
-        this(node, null);
+        this(node, 0, null);
     }
 
     /**
-     * Creates a NodeCountingPath from a WeightedNode and a NodeCountingPath.
+     * Creates a NodeCountingPath containing one node, with a given number of
+     * back edges.
      * 
-     * @requires node != null
+     * @requires node != null && backEdges >= 0
+     * @effects Creates a new NodeCountingPath which originates at
+     *          <tte>node</tt>, and whose cost is 1 + backEdges.
+     */
+    public NodeCountingPath(WeightedNode node, int backEdges) {
+        this(node, backEdges, null);
+    }
+
+    /**
+     * Creates a NodeCountingPath from a WeightedNode, its number of back edges
+     * and a NodeCountingPath.
+     * 
+     * @requires node != null && backEdges >= 0
      * @effects Creates a new NodeCountingPath 'res' such that res.elements =
      *          path.elements + [node]
      */
-    private NodeCountingPath(WeightedNode node, NodeCountingPath path) {
-        if (node == null)
+    private NodeCountingPath(WeightedNode node, int backEdges, NodeCountingPath path) {
+        if ((node == null) || (backEdges < 0))
             throw new IllegalArgumentException();
 
         this.node = node;
         this.path = path;
 
         if (path != null)
-            // TODO: update the following line to support back edges
-            // <Itay> Modified
-            this.cost = 1 + node.getBackEdges() + path.cost;
+            this.cost = 1 + backEdges + path.cost;
         else
-            // TODO: update the following line to support back edges
-            // <Itay> Modified
-            this.cost = 1 + node.getBackEdges();
+            this.cost = 1 + backEdges;
     }
 
     /**
@@ -96,7 +105,19 @@ public class NodeCountingPath implements Path<WeightedNode, NodeCountingPath> {
      *         [n] && p.cost >= this.cost
      */
     public NodeCountingPath extend(WeightedNode node) {
-        return new NodeCountingPath(node, this);
+        return new NodeCountingPath(node, 0, this);
+    }
+
+    /**
+     * Creates an extended path by adding a new node, with a given number of
+     * back edges, to its end.
+     * 
+     * @requires node != null && backEdges >= 0
+     * @return a new NodeCountingPath p such that p.elements == this.elements +
+     *         [n] && p.cost == this.cost + 1 + backEdges
+     */
+    public NodeCountingPath extend(WeightedNode node, int backEdges) {
+        return new NodeCountingPath(node, backEdges, this);
     }
 
     /**
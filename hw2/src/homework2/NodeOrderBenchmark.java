@@ -0,0 +1,180 @@
+package homework2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/***
+ * NodeOrderBenchmark measures how relabeling a frozen graph (see
+ * CompactGraph.relabel) changes the cost of DfsAlgorithm and PathFinder
+ * searches on it. The graph is a grid, whose nodes are added in a random
+ * order, with every cell connected to the cells right of it and below it,
+ * and a few random edges, so the ids of the nodes follow no pattern of the
+ * edges, as in a graph loaded from unordered input.
+ * <p>
+ * For the insertion order and every NodeOrder, it prints the time to
+ * relabel, the time of full DFS traversals and of a PathFinder query, and the
+ * misses of a simulated data cache on the arrays a DFS reads (the search
+ * state, the offsets and the children of the nodes), since Java can't read
+ * the hardware counters. The searches find the same paths in all orders.
+ * <p>
+ * Usage: java homework2.NodeOrderBenchmark [grid side, 400 by default]
+ */
+public class NodeOrderBenchmark {
+
+    private static final int LINE_BYTES  = 64;
+    private static final int CACHE_LINES = 1 << 12;
+    private static final int ROUNDS      = 5;
+
+    /**
+     * A direct-mapped cache of CACHE_LINES lines of LINE_BYTES bytes.
+     */
+    private static final class SimulatedCache {
+        private final long[] _tags = new long[CACHE_LINES];
+        private long         _misses;
+
+        SimulatedCache() {
+            java.util.Arrays.fill(_tags, -1);
+        }
+
+        void read(long address) {
+            long line = address / LINE_BYTES;
+            int slot = (int)(line % CACHE_LINES);
+            if (_tags[slot] != line) {
+                _tags[slot] = line;
+                _misses++;
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int side = (args.length > 0) ? Integer.parseInt(args[0]) : 400;
+        Random random = new Random(1);
+        CompactGraph<WeightedNode> inserted = buildGrid(side, random);
+        System.out.printf("grid %d x %d: %d nodes, %d edges%n", side, side, inserted.size(), inserted.edgeCount());
+
+        HashSet<WeightedNode> startNodes = new HashSet<WeightedNode>();
+        HashSet<WeightedNode> endNodes = new HashSet<WeightedNode>();
+        for (int k = 0; k < 4; k++) {
+            startNodes.add(cell(random.nextInt(side / 4), random.nextInt(side / 4)));
+            endNodes.add(cell(side - 1 - random.nextInt(side / 4), side - 1 - random.nextInt(side / 4)));
+        }
+        WeightedNode root = cell(0, 0);
+
+        System.out.printf("%-22s %12s %12s %14s %16s%n", "order", "relabel ms", "DFS ms", "PathFinder ms",
+                "misses / node");
+        NodeCountingPath expected = null;
+        List<CompactGraph.NodeOrder> orders = new ArrayList<CompactGraph.NodeOrder>();
+        orders.add(null);
+        Collections.addAll(orders, CompactGraph.NodeOrder.values());
+        for (CompactGraph.NodeOrder order : orders) {
+            long start = System.nanoTime();
+            CompactGraph<WeightedNode> graph = (order == null) ? inserted : inserted.relabel(order);
+            double relabelMs = (System.nanoTime() - start) / 1e6;
+
+            DfsAlgorithm dfs = new DfsAlgorithm(graph);
+            dfs.run(root, null);
+            start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                dfs.run(root, null);
+            }
+            double dfsMs = (System.nanoTime() - start) / 1e6 / ROUNDS;
+
+            PathFinder finder = new PathFinder(graph, startNodes, endNodes);
+            NodeCountingPath path = finder.findMinPath();
+            start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                finder.findMinPath();
+            }
+            double finderMs = (System.nanoTime() - start) / 1e6 / ROUNDS;
+            if (order == null) {
+                expected = path;
+            } else if ((path == null) ? (expected != null) : !path.equals(expected)) {
+                throw new IllegalStateException("Relabeling by " + order + " changed the path found");
+            }
+
+            System.out.printf("%-22s %12.1f %12.1f %14.1f %16.2f%n", (order == null) ? "insertion" : order,
+                    relabelMs, dfsMs, finderMs, (double)simulateDfs(graph, graph.indexOf(root)) / graph.size());
+        }
+    }
+
+    private static WeightedNode cell(int x, int y) {
+        return new WeightedNode(x + "," + y, (7 * x + 3 * y) % 10);
+    }
+
+    /**
+     * Builds the grid, adding its nodes in a random order, and freezes it.
+     */
+    private static CompactGraph<WeightedNode> buildGrid(int side, Random random) {
+        List<WeightedNode> cells = new ArrayList<WeightedNode>();
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                cells.add(cell(x, y));
+            }
+        }
+        Collections.shuffle(cells, random);
+        Graph<WeightedNode> graph = new Graph<WeightedNode>(cells.size());
+        graph.addNodes(cells);
+        for (WeightedNode n : cells) {
+            String[] xy = n.getName().split(",");
+            int x = Integer.parseInt(xy[0]);
+            int y = Integer.parseInt(xy[1]);
+            if (x + 1 < side) {
+                graph.addEdge(n, cells.get(graph.indexOf(cell(x + 1, y))));
+            }
+            if (y + 1 < side) {
+                graph.addEdge(n, cells.get(graph.indexOf(cell(x, y + 1))));
+            }
+            if (random.nextInt(16) == 0) {
+                graph.addEdge(n, cells.get(random.nextInt(cells.size())));
+            }
+        }
+        return graph.freeze(DfsAlgorithm.VISIT_ORDER);
+    }
+
+    /**
+     * Walks a graph in the order DfsAlgorithm visits it from a start node,
+     * and feeds the addresses a DFS reads to a simulated cache: the state of
+     * every node visited or checked, and the offsets and children of every
+     * node visited. The arrays are laid out one after the other.
+     *
+     * @return The number of cache misses.
+     */
+    private static long simulateDfs(CompactGraph<WeightedNode> graph, int start) {
+        long stateBase = 0;
+        long offsetsBase = 4L * graph.size();
+        long targetsBase = 2 * offsetsBase + 4;
+        SimulatedCache cache = new SimulatedCache();
+        boolean[] visited = new boolean[graph.size()];
+        int[] stack = new int[graph.size()];
+        int[] cursors = new int[graph.size()];
+        int[] firstChild = new int[graph.size() + 1];
+        for (int id = 0; id < graph.size(); id++) {
+            firstChild[id + 1] = firstChild[id] + graph.childCount(id);
+        }
+        int depth = 0;
+        stack[depth++] = start;
+        visited[start] = true;
+        cache.read(stateBase + 4L * start);
+        while (depth > 0) {
+            int id = stack[depth - 1];
+            cache.read(offsetsBase + 4L * id);
+            if (cursors[depth - 1] < graph.childCount(id)) {
+                int k = cursors[depth - 1]++;
+                int child = graph.childAt(id, k);
+                cache.read(targetsBase + 4L * (firstChild[id] + k));
+                cache.read(stateBase + 4L * child);
+                if (!visited[child]) {
+                    visited[child] = true;
+                    cursors[depth] = 0;
+                    stack[depth++] = child;
+                }
+            } else {
+                depth--;
+            }
+        }
+        return cache._misses;
+    }
+}
@@ -0,0 +1,147 @@
+package homework2;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/***
+ * OffHeapArena is a growable block of memory outside the Java heap, addressed
+ * by long byte positions. It is kept in direct ByteBuffers (chunks) of up to
+ * CHUNK_SIZE bytes each, since a single buffer can't be larger than 2 GB, so
+ * the garbage collector sees only the few chunk objects, whatever the size of
+ * the arena.
+ * <p>
+ * Values are read and written in native byte order. An int must be at a
+ * position which is a multiple of 4, and a long at a multiple of 8, so no
+ * value spans two chunks.
+ * <p>
+ * The arena lives until close() is called. Its memory is then released by the
+ * JVM once the chunk objects are collected, and reading or writing it is an
+ * error.
+ */
+
+/*
+ * Representation invariant:
+ * _chunks[i].capacity() == CHUNK_SIZE for every chunk but the last one, and the
+ * capacities of all chunks add up to _capacity.
+ * _chunks == null iff the arena is closed.
+ */
+final class OffHeapArena {
+
+    private static final int  CHUNK_BITS = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+
+    private ByteBuffer[] _chunks;
+    private long         _capacity;
+
+    /**
+     * Creates an empty arena.
+     *
+     * @effects Constructs a new OffHeapArena of capacity 0.
+     */
+    OffHeapArena() {
+        _chunks = new ByteBuffer[0];
+        _capacity = 0;
+    }
+
+    /**
+     * Grows the arena to hold a given number of bytes, keeping its contents.
+     * New bytes are zero.
+     *
+     * @requires bytes >= 0, and the arena is not closed.
+     * @modifies this
+     * @effects Makes capacity() at least bytes, at least doubling it if it
+     *          grows, so growing byte by byte takes amortized constant time.
+     */
+    void ensureCapacity(long bytes) {
+        if (bytes <= _capacity) {
+            return;
+        }
+        long target = Math.max(bytes, 2 * _capacity);
+        int count = (int)((target + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        ByteBuffer[] chunks = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            int size = (int)Math.min(CHUNK_SIZE, target - ((long)i << CHUNK_BITS));
+            ByteBuffer old = (i < _chunks.length) ? _chunks[i] : null;
+            if ((old != null) && (old.capacity() == size)) {
+                chunks[i] = old;
+                continue;
+            }
+            chunks[i] = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+            if (old != null) {
+                chunks[i].put(old.duplicate().clear());
+                chunks[i].clear();
+            }
+        }
+        _chunks = chunks;
+        _capacity = target;
+    }
+
+    /**
+     * Returns the number of bytes the arena holds.
+     */
+    long capacity() {
+        return _capacity;
+    }
+
+    private ByteBuffer chunk(long pos) {
+        return _chunks[(int)(pos >>> CHUNK_BITS)];
+    }
+
+    private static int offset(long pos) {
+        return (int)(pos & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * @requires 0 <= pos < capacity()
+     */
+    byte getByte(long pos) {
+        return chunk(pos).get(offset(pos));
+    }
+
+    /**
+     * @requires 0 <= pos < capacity()
+     */
+    void putByte(long pos, byte value) {
+        chunk(pos).put(offset(pos), value);
+    }
+
+    /**
+     * @requires 0 <= pos, pos + 4 <= capacity(), and pos % 4 == 0
+     */
+    int getInt(long pos) {
+        return chunk(pos).getInt(offset(pos));
+    }
+
+    /**
+     * @requires 0 <= pos, pos + 4 <= capacity(), and pos % 4 == 0
+     */
+    void putInt(long pos, int value) {
+        chunk(pos).putInt(offset(pos), value);
+    }
+
+    /**
+     * @requires 0 <= pos, pos + 8 <= capacity(), and pos % 8 == 0
+     */
+    long getLong(long pos) {
+        return chunk(pos).getLong(offset(pos));
+    }
+
+    /**
+     * @requires 0 <= pos, pos + 8 <= capacity(), and pos % 8 == 0
+     */
+    void putLong(long pos, long value) {
+        chunk(pos).putLong(offset(pos), value);
+    }
+
+    /**
+     * Closes the arena.
+     *
+     * @modifies this
+     * @effects Drops the chunks of the arena, so their memory is released once
+     *          they are collected, and makes capacity() 0.
+     */
+    void close() {
+        _chunks = null;
+        _capacity = 0;
+    }
+}
@@ -0,0 +1,397 @@
+package homework2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/***
+ * OffHeapGraph is a read-only graph of WeightedNodes whose costs and edges are
+ * kept outside the Java heap, in OffHeapArenas, so it can hold graphs larger
+ * than the heap without adding to the work of the garbage collector. The only
+ * data it keeps on the heap is the table from nodes to their ids.
+ * <p>
+ * The children of the nodes are kept in compressed sparse row (CSR) form,
+ * sorted in DfsAlgorithm.VISIT_ORDER, so DfsAlgorithm, DijkstraAlgorithm and
+ * PathFinder can run on an OffHeapGraph directly. Nodes are decoded from the
+ * arenas when they are asked for by id, so a node returned twice is equal, but
+ * not the same object.
+ * <p>
+ * A graph is built by a Builder, or copied from a Graph by copyOf(). It lives
+ * until close() is called, which must be done only once all its readers are
+ * done with it. Reading a closed graph is an error. Until then, it is
+ * immutable, and can be shared between threads.
+ */
+
+/*
+ * Representation invariant:
+ * _ids maps every node to its id, and the ids are exactly 0 .. _ids.size() - 1.
+ * _costs holds the cost of every node (int[size()]), and _nameOffsets / _names the
+ * UTF-8 bytes of its name (long[size() + 1] / byte[]).
+ * _edgeOffsets (long[size() + 1]) and _targets (int[edgeCount()]) hold the children of
+ * every node: the children of id are the ids _targets[_edgeOffsets[id] .. _edgeOffsets[id + 1]),
+ * sorted in VISIT_ORDER, with no two equal.
+ * _closed is true iff close() was called, and then the arenas are closed.
+ */
+public class OffHeapGraph implements IndexedGraph<WeightedNode>, AutoCloseable {
+
+    /**
+     * Builds an OffHeapGraph from nodes and edges added one at a time. The
+     * edges are staged off the heap too, and sorted into rows by build().
+     * A Builder must be used by one thread at a time.
+     */
+    public static class Builder {
+        private HashMap<WeightedNode, Integer> _ids;
+        private OffHeapArena                   _costs;
+        private OffHeapArena                   _nameOffsets;
+        private OffHeapArena                   _names;
+        private OffHeapArena                   _edges;
+        private long                           _nameBytes;
+        private long                           _edgeCount;
+
+        /**
+         * Creates an empty builder.
+         *
+         * @effects Constructs a new Builder with no nodes and no edges.
+         */
+        public Builder() {
+            _ids = new HashMap<WeightedNode, Integer>();
+            _costs = new OffHeapArena();
+            _nameOffsets = new OffHeapArena();
+            _names = new OffHeapArena();
+            _edges = new OffHeapArena();
+            _nameBytes = 0;
+            _edgeCount = 0;
+        }
+
+        private void checkOpen() {
+            if (_ids == null) {
+                throw new IllegalStateException("Graph was already built");
+            }
+        }
+
+        /**
+         * Adds a node to the graph being built.
+         *
+         * @requires A valid node.
+         * @throws IllegalStateException if build() was already called.
+         * @effects Adds n to the graph, if it is not in it already, with the
+         *          next free id.
+         * @return 0 if node was successfully added, 1 if the node already
+         *         exists in the graph.
+         */
+        public int addNode(WeightedNode n) {
+            checkOpen();
+            int id = _ids.size();
+            if (_ids.putIfAbsent(n, id) != null) {
+                return 1;
+            }
+            byte[] name = n.getName().getBytes(StandardCharsets.UTF_8);
+            _costs.ensureCapacity(4L * (id + 1));
+            _costs.putInt(4L * id, n.getCost());
+            _names.ensureCapacity(_nameBytes + name.length);
+            for (byte b : name) {
+                _names.putByte(_nameBytes++, b);
+            }
+            _nameOffsets.ensureCapacity(8L * (id + 1));
+            _nameOffsets.putLong(8L * id, _nameBytes - name.length);
+            return 0;
+        }
+
+        /**
+         * Adds an edge to the graph being built, directed from n1 to n2. An
+         * edge added more than once is kept once.
+         *
+         * @requires Two valid nodes.
+         * @throws IllegalStateException if build() was already called.
+         * @throws IllegalArgumentException if n1 or n2 was not added.
+         * @effects Connects n1 to n2.
+         */
+        public void addEdge(WeightedNode n1, WeightedNode n2) {
+            checkOpen();
+            Integer source = _ids.get(n1);
+            Integer target = _ids.get(n2);
+            if ((source == null) || (target == null)) {
+                throw new IllegalArgumentException("Edge between nodes which are not in the graph");
+            }
+            _edges.ensureCapacity(8L * (_edgeCount + 1));
+            _edges.putLong(8L * _edgeCount++, ((long)source << 32) | target);
+        }
+
+        /**
+         * Builds the graph. Sorting the edges into rows takes two ints per node
+         * on the heap, which are released when build() returns.
+         *
+         * @throws IllegalStateException if build() was already called.
+         * @effects Releases the staged edges, and makes the builder unusable.
+         * @return An OffHeapGraph with the nodes and edges added to the
+         *         builder, where the ids of the nodes follow the order they
+         *         were added in.
+         */
+        public OffHeapGraph build() {
+            checkOpen();
+            int size = _ids.size();
+
+            // rank the nodes in VISIT_ORDER, so rows are sorted by sorting ints
+            WeightedNode[] sorted = _ids.keySet().toArray(new WeightedNode[size]);
+            Arrays.sort(sorted, DfsAlgorithm.VISIT_ORDER);
+            int[] rank = new int[size];
+            int[] byRank = new int[size];
+            for (int r = 0; r < size; r++) {
+                int id = _ids.get(sorted[r]);
+                rank[id] = r;
+                byRank[r] = id;
+            }
+            sorted = null;
+
+            // group the edges by source (counting sort), ranks of the targets
+            OffHeapArena cursors = new OffHeapArena();
+            cursors.ensureCapacity(8L * (size + 1));
+            for (long e = 0; e < _edgeCount; e++) {
+                long pos = 8L * ((int)(_edges.getLong(8L * e) >>> 32) + 1);
+                cursors.putLong(pos, cursors.getLong(pos) + 1);
+            }
+            for (int id = 0; id < size; id++) {
+                cursors.putLong(8L * (id + 1), cursors.getLong(8L * (id + 1)) + cursors.getLong(8L * id));
+            }
+            OffHeapArena grouped = new OffHeapArena();
+            grouped.ensureCapacity(4L * _edgeCount);
+            for (long e = 0; e < _edgeCount; e++) {
+                long edge = _edges.getLong(8L * e);
+                long pos = 8L * (int)(edge >>> 32);
+                long slot = cursors.getLong(pos);
+                cursors.putLong(pos, slot + 1);
+                grouped.putInt(4L * slot, rank[(int)edge]);
+            }
+            _edges.close();
+
+            // sort and deduplicate every row; a row ends where the next began
+            OffHeapArena edgeOffsets = new OffHeapArena();
+            edgeOffsets.ensureCapacity(8L * (size + 1));
+            OffHeapArena targets = new OffHeapArena();
+            targets.ensureCapacity(4L * _edgeCount);
+            long start = 0;
+            long edgeCount = 0;
+            int[] row = new int[0];
+            for (int id = 0; id < size; id++) {
+                edgeOffsets.putLong(8L * id, edgeCount);
+                long end = cursors.getLong(8L * id);
+                int degree = (int)(end - start);
+                if (row.length < degree) {
+                    row = new int[Math.max(degree, 2 * row.length)];
+                }
+                for (int k = 0; k < degree; k++) {
+                    row[k] = grouped.getInt(4L * (start + k));
+                }
+                Arrays.sort(row, 0, degree);
+                for (int k = 0; k < degree; k++) {
+                    if ((k == 0) || (row[k] != row[k - 1])) {
+                        targets.putInt(4L * edgeCount++, byRank[row[k]]);
+                    }
+                }
+                start = end;
+            }
+            edgeOffsets.putLong(8L * size, edgeCount);
+            cursors.close();
+            grouped.close();
+
+            _nameOffsets.ensureCapacity(8L * (size + 1));
+            _nameOffsets.putLong(8L * size, _nameBytes);
+            OffHeapGraph graph = new OffHeapGraph(_ids, _costs, _nameOffsets, _names, edgeOffsets, targets, edgeCount);
+            _ids = null;
+            _costs = null;
+            _nameOffsets = null;
+            _names = null;
+            _edges = null;
+            return graph;
+        }
+    }
+
+    private final Map<WeightedNode, Integer> _ids;
+    private final OffHeapArena               _costs;
+    private final OffHeapArena               _nameOffsets;
+    private final OffHeapArena               _names;
+    private final OffHeapArena               _edgeOffsets;
+    private final OffHeapArena               _targets;
+    private final long                       _edgeCount;
+    private volatile boolean                 _closed;
+
+    private void checkRep() {
+        assert (_edgeOffsets.getLong(8L * _ids.size()) == _edgeCount) : "Edge offsets don't match the number of edges";
+        assert (_targets.capacity() >= 4L * _edgeCount) : "Edges are missing from graph";
+    }
+
+    private OffHeapGraph(Map<WeightedNode, Integer> ids, OffHeapArena costs, OffHeapArena nameOffsets,
+                         OffHeapArena names, OffHeapArena edgeOffsets, OffHeapArena targets, long edgeCount) {
+        _ids = ids;
+        _costs = costs;
+        _nameOffsets = nameOffsets;
+        _names = names;
+        _edgeOffsets = edgeOffsets;
+        _targets = targets;
+        _edgeCount = edgeCount;
+        _closed = false;
+        checkRep();
+    }
+
+    /**
+     * Copies a graph off the heap.
+     *
+     * @requires A valid graph.
+     * @return An OffHeapGraph with the nodes and edges graph has now, where
+     *         every node has the same id as in graph.
+     */
+    public static OffHeapGraph copyOf(Graph<WeightedNode> graph) {
+        CompactGraph<WeightedNode> compact = graph.freeze(DfsAlgorithm.VISIT_ORDER);
+        Builder builder = new Builder();
+        for (int id = 0; id < compact.size(); id++) {
+            builder.addNode(compact.getNode(id));
+        }
+        for (int id = 0; id < compact.size(); id++) {
+            for (int k = 0; k < compact.childCount(id); k++) {
+                builder.addEdge(compact.getNode(id), compact.getNode(compact.childAt(id, k)));
+            }
+        }
+        return builder.build();
+    }
+
+    private void checkOpen() {
+        if (_closed) {
+            throw new IllegalStateException("Graph is closed");
+        }
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return The number of nodes in the graph.
+     */
+    public int size() {
+        return _ids.size();
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return The number of edges in the graph.
+     */
+    public long edgeCount() {
+        return _edgeCount;
+    }
+
+    /**
+     * Returns the number of bytes the graph holds off the heap.
+     *
+     * @return The total capacity of the arenas of the graph, or 0 if it is
+     *         closed.
+     */
+    public long offHeapBytes() {
+        return _costs.capacity() + _nameOffsets.capacity() + _names.capacity()
+                + _edgeOffsets.capacity() + _targets.capacity();
+    }
+
+    /**
+     * Returns the id of a given node.
+     *
+     * @requires A valid node or null.
+     * @throws IllegalStateException if the graph is closed.
+     * @return The id of n, or -1 if n is not in the graph.
+     */
+    public int indexOf(WeightedNode n) {
+        checkOpen();
+        Integer id = _ids.get(n);
+        return (id == null) ? -1 : id;
+    }
+
+    /**
+     * Returns the cost of the node with a given id, without decoding it.
+     *
+     * @requires 0 <= id < size()
+     * @throws IllegalStateException if the graph is closed.
+     * @return The cost of the node whose id is id.
+     */
+    public int costOf(int id) {
+        checkOpen();
+        return _costs.getInt(4L * id);
+    }
+
+    /**
+     * Returns the node with a given id, decoded from the arenas.
+     *
+     * @requires 0 <= id < size()
+     * @throws IllegalStateException if the graph is closed.
+     * @return A new WeightedNode equal to the node whose id is id.
+     */
+    public WeightedNode getNode(int id) {
+        checkOpen();
+        long start = _nameOffsets.getLong(8L * id);
+        byte[] name = new byte[(int)(_nameOffsets.getLong(8L * (id + 1)) - start)];
+        for (int k = 0; k < name.length; k++) {
+            name[k] = _names.getByte(start + k);
+        }
+        return new WeightedNode(new String(name, StandardCharsets.UTF_8), _costs.getInt(4L * id));
+    }
+
+    /**
+     * Returns the number of children of a given node.
+     *
+     * @requires 0 <= id < size()
+     * @throws IllegalStateException if the graph is closed.
+     * @return The number of children of the node whose id is id.
+     */
+    public int childCount(int id) {
+        checkOpen();
+        return (int)(_edgeOffsets.getLong(8L * (id + 1)) - _edgeOffsets.getLong(8L * id));
+    }
+
+    /**
+     * Returns the id of a child of a given node.
+     *
+     * @requires 0 <= id < size() && 0 <= k < childCount(id)
+     * @throws IllegalStateException if the graph is closed.
+     * @return The id of the k-th child of the node whose id is id.
+     */
+    public int childAt(int id, int k) {
+        checkOpen();
+        return _targets.getInt(4L * (_edgeOffsets.getLong(8L * id) + k));
+    }
+
+    /**
+     * Returns the order the children of every node are sorted by.
+     *
+     * @return DfsAlgorithm.VISIT_ORDER.
+     */
+    public Comparator<? super WeightedNode> getChildOrder() {
+        return DfsAlgorithm.VISIT_ORDER;
+    }
+
+    /**
+     * Checks if the graph was closed.
+     *
+     * @return true if close() was called, false otherwise.
+     */
+    public boolean isClosed() {
+        return _closed;
+    }
+
+    /**
+     * Closes the graph. Must be called only once all readers of the graph are
+     * done with it.
+     *
+     * @effects Makes the graph unreadable, and drops its arenas, so the memory
+     *          they hold off the heap is released once they are collected.
+     *          Does nothing if the graph is already closed.
+     */
+    @Override
+    public void close() {
+        if (!_closed) {
+            _closed = true;
+            _costs.close();
+            _nameOffsets.close();
+            _names.close();
+            _edgeOffsets.close();
+            _targets.close();
+        }
+    }
+}
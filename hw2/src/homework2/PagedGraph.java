@@ -0,0 +1,706 @@
+package homework2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/***
+ * PagedGraph is a graph of WeightedNodes stored on disk, for graphs whose
+ * edges don't fit in memory. It has the same operations as Graph (addNode,
+ * addEdge, getNodes, getChildren, nodeInGraph), and it is an IndexedGraph, so
+ * DfsAlgorithm, DijkstraAlgorithm and PathFinder can search it in place.
+ * <p>
+ * A graph is kept in a directory, in two files:
+ * <pre>
+ *   adjacency.dat  a header page (magic "WGPG", format version, end of the
+ *                  file, edge count, heads of the free lists), followed by
+ *                  blocks: one per node with children, holding the count and
+ *                  size class of the block, and then the ids of the children
+ *                  sorted in DfsAlgorithm.VISIT_ORDER
+ *   nodes.dat      the cost and name of every node, in the order of their
+ *                  ids, and the position of its block
+ * </pre>
+ * A block of size class k has room for 2^k children. A full block is moved
+ * to a block of the next class, and the old one goes to the free list of its
+ * class, to be reused. Since the children are sorted, adding an edge reads
+ * O(log(degree)) of them to look for it, and shifts the ones after it.
+ * <p>
+ * adjacency.dat is read and written through a cache of PAGE_SIZE byte pages,
+ * which holds at most a given number of bytes: when it is full, the least
+ * recently used page is dropped, and written back to the file first if it was
+ * modified (it is dirty). The cache counts its hits and misses, and the pages
+ * it reads and writes. The nodes themselves, their ids and the positions of
+ * their blocks are kept in memory, and written to nodes.dat by flush().
+ * <p>
+ * The files are consistent once flush() or close() returns. A PagedGraph must
+ * be used by one thread at a time, even for reads, since reading updates the
+ * cache (so supportsConcurrentReads() returns false, and PathFinder searches
+ * it on one thread). Other than open(), flush() and close(), the operations
+ * report I/O errors as an UncheckedIOException.
+ */
+
+/*
+ * Representation invariant:
+ * _ids maps every node to its id, the ids are exactly 0 .. _nodes.size() - 1, and
+ * _nodes.get(id) is the node whose id is id.
+ * _blocks[id] is the position of the block of id in adjacency.dat, or 0 if it has no
+ * children. A block holds count <= 2^class children, sorted in VISIT_ORDER, with no two equal.
+ * _edgeCount is the sum of the counts of all blocks.
+ * Every block lies in [PAGE_SIZE, _end), starts at a multiple of 8, and is either the
+ * block of one node, or in the free list of its class, _freeLists[class], linked
+ * through the first long of every free block (0 ends a list).
+ * _pages holds at most _maxPages pages, in least recently used first order.
+ */
+public class PagedGraph implements IndexedGraph<WeightedNode>, AutoCloseable {
+
+    /**
+     * The size of a page of adjacency.dat, in bytes.
+     */
+    public static final int PAGE_SIZE = 4096;
+
+    /**
+     * The first int of adjacency.dat and of nodes.dat.
+     */
+    static final int MAGIC = 0x57475047;
+
+    /**
+     * The version of the file format written by flush(), which is the only
+     * one open() reads.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    private static final int    MIN_CLASS  = 2;
+    private static final int    CLASSES    = 31;
+    private static final int    BLOCK_HEAD = 8;
+    private static final String ADJACENCY  = "adjacency.dat";
+    private static final String NODES      = "nodes.dat";
+
+    /**
+     * A page of adjacency.dat in the cache.
+     */
+    private static final class Page {
+        final ByteBuffer data = ByteBuffer.allocate(PAGE_SIZE);
+        boolean          dirty;
+    }
+
+    private final Path                           _directory;
+    private final FileChannel                    _channel;
+    private final LinkedHashMap<Long, Page>      _pages;
+    private final int                            _maxPages;
+    private final HashMap<WeightedNode, Integer> _ids;
+    private final ArrayList<WeightedNode>        _nodes;
+    private long[]                               _blocks;
+    private final long[]                         _freeLists;
+    private long                                 _end;
+    private long                                 _edgeCount;
+    private boolean                              _closed;
+    private long                                 _hits;
+    private long                                 _misses;
+    private long                                 _pagesRead;
+    private long                                 _pagesWritten;
+
+    private void checkRep() {
+        assert (_ids.size() == _nodes.size()) : "Node table doesn't match the node list";
+        assert (_blocks.length >= _nodes.size()) : "Block positions are missing";
+        assert (_end >= PAGE_SIZE) && (_end % 8 == 0) : "Bad end of file";
+        assert (_pages.size() <= _maxPages) : "Page cache is over its budget";
+    }
+
+    private PagedGraph(Path directory, FileChannel channel, long cacheBytes) {
+        _directory = directory;
+        _channel = channel;
+        _pages = new LinkedHashMap<Long, Page>(16, 0.75f, true);
+        _maxPages = (int)Math.max(1, Math.min(Integer.MAX_VALUE, cacheBytes / PAGE_SIZE));
+        _ids = new HashMap<WeightedNode, Integer>();
+        _nodes = new ArrayList<WeightedNode>();
+        _blocks = new long[16];
+        _freeLists = new long[CLASSES];
+        _end = PAGE_SIZE;
+        _edgeCount = 0;
+        _closed = false;
+    }
+
+    /**
+     * Opens the graph kept in a directory, or creates an empty one there.
+     *
+     * @requires A valid path, and cacheBytes > 0.
+     * @effects Creates directory and the files of an empty graph in it, if
+     *          they don't exist.
+     * @return A PagedGraph holding the graph in directory as of its last
+     *         flush(), whose page cache holds at most cacheBytes bytes (but at
+     *         least one page).
+     * @throws IOException if the files can't be read or created, or are not
+     *         the files of a graph of FORMAT_VERSION.
+     */
+    public static PagedGraph open(Path directory, long cacheBytes) throws IOException {
+        Files.createDirectories(directory);
+        Path nodes = directory.resolve(NODES);
+        FileChannel channel = FileChannel.open(directory.resolve(ADJACENCY), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        PagedGraph graph = new PagedGraph(directory, channel, cacheBytes);
+        try {
+            if (Files.exists(nodes)) {
+                graph.load(nodes);
+            } else {
+                graph.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        graph.checkRep();
+        return graph;
+    }
+
+    /**
+     * Reads the header of adjacency.dat, and the node table from nodes.dat.
+     */
+    private void load(Path nodes) throws IOException {
+        if ((_channel.size() < PAGE_SIZE) || (readInt(0) != MAGIC)) {
+            throw new IOException("Not a graph directory");
+        }
+        if (readInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported graph file version " + readInt(4));
+        }
+        _end = readLong(8);
+        _edgeCount = readLong(16);
+        for (int k = 0; k < CLASSES; k++) {
+            _freeLists[k] = readLong(24 + 8L * k);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(nodes), 1 << 16))) {
+            if ((in.readInt() != MAGIC) || (in.readInt() != FORMAT_VERSION)) {
+                throw new IOException("Not a graph directory");
+            }
+            int size = in.readInt();
+            _blocks = new long[Math.max(16, size)];
+            for (int id = 0; id < size; id++) {
+                int cost = in.readInt();
+                byte[] name = new byte[in.readInt()];
+                in.readFully(name);
+                WeightedNode n = new WeightedNode(new String(name, StandardCharsets.UTF_8), cost);
+                _ids.put(n, id);
+                _nodes.add(n);
+                _blocks[id] = in.readLong();
+            }
+        }
+    }
+
+    /**
+     * Writes all dirty pages, the header and the node table to the files of
+     * the graph, and forces them to the disk.
+     *
+     * @throws IllegalStateException if the graph is closed.
+     * @throws IOException if the files can't be written.
+     * @effects Makes the files hold the graph as it is now.
+     */
+    public void flush() throws IOException {
+        checkOpen();
+        writeInt(0, MAGIC);
+        writeInt(4, FORMAT_VERSION);
+        writeLong(8, _end);
+        writeLong(16, _edgeCount);
+        for (int k = 0; k < CLASSES; k++) {
+            writeLong(24 + 8L * k, _freeLists[k]);
+        }
+        for (Map.Entry<Long, Page> entry : _pages.entrySet()) {
+            if (entry.getValue().dirty) {
+                writePage(entry.getKey(), entry.getValue());
+            }
+        }
+        _channel.force(false);
+
+        // write the node table aside, and move it over the old one at once
+        Path temp = _directory.resolve(NODES + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(_nodes.size());
+            for (int id = 0; id < _nodes.size(); id++) {
+                byte[] name = _nodes.get(id).getName().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(_nodes.get(id).getCost());
+                out.writeInt(name.length);
+                out.write(name);
+                out.writeLong(_blocks[id]);
+            }
+        }
+        Files.move(temp, _directory.resolve(NODES), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Flushes and closes the graph.
+     *
+     * @throws IOException if the files can't be written.
+     * @effects Writes the graph to its files as flush() does, and makes it
+     *          unusable. Does nothing if the graph is already closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (_closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            _closed = true;
+            _pages.clear();
+            _channel.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (_closed) {
+            throw new IllegalStateException("Graph is closed");
+        }
+    }
+
+    // --- the page cache ---
+
+    /**
+     * Returns a page of adjacency.dat, from the cache or read from the file.
+     *
+     * @modifies _pages
+     * @effects Makes the page the most recently used one, and marks it dirty
+     *          if forWrite is true. Drops the least recently used pages,
+     *          writing back the dirty ones, to keep the cache in its budget.
+     */
+    private Page page(long index, boolean forWrite) {
+        Page page = _pages.get(index);
+        if (page != null) {
+            _hits++;
+        } else {
+            _misses++;
+            page = new Page();
+            try {
+                long pos = index * PAGE_SIZE;
+                if (pos < _channel.size()) {
+                    ByteBuffer data = page.data.duplicate();
+                    while (data.hasRemaining() && (_channel.read(data, pos + data.position()) >= 0)) {
+                        // read until the page is full, or the file ends
+                    }
+                    _pagesRead++;
+                }
+                Iterator<Map.Entry<Long, Page>> eldest = _pages.entrySet().iterator();
+                while (_pages.size() >= _maxPages) {
+                    Map.Entry<Long, Page> entry = eldest.next();
+                    if (entry.getValue().dirty) {
+                        writePage(entry.getKey(), entry.getValue());
+                    }
+                    eldest.remove();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            _pages.put(index, page);
+        }
+        page.dirty |= forWrite;
+        return page;
+    }
+
+    private void writePage(long index, Page page) throws IOException {
+        ByteBuffer data = page.data.duplicate();
+        data.clear();
+        while (data.hasRemaining()) {
+            _channel.write(data, index * PAGE_SIZE + data.position());
+        }
+        page.dirty = false;
+        _pagesWritten++;
+    }
+
+    /**
+     * @requires pos % 4 == 0
+     */
+    private int readInt(long pos) {
+        return page(pos / PAGE_SIZE, false).data.getInt((int)(pos % PAGE_SIZE));
+    }
+
+    /**
+     * @requires pos % 4 == 0
+     */
+    private void writeInt(long pos, int value) {
+        page(pos / PAGE_SIZE, true).data.putInt((int)(pos % PAGE_SIZE), value);
+    }
+
+    /**
+     * @requires pos % 8 == 0
+     */
+    private long readLong(long pos) {
+        return page(pos / PAGE_SIZE, false).data.getLong((int)(pos % PAGE_SIZE));
+    }
+
+    /**
+     * @requires pos % 8 == 0
+     */
+    private void writeLong(long pos, long value) {
+        page(pos / PAGE_SIZE, true).data.putLong((int)(pos % PAGE_SIZE), value);
+    }
+
+    /**
+     * Copies length bytes from src to dst in adjacency.dat, a page at a time.
+     * The ranges may overlap if dst > src.
+     */
+    private void moveBytes(long src, long dst, long length) {
+        byte[] buffer = new byte[PAGE_SIZE];
+        for (long end = length; end > 0;) {
+            // a piece that lies in one page at both ends, copied from the end back
+            int piece = (int)Math.min(end, Math.min((src + end - 1) % PAGE_SIZE, (dst + end - 1) % PAGE_SIZE) + 1);
+            long start = end - piece;
+            page((src + start) / PAGE_SIZE, false).data.get((int)((src + start) % PAGE_SIZE), buffer, 0, piece);
+            page((dst + start) / PAGE_SIZE, true).data.put((int)((dst + start) % PAGE_SIZE), buffer, 0, piece);
+            end = start;
+        }
+    }
+
+    // --- blocks ---
+
+    private static long blockBytes(int sizeClass) {
+        return BLOCK_HEAD + (4L << sizeClass);
+    }
+
+    /**
+     * Takes an empty block of a given class from its free list, or from the
+     * end of the file.
+     */
+    private long allocate(int sizeClass) {
+        long block = _freeLists[sizeClass];
+        if (block != 0) {
+            _freeLists[sizeClass] = readLong(block);
+        } else {
+            block = _end;
+            _end += blockBytes(sizeClass);
+        }
+        writeInt(block, 0);
+        writeInt(block + 4, sizeClass);
+        return block;
+    }
+
+    private void free(long block) {
+        int sizeClass = readInt(block + 4);
+        writeLong(block, _freeLists[sizeClass]);
+        _freeLists[sizeClass] = block;
+    }
+
+    private int count(long block) {
+        return (block == 0) ? 0 : readInt(block);
+    }
+
+    private int childId(long block, int k) {
+        return readInt(block + BLOCK_HEAD + 4L * k);
+    }
+
+    /**
+     * Looks for a node among the children in a block.
+     *
+     * @return The index of n in the block, or -(insertion point) - 1 if it is
+     *         not there, as in Arrays.binarySearch.
+     */
+    private int search(long block, WeightedNode n) {
+        int low = 0;
+        int high = count(block) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int order = DfsAlgorithm.VISIT_ORDER.compare(_nodes.get(childId(block, mid)), n);
+            if (order < 0) {
+                low = mid + 1;
+            } else if (order > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // --- the graph operations ---
+
+    /**
+     * Adds a node to the graph. The node is not connected to any other nodes
+     * yet.
+     *
+     * @requires A valid node.
+     * @throws IllegalStateException if the graph is closed.
+     * @effects Adds the given node to the graph, if it does not already
+     *          exists in the graph, with the next free id.
+     * @return 0 if node was successfully added, 1 if the node already exists
+     *         in the graph.
+     */
+    public int addNode(WeightedNode n) {
+        checkOpen();
+        int id = _nodes.size();
+        if (_ids.putIfAbsent(n, id) != null) {
+            return 1;
+        }
+        if (id == _blocks.length) {
+            _blocks = Arrays.copyOf(_blocks, 2 * id);
+        }
+        _nodes.add(n);
+        _blocks[id] = 0;
+        return 0;
+    }
+
+    /**
+     * Adds an edge to the graph, directed from n1 to n2.
+     *
+     * @requires Two valid nodes.
+     * @throws IllegalStateException if the graph is closed.
+     * @throws IllegalArgumentException if n1 or n2 is not in the graph.
+     * @effects Connects n1 to n2, if there is no edge between them, in this
+     *          direction, already.
+     * @return 0 if the edge was successfully added, 1 if the edge already
+     *         exists in the graph.
+     */
+    public int addEdge(WeightedNode n1, WeightedNode n2) {
+        checkOpen();
+        Integer source = _ids.get(n1);
+        Integer target = _ids.get(n2);
+        if ((source == null) || (target == null)) {
+            throw new IllegalArgumentException("Edge between nodes which are not in the graph");
+        }
+        long block = _blocks[source];
+        int at = search(block, n2);
+        if (at >= 0) {
+            return 1;
+        }
+        at = -at - 1;
+        int count = count(block);
+        if ((block == 0) || (count == 1 << readInt(block + 4))) {
+            // the block is full: move the children to one twice as large
+            long grown = allocate((block == 0) ? MIN_CLASS : readInt(block + 4) + 1);
+            if (block != 0) {
+                moveBytes(block + BLOCK_HEAD, grown + BLOCK_HEAD, 4L * count);
+                free(block);
+            }
+            block = grown;
+            _blocks[source] = block;
+        }
+        moveBytes(block + BLOCK_HEAD + 4L * at, block + BLOCK_HEAD + 4L * (at + 1), 4L * (count - at));
+        writeInt(block + BLOCK_HEAD + 4L * at, target);
+        writeInt(block, count + 1);
+        _edgeCount++;
+        return 0;
+    }
+
+    /**
+     * Returns a set of all existing nodes in the graph.
+     *
+     * @return An unmodifiable view of the set of all nodes in the graph, which
+     *         reflects later changes to the graph.
+     */
+    public Set<WeightedNode> getNodes() {
+        return Collections.unmodifiableSet(_ids.keySet());
+    }
+
+    /**
+     * Returns a set of all the children of a given node.
+     *
+     * @requires A valid node.
+     * @throws IllegalStateException if the graph is closed.
+     * @return An unmodifiable view of the set of all the children of node n,
+     *         in VISIT_ORDER, which reads them from the page cache, or null if
+     *         n is not in the graph.
+     */
+    public Set<WeightedNode> getChildren(WeightedNode n) {
+        checkOpen();
+        Integer found = _ids.get(n);
+        if (found == null) {
+            return null;
+        }
+        final int id = found;
+        return new AbstractSet<WeightedNode>() {
+            public Iterator<WeightedNode> iterator() {
+                return new Iterator<WeightedNode>() {
+                    private int _k = 0;
+
+                    public boolean hasNext() {
+                        return _k < childCount(id);
+                    }
+
+                    public WeightedNode next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return getNode(childAt(id, _k++));
+                    }
+                };
+            }
+
+            public int size() {
+                return childCount(id);
+            }
+
+            public boolean contains(Object o) {
+                return (o instanceof WeightedNode) && (search(_blocks[id], (WeightedNode)o) >= 0);
+            }
+        };
+    }
+
+    /**
+     * Checks if a given node is already in the graph.
+     *
+     * @requires A valid node.
+     * @return true if n exists in the graph, false if it doesn't.
+     */
+    public boolean nodeInGraph(WeightedNode n) {
+        return _ids.containsKey(n);
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return The number of nodes in the graph.
+     */
+    public int size() {
+        return _nodes.size();
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return The number of edges in the graph.
+     */
+    public long edgeCount() {
+        return _edgeCount;
+    }
+
+    /**
+     * Returns the id of a given node.
+     *
+     * @requires A valid node or null.
+     * @return The id of n, or -1 if n is not in the graph.
+     */
+    public int indexOf(WeightedNode n) {
+        Integer id = _ids.get(n);
+        return (id == null) ? -1 : id;
+    }
+
+    /**
+     * Returns the node with a given id.
+     *
+     * @requires 0 <= id < size()
+     * @return The node whose id is id.
+     */
+    public WeightedNode getNode(int id) {
+        return _nodes.get(id);
+    }
+
+    /**
+     * Returns the number of children of a given node.
+     *
+     * @requires 0 <= id < size()
+     * @throws IllegalStateException if the graph is closed.
+     * @return The number of children of the node whose id is id.
+     */
+    public int childCount(int id) {
+        checkOpen();
+        return count(_blocks[id]);
+    }
+
+    /**
+     * Returns the id of a child of a given node.
+     *
+     * @requires 0 <= id < size() && 0 <= k < childCount(id)
+     * @throws IllegalStateException if the graph is closed.
+     * @return The id of the k-th child of the node whose id is id.
+     */
+    public int childAt(int id, int k) {
+        checkOpen();
+        return childId(_blocks[id], k);
+    }
+
+    /**
+     * Returns the order the children of every node are sorted by.
+     *
+     * @return DfsAlgorithm.VISIT_ORDER.
+     */
+    public Comparator<? super WeightedNode> getChildOrder() {
+        return DfsAlgorithm.VISIT_ORDER;
+    }
+
+    /**
+     * Checks if several threads may read the graph at the same time.
+     *
+     * @return false, since reading the graph updates the page cache.
+     */
+    public boolean supportsConcurrentReads() {
+        return false;
+    }
+
+    // --- the counters ---
+
+    /**
+     * Returns the number of page lookups the cache answered.
+     */
+    public long getCacheHits() {
+        return _hits;
+    }
+
+    /**
+     * Returns the number of page lookups the cache did not answer, and which
+     * read the page from the file (or made a new one past its end).
+     */
+    public long getCacheMisses() {
+        return _misses;
+    }
+
+    /**
+     * Returns the hit rate of the page cache.
+     *
+     * @return The fraction of page lookups the cache answered, or 0 if there
+     *         were none.
+     */
+    public double getHitRate() {
+        long lookups = _hits + _misses;
+        return (lookups == 0) ? 0 : (double)_hits / lookups;
+    }
+
+    /**
+     * Returns the number of pages read from adjacency.dat.
+     */
+    public long getPagesRead() {
+        return _pagesRead;
+    }
+
+    /**
+     * Returns the number of pages written to adjacency.dat, when they were
+     * dropped from the cache or flushed.
+     */
+    public long getPagesWritten() {
+        return _pagesWritten;
+    }
+
+    /**
+     * Returns the number of pages in the cache, which is at most the budget
+     * given to open(), in pages.
+     */
+    public int getCachedPages() {
+        return _pages.size();
+    }
+
+    /**
+     * Returns the size of adjacency.dat, up to the end of its last block. It
+     * doesn't grow when a block is taken from a free list.
+     */
+    public long getFileBytes() {
+        return _end;
+    }
+}
@@ -0,0 +1,234 @@
+package homework2;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/***
+ * PathCache is a bounded cache of the results of minimum cost path queries,
+ * as answered by PathFinder.findMinPath and DfsAlgorithm.invokeAlgorithm.
+ * A query is identified by its graph (the object itself, not its contents),
+ * the modification version of the graph, its set of start nodes and its set
+ * of end nodes. Since a modification of a graph changes its version, a result
+ * is never returned for a graph that was modified after it was computed.
+ * Such stale results are not removed at once, but they are never used again,
+ * so they are the first to be evicted.
+ * <p>
+ * When the cache is full, the least recently used result is evicted. The
+ * cache counts its hits, misses and evictions. A PathCache should not be used
+ * by more than one thread.
+ */
+
+/*
+ * Representation invariant:
+ * _capacity > 0 && _entries.size() <= _capacity.
+ * _entries is in access order: its first entry is the least recently used.
+ * _hits, _misses and _evictions are non-negative.
+ */
+public class PathCache {
+
+    /**
+     * The key of a query: a graph, its version, and copies of the start and
+     * end node sets, which must not be modified.
+     */
+    private static final class Query {
+        private final Object            _graph;
+        private final long              _version;
+        private final Set<WeightedNode> _startNodes;
+        private final Set<WeightedNode> _endNodes;
+        private final int               _hashCode;
+
+        Query(Object graph, long version, Set<WeightedNode> startNodes, Set<WeightedNode> endNodes) {
+            this._graph = graph;
+            this._version = version;
+            this._startNodes = startNodes;
+            this._endNodes = endNodes;
+            this._hashCode = 31 * (31 * (31 * System.identityHashCode(graph) + Long.hashCode(version))
+                    + startNodes.hashCode()) + endNodes.hashCode();
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Query)) {
+                return false;
+            }
+            Query q = (Query)o;
+            return (this._graph == q._graph) && (this._version == q._version) && (this._hashCode == q._hashCode)
+                    && this._startNodes.equals(q._startNodes) && this._endNodes.equals(q._endNodes);
+        }
+
+        public int hashCode() {
+            return this._hashCode;
+        }
+    }
+
+    private final int                                   _capacity;
+    private final LinkedHashMap<Query, NodeCountingPath> _entries;
+    private long                                        _hits;
+    private long                                        _misses;
+    private long                                        _evictions;
+
+    private void checkRep() {
+        assert (_capacity > 0) : "Capacity is not positive";
+        assert (_entries.size() <= _capacity) : "Cache holds more entries than its capacity";
+    }
+
+    /**
+     * Creates an empty cache, holding at most a given number of results.
+     *
+     * @requires capacity > 0
+     * @effects Constructs a new empty PathCache.
+     */
+    public PathCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this._capacity = capacity;
+        this._entries = new LinkedHashMap<Query, NodeCountingPath>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<Query, NodeCountingPath> eldest) {
+                if (size() > PathCache.this._capacity) {
+                    PathCache.this._evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        checkRep();
+    }
+
+    /**
+     * Finds the minimum cost path between a set of start nodes and a set of
+     * end nodes of a graph, as PathFinder.findMinPath does.
+     *
+     * @requires A valid graph, and valid sets of start and end nodes, all in
+     *           the graph.
+     * @modifies this
+     * @effects If the same query was made on the same graph, at its current
+     *          version, and its result is still cached, counts a hit.
+     *          Otherwise counts a miss, runs the query and caches its result.
+     * @return The path new PathFinder(graph, startNodes, endNodes).findMinPath()
+     *         returns.
+     */
+    public NodeCountingPath findMinPath(Graph<WeightedNode> graph, Set<WeightedNode> startNodes,
+            Set<WeightedNode> endNodes) {
+        final HashSet<WeightedNode> starts = new HashSet<WeightedNode>(startNodes);
+        final HashSet<WeightedNode> ends = new HashSet<WeightedNode>(endNodes);
+        return this.answer(new Query(graph, graph.getVersion(), starts, ends),
+                () -> new PathFinder(graph, starts, ends).findMinPath());
+    }
+
+    /**
+     * Finds the minimum cost path between a set of start nodes and a set of
+     * end nodes of a compact graph, as PathFinder.findMinPath does.
+     *
+     * @requires A valid compact graph, and valid sets of start and end nodes,
+     *           all in the graph.
+     * @modifies this
+     * @effects If the same query was made on the same graph, and its result is
+     *          still cached, counts a hit. Otherwise counts a miss, runs the
+     *          query and caches its result.
+     * @return The path new PathFinder(graph, startNodes, endNodes).findMinPath()
+     *         returns.
+     */
+    public NodeCountingPath findMinPath(CompactGraph<WeightedNode> graph, Set<WeightedNode> startNodes,
+            Set<WeightedNode> endNodes) {
+        // a compact graph can't be modified, so its version never changes
+        final HashSet<WeightedNode> starts = new HashSet<WeightedNode>(startNodes);
+        final HashSet<WeightedNode> ends = new HashSet<WeightedNode>(endNodes);
+        return this.answer(new Query(graph, 0, starts, ends),
+                () -> new PathFinder(graph, starts, ends).findMinPath());
+    }
+
+    /**
+     * Runs the DFS algorithm from a start node to an end node of a graph, as
+     * DfsAlgorithm.invokeAlgorithm(start, end) does.
+     * <p>
+     * This query is the same as findMinPath with one start node and one end
+     * node, so both share their cached results.
+     *
+     * @requires A valid graph, and valid nodes start and end in the graph.
+     * @modifies this
+     * @effects If the same query was made on the same graph, at its current
+     *          version, and its result is still cached, counts a hit.
+     *          Otherwise counts a miss, runs the query and caches its result.
+     * @return The path new DfsAlgorithm(graph).invokeAlgorithm(start, end)
+     *         returns.
+     */
+    public NodeCountingPath invokeAlgorithm(Graph<WeightedNode> graph, WeightedNode start, WeightedNode end) {
+        return this.answer(
+                new Query(graph, graph.getVersion(), Collections.singleton(start), Collections.singleton(end)),
+                () -> new DfsAlgorithm(graph).invokeAlgorithm(start, end));
+    }
+
+    /**
+     * Answers a query from the cache, or runs it and caches its result.
+     *
+     * @modifies this
+     * @effects Counts a hit if the result of query is cached. Otherwise counts
+     *          a miss, and caches the result of run, evicting the least
+     *          recently used result if the cache is full.
+     * @return The cached result of query, or the result of run.
+     */
+    private NodeCountingPath answer(Query query, Supplier<NodeCountingPath> run) {
+        NodeCountingPath result = this._entries.get(query);
+        // a query may have no path, so null results are cached too
+        if ((result != null) || this._entries.containsKey(query)) {
+            this._hits++;
+            return result;
+        }
+        this._misses++;
+        result = run.get();
+        this._entries.put(query, result);
+        checkRep();
+        return result;
+    }
+
+    /**
+     * Returns the number of queries answered from the cache.
+     */
+    public long getHits() {
+        return this._hits;
+    }
+
+    /**
+     * Returns the number of queries which had to be run.
+     */
+    public long getMisses() {
+        return this._misses;
+    }
+
+    /**
+     * Returns the number of results evicted since the cache was full.
+     */
+    public long getEvictions() {
+        return this._evictions;
+    }
+
+    /**
+     * Returns the number of results in the cache.
+     */
+    public int size() {
+        return this._entries.size();
+    }
+
+    /**
+     * Returns the maximal number of results in the cache.
+     */
+    public int capacity() {
+        return this._capacity;
+    }
+
+    /**
+     * Removes all results from the cache.
+     *
+     * @modifies this
+     * @effects Empties the cache. The counters are not reset.
+     */
+    public void clear() {
+        this._entries.clear();
+    }
+}
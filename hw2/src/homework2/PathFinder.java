@@ -1,16 +1,32 @@
 package homework2;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /***
  * PathFinder is a class intended to find the minimum cost path between a set of
  * starting nodes and a set of ending nodes, in a given graph, using the DFS
  * algorithm.
+ * <p>
+ * The bidirectional searches take their state from the compact graph they
+ * search, and give it back when they are done, so the searches of a graph
+ * reuse the same state, whichever PathFinder runs them.
  */
 public class PathFinder {
-    private Graph<WeightedNode>   _graph;
-    private HashSet<WeightedNode> _startNodes;
-    private HashSet<WeightedNode> _endNodes;
+    private Graph<WeightedNode>        _graph;
+    private CompactGraph<WeightedNode> _compactGraph;
+    private IndexedGraph<WeightedNode> _indexedGraph;
+    private Traversable<WeightedNode>  _traversable;
+    private HashSet<WeightedNode>      _startNodes;
+    private HashSet<WeightedNode>      _endNodes;
+    private boolean                    _reversed;
+    private int                        _explored;
 
     /**
      * Create a new PathFinder object with a given graph, a set of starting
@@ -21,14 +37,117 @@ public class PathFinder {
      * @effects Create a new PathFinder object.
      */
     public PathFinder(Graph<WeightedNode> graph, HashSet<WeightedNode> startNodes, HashSet<WeightedNode> endNodes) {
+        this(graph, startNodes, endNodes, false);
+    }
+
+    /**
+     * Create a new PathFinder object with a given graph, a set of starting
+     * nodes and a set of ending nodes, which searches either the graph or its
+     * reverse.
+     * <p>
+     * On the reverse graph, a path goes from a node to one of its parents, so
+     * the paths found lead from a starting node back to an ending node that it
+     * is reachable from in the graph.
+     * 
+     * @requires A valid graph, a valid hash set of start nodes, and a valid
+     *           hashset of ending nodes, all in the graph.
+     * @effects Create a new PathFinder object, which searches the reverse of
+     *          graph if reversed is true (see CompactGraph.reverse()).
+     */
+    public PathFinder(Graph<WeightedNode> graph, HashSet<WeightedNode> startNodes, HashSet<WeightedNode> endNodes,
+            boolean reversed) {
         this._graph = graph;
+        this._compactGraph = null;
+        this._indexedGraph = null;
+        this._traversable = null;
+        this._startNodes = startNodes;
+        this._endNodes = endNodes;
+        this._reversed = reversed;
+    }
+
+    /**
+     * Create a new PathFinder object with a given compact graph, a set of
+     * starting nodes and a set of ending nodes.
+     * 
+     * @requires A valid compact graph, a valid hash set of start nodes, and a
+     *           valid hashset of ending nodes, all in the graph.
+     * @effects Create a new PathFinder object.
+     */
+    public PathFinder(CompactGraph<WeightedNode> graph, HashSet<WeightedNode> startNodes,
+            HashSet<WeightedNode> endNodes) {
+        this._graph = null;
+        this._compactGraph = graph;
+        this._indexedGraph = null;
+        this._traversable = null;
+        this._startNodes = startNodes;
+        this._endNodes = endNodes;
+    }
+
+    /**
+     * Create a new PathFinder object with a given indexed graph (such as a
+     * MappedGraph or an OffHeapGraph), a set of starting nodes and a set of
+     * ending nodes. The graph is searched in place, so the bidirectional
+     * searches, which need the reverse of the graph, are not available.
+     * 
+     * @requires A valid indexed graph whose children are sorted in
+     *           DfsAlgorithm.VISIT_ORDER, a valid hash set of start nodes, and
+     *           a valid hashset of ending nodes, all in the graph.
+     * @effects Create a new PathFinder object.
+     */
+    public PathFinder(IndexedGraph<WeightedNode> graph, HashSet<WeightedNode> startNodes,
+            HashSet<WeightedNode> endNodes) {
+        this._graph = null;
+        this._compactGraph = null;
+        this._indexedGraph = graph;
+        this._traversable = null;
+        this._startNodes = startNodes;
+        this._endNodes = endNodes;
+    }
+
+    /**
+     * Create a new PathFinder object with a given traversable graph (such as
+     * a LazyGraph), a set of starting nodes and a set of ending nodes. Every
+     * search explores the graph from its starting nodes only (see
+     * DfsAlgorithm(Traversable)), so the bidirectional searches, which need
+     * the reverse of the graph, are not available.
+     * 
+     * @requires A valid traversable graph, a valid hash set of start nodes,
+     *           and a valid hashset of ending nodes, all in the graph.
+     * @effects Create a new PathFinder object.
+     */
+    public PathFinder(Traversable<WeightedNode> graph, HashSet<WeightedNode> startNodes,
+            HashSet<WeightedNode> endNodes) {
+        this._graph = null;
+        this._compactGraph = null;
+        this._indexedGraph = null;
+        this._traversable = graph;
         this._startNodes = startNodes;
         this._endNodes = endNodes;
     }
 
+    /**
+     * Returns a DfsAlgorithm object for the graph of this PathFinder.
+     */
+    private DfsAlgorithm newDfs() {
+        if (this._indexedGraph != null) {
+            return new DfsAlgorithm(this._indexedGraph);
+        }
+        if (this._traversable != null) {
+            return new DfsAlgorithm(this._traversable);
+        }
+        return (this._graph != null) ? new DfsAlgorithm(this._graph, this._reversed)
+                : new DfsAlgorithm(this._compactGraph);
+    }
+
     /**
      * Finds the minimum cost path using the DFS algorithm between one of the
      * starting nodes to one of the ending nodes.
+     * <p>
+     * A single DFS run is made from each starting node, which records the
+     * paths to all the ending nodes it reaches (see DfsAlgorithm.runToAll).
+     * The result is the same as findMinPathPairwise's: among paths of equal
+     * cost, the one found first when iterating over the starting nodes, and
+     * for each of them over the ending nodes, is returned.
      * 
      * @return A NodeCountingPath for the minimum cost path, using the DFS
      *         algorithm, or null if no path exists between none of the starting
@@ -36,8 +155,358 @@ public class PathFinder {
      *         end node was specified.
      */
     public NodeCountingPath findMinPath() {
+        return this.findMinPath(false);
+    }
+
+    /**
+     * Finds the minimum cost path using the DFS algorithm between one of the
+     * starting nodes to one of the ending nodes, with a branch-and-bound
+     * search.
+     * <p>
+     * Since the cost of a path never decreases when it is extended, a DFS run
+     * from a starting node is stopped as soon as the paths it could still find
+     * cost at least as much as the best path found so far (see
+     * DfsAlgorithm.runToAll). Such paths could not replace the best path, so
+     * the result is the same as findMinPath's.
+     * 
+     * @return A NodeCountingPath for the minimum cost path, using the DFS
+     *         algorithm, or null if no path exists between none of the starting
+     *         nodes to none of the ending nodes. Or null if no start node or no
+     *         end node was specified.
+     */
+    public NodeCountingPath findMinPathBounded() {
+        return this.findMinPath(true);
+    }
+
+    /**
+     * Finds the minimum cost path using one DFS run from each starting node,
+     * optionally bounded by the cost of the best path found so far.
+     */
+    private NodeCountingPath findMinPath(boolean bounded) {
+        NodeCountingPath minPath = null;
+        if (this._endNodes.isEmpty()) {
+            return null;
+        }
+        DfsAlgorithm dfs = this.newDfs();
+        for (WeightedNode startNode : this._startNodes) {
+            int maxCost = Integer.MAX_VALUE;
+            if (bounded && (minPath != null)) {
+                // only a strictly cheaper path replaces minPath
+                maxCost = (int)minPath.getCost() - 1;
+                if (maxCost < 1) {
+                    break;
+                }
+            }
+            if (!this.mayReachEnd(dfs, startNode) || !dfs.runToAll(startNode, this._endNodes, maxCost)) {
+                continue;
+            }
+            WeightedNode bestEnd = this.bestEnd(dfs);
+            if ((minPath == null) || (dfs.costTo(bestEnd) < minPath.getCost())) {
+                minPath = dfs.pathTo(bestEnd);
+            }
+        }
+        return minPath;
+    }
+
+    /**
+     * Checks, without traversing the graph, if a run from a given starting
+     * node could visit one of the ending nodes (see DfsAlgorithm.mayReach).
+     * 
+     * @return false if the reachability index of the graph shows that no
+     *         ending node can be reached from start, true otherwise.
+     */
+    private boolean mayReachEnd(DfsAlgorithm dfs, WeightedNode start) {
+        for (WeightedNode endNode : this._endNodes) {
+            if (dfs.mayReach(start, endNode)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the ending node with the cheapest path from the last run of a
+     * given DfsAlgorithm object.
+     * 
+     * @requires The last run of dfs visited at least one ending node.
+     * @return The ending node with the cheapest path in dfs, the first one
+     *         when iterating over the ending nodes among paths of equal cost.
+     */
+    private WeightedNode bestEnd(DfsAlgorithm dfs) {
+        WeightedNode bestEnd = null;
+        int bestCost = -1;
+        for (WeightedNode endNode : this._endNodes) {
+            int cost = dfs.costTo(endNode);
+            if ((cost >= 0) && ((bestEnd == null) || (cost < bestCost))) {
+                bestEnd = endNode;
+                bestCost = cost;
+            }
+        }
+        return bestEnd;
+    }
+
+    /**
+     * Finds the minimum cost path using the DFS algorithm between one of the
+     * starting nodes to one of the ending nodes, searching from several
+     * starting nodes at the same time on the common ForkJoinPool.
+     * 
+     * @return The same path findMinPath() returns.
+     */
+    public NodeCountingPath findMinPathParallel() {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        return this.findMinPathParallel(pool, pool.getParallelism());
+    }
+
+    /**
+     * Finds the minimum cost path using the DFS algorithm between one of the
+     * starting nodes to one of the ending nodes, searching from several
+     * starting nodes at the same time on a given executor.
+     * <p>
+     * Each worker has its own DfsAlgorithm object, and takes starting nodes
+     * one after the other from a shared counter. The workers share the cost of
+     * the best path found so far through an atomic integer, and a run is
+     * bounded by it as in findMinPathBounded(), except that paths costing the
+     * same as the best one are still looked for: one of them may come from a
+     * starting node that findMinPath() iterates over earlier. The best path of
+     * every starting node is kept by its index, and the results are merged in
+     * iteration order, so the returned path does not depend on the order in
+     * which the workers happened to run.
+     * 
+     * <p>
+     * An indexed graph which can't be read by several threads at the same
+     * time (see IndexedGraph.supportsConcurrentReads) is searched as
+     * findMinPath() does, on the calling thread.
+     * 
+     * @requires A valid executor and parallelism >= 1. The graph must not be
+     *           modified while the search runs.
+     * @return The same path findMinPath() returns.
+     */
+    public NodeCountingPath findMinPathParallel(ExecutorService executor, int parallelism) {
+        if (this._endNodes.isEmpty() || this._startNodes.isEmpty()) {
+            return null;
+        }
+        if ((this._indexedGraph != null) && !this._indexedGraph.supportsConcurrentReads()) {
+            return this.findMinPath();
+        }
+        // freeze once here, rather than in every worker
+        final IndexedGraph<WeightedNode> graph;
+        if (this._traversable != null) {
+            // every worker explores the graph on its own
+            graph = null;
+        } else if (this._indexedGraph != null) {
+            graph = this._indexedGraph;
+        } else {
+            CompactGraph<WeightedNode> frozen = (this._graph != null) ? this._graph.freeze(DfsAlgorithm.VISIT_ORDER)
+                    : this._compactGraph.sortChildren(DfsAlgorithm.VISIT_ORDER);
+            graph = this._reversed ? frozen.reverse() : frozen;
+        }
+        final WeightedNode[] startNodes = this._startNodes.toArray(new WeightedNode[0]);
+        final NodeCountingPath[] results = new NodeCountingPath[startNodes.length];
+        final AtomicInteger nextStart = new AtomicInteger(0);
+        final AtomicInteger bestCost = new AtomicInteger(Integer.MAX_VALUE);
+
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        for (int w = 0; w < Math.min(parallelism, startNodes.length); w++) {
+            workers.add(executor.submit(new Runnable() {
+                public void run() {
+                    DfsAlgorithm dfs = (graph != null) ? new DfsAlgorithm(graph)
+                            : new DfsAlgorithm(PathFinder.this._traversable);
+                    for (int i = nextStart.getAndIncrement(); i < startNodes.length; i = nextStart.getAndIncrement()) {
+                        if (!PathFinder.this.mayReachEnd(dfs, startNodes[i])
+                                || !dfs.runToAll(startNodes[i], PathFinder.this._endNodes, bestCost.get())) {
+                            continue;
+                        }
+                        WeightedNode bestEnd = PathFinder.this.bestEnd(dfs);
+                        int cost = dfs.costTo(bestEnd);
+                        if (cost <= bestCost.get()) {
+                            results[i] = dfs.pathTo(bestEnd);
+                            bestCost.accumulateAndGet(cost, Math::min);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        NodeCountingPath minPath = null;
+        for (NodeCountingPath path : results) {
+            if ((path != null) && ((minPath == null) || (path.getCost() < minPath.getCost()))) {
+                minPath = path;
+            }
+        }
+        return minPath;
+    }
+
+    /**
+     * Returns the compact form of the graph this PathFinder searches, or of
+     * its reverse.
+     * 
+     * @throws UnsupportedOperationException if this PathFinder searches an
+     *         indexed or a traversable graph in place.
+     */
+    private CompactGraph<WeightedNode> searchGraph() {
+        if ((this._indexedGraph != null) || (this._traversable != null)) {
+            throw new UnsupportedOperationException("Bidirectional searches need a Graph or a CompactGraph");
+        }
+        CompactGraph<WeightedNode> frozen = (this._graph != null) ? this._graph.freeze(DfsAlgorithm.VISIT_ORDER)
+                : this._compactGraph;
+        return this._reversed ? frozen.reverse() : frozen;
+    }
+
+    /**
+     * Returns a BidirectionalSearch object for the graph this PathFinder
+     * searches, reusing one released by an earlier search of that graph (see
+     * BidirectionalSearch.acquire), so a query costs only the nodes it
+     * explores, rather than allocating state for all the nodes of the graph.
+     * The object must be released once the search is done.
+     * 
+     * @throws UnsupportedOperationException if this PathFinder searches an
+     *         indexed or a traversable graph in place.
+     */
+    private BidirectionalSearch bidirectionalSearch() {
+        return BidirectionalSearch.acquire(this.searchGraph());
+    }
+
+    /**
+     * Returns the number of nodes the last bidirectional search of this
+     * PathFinder explored (see BidirectionalSearch.getExploredCount).
+     * 
+     * @return The number of nodes explored by the last call to
+     *         findShortestPathBidirectional or findCheapestPathBidirectional,
+     *         or 0 if there was none.
+     */
+    public int getExploredCount() {
+        return this._explored;
+    }
+
+    /**
+     * Finds the path with the fewest nodes between one of the starting nodes
+     * and one of the ending nodes, with a bidirectional breadth-first search
+     * (see BidirectionalSearch.shortestPath).
+     * <p>
+     * Unlike findMinPath, the cost of the returned path doesn't depend on the
+     * order in which a DFS would visit the nodes: it has no back edges, so its
+     * cost is its number of nodes.
+     * 
+     * @return A NodeCountingPath with the fewest nodes from a starting node to
+     *         an ending node, or null if there is no such path.
+     * @throws UnsupportedOperationException if this PathFinder was created
+     *         with an IndexedGraph or a Traversable.
+     */
+    public NodeCountingPath findShortestPathBidirectional() {
+        BidirectionalSearch search = this.bidirectionalSearch();
+        try {
+            NodeCountingPath path = search.shortestPath(this._startNodes, this._endNodes);
+            this._explored = search.getExploredCount();
+            return path;
+        } finally {
+            search.release();
+        }
+    }
+
+    /**
+     * Finds the path whose nodes cost the least in total between one of the
+     * starting nodes and one of the ending nodes, with a bidirectional search
+     * (see BidirectionalSearch.cheapestPath).
+     * 
+     * @requires Non-negative node costs.
+     * @return A cheapest WeightedNodePath from a starting node to an ending
+     *         node, or null if there is no such path.
+     * @throws UnsupportedOperationException if this PathFinder was created
+     *         with an IndexedGraph or a Traversable.
+     */
+    public WeightedNodePath findCheapestPathBidirectional() {
+        return this.findCheapestPathBidirectional(false);
+    }
+
+    /**
+     * Finds the path whose nodes cost the least in total between one of the
+     * starting nodes and one of the ending nodes, with a bidirectional search,
+     * and optionally checks the result.
+     * <p>
+     * When verify is true, the path is checked to go from a starting node to
+     * an ending node over edges of the graph, and its cost is checked against
+     * the cost of the path found by a one-sided search (see
+     * DijkstraAlgorithm), which settles nodes in order of cost and so finds a
+     * cheapest path. This costs as much as the one-sided search itself.
+     * 
+     * @requires Non-negative node costs.
+     * @return A cheapest WeightedNodePath from a starting node to an ending
+     *         node, or null if there is no such path.
+     * @throws IllegalStateException if verify is true, and the path found is
+     *         not a path from a starting node to an ending node, or is not
+     *         the cheapest one.
+     * @throws UnsupportedOperationException if this PathFinder was created
+     *         with an IndexedGraph or a Traversable.
+     */
+    public WeightedNodePath findCheapestPathBidirectional(boolean verify) {
+        BidirectionalSearch search = this.bidirectionalSearch();
+        try {
+            WeightedNodePath path = search.cheapestPath(this._startNodes, this._endNodes);
+            this._explored = search.getExploredCount();
+            if (verify) {
+                this.verifyCheapestPath(search.getGraph(), path);
+            }
+            return path;
+        } finally {
+            search.release();
+        }
+    }
+
+    /**
+     * Checks that a path is a cheapest path from a starting node to an ending
+     * node of a graph.
+     * 
+     * @throws IllegalStateException if it is not.
+     */
+    private void verifyCheapestPath(CompactGraph<WeightedNode> graph, WeightedNodePath path) {
+        WeightedNodePath expected = new DijkstraAlgorithm(graph).invokeAlgorithm(this._startNodes, this._endNodes);
+        if ((path == null) || (expected == null)) {
+            if (path != expected) {
+                throw new IllegalStateException("Expected path " + expected + " but found " + path);
+            }
+            return;
+        }
+        WeightedNode previous = null;
+        for (WeightedNode n : path) {
+            boolean valid = (previous == null) ? this._startNodes.contains(n)
+                    : (graph.nodeInGraph(previous) && graph.getChildren(previous).contains(n));
+            if (!valid) {
+                throw new IllegalStateException("Path " + path + " is not a path from a starting node");
+            }
+            previous = n;
+        }
+        if (!this._endNodes.contains(path.getEnd())) {
+            throw new IllegalStateException("Path " + path + " doesn't end at an ending node");
+        }
+        if (path.getCost() != expected.getCost()) {
+            throw new IllegalStateException("Path " + path + " costs " + path.getCost() + ", but " + expected
+                    + " costs " + expected.getCost());
+        }
+    }
+
+    /**
+     * Finds the minimum cost path using the DFS algorithm between one of the
+     * starting nodes to one of the ending nodes, running the DFS algorithm
+     * separately for every pair of a starting node and an ending node.
+     * 
+     * @return A NodeCountingPath for the minimum cost path, using the DFS
+     *         algorithm, or null if no path exists between none of the starting
+     *         nodes to none of the ending nodes. Or null if no start node or no
+     *         end node was specified.
+     */
+    public NodeCountingPath findMinPathPairwise() {
         NodeCountingPath minPath = null;
-        DfsAlgorithm dfs = new DfsAlgorithm(this._graph);
+        DfsAlgorithm dfs = this.newDfs();
         for (WeightedNode startNode : this._startNodes) {
             for (WeightedNode endNode : this._endNodes) {
                 NodeCountingPath currentPath = dfs.invokeAlgorithm(startNode, endNode);
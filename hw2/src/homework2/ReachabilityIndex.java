@@ -0,0 +1,283 @@
+package homework2;
+
+import java.util.Arrays;
+
+/***
+ * ReachabilityIndex answers, in constant time, whether there can be a path
+ * from one node of a CompactGraph to another. It never claims that there is
+ * no path when there is one, but it may fail to rule out a path that doesn't
+ * exist: it is a filter, meant to skip traversals that can't succeed.
+ * <p>
+ * The index is built in linear time. First, the strongly connected components
+ * of the graph are found with Tarjan's algorithm. Every node of a component
+ * reaches every other node of it, and the components form a DAG, the
+ * condensation of the graph. Then every component gets two interval labels,
+ * as in GRAIL (https://doi.org/10.14778/1920841.1920879): for a numbering of
+ * the components in which a component comes after all components it reaches
+ * (a post-order of a DFS over the DAG), the label of a component is the range
+ * from the lowest number of a component it reaches to its own number. If a
+ * component reaches another one, its labels contain the labels of the other
+ * one, so a pair whose labels are not contained in each other can't have a
+ * path. Tarjan's algorithm gives the first numbering, and a second DFS, which
+ * takes roots and children in the opposite order, gives the second one.
+ * <p>
+ * The index is immutable, and can be shared between threads.
+ */
+
+/*
+ * Representation invariant:
+ * _components.length == _graph.size(), and every element of _components is
+ * in the range [0, _componentCount).
+ * _low.length == _high.length == _low2.length == _high2.length == _componentCount.
+ * _low[c] <= _high[c] and _low2[c] <= _high2[c] for every component c.
+ */
+public class ReachabilityIndex<N> {
+
+    private final CompactGraph<N> _graph;
+    private final int[]           _components;
+    private final int             _componentCount;
+    private final int[]           _low;
+    private final int[]           _high;
+    private final int[]           _low2;
+    private final int[]           _high2;
+
+    private void checkRep() {
+        assert (_components.length == _graph.size()) : "Components don't match the number of nodes";
+        for (int c = 0; c < _componentCount; c++) {
+            assert (_low[c] <= _high[c]) && (_low2[c] <= _high2[c]) : "Found empty interval label";
+        }
+    }
+
+    /**
+     * Creates a ReachabilityIndex for a given compact graph.
+     *
+     * @requires A valid compact graph.
+     * @effects Constructs a new ReachabilityIndex for graph, in time linear in
+     *          its number of nodes and edges.
+     */
+    public ReachabilityIndex(CompactGraph<N> graph) {
+        _graph = graph;
+        int size = graph.size();
+        _components = new int[size];
+        _componentCount = findComponents();
+
+        // the condensation DAG, in CSR form, with an edge for every edge of
+        // the graph between different components (duplicates are harmless)
+        int[] dagOffsets = new int[_componentCount + 1];
+        for (int id = 0; id < size; id++) {
+            for (int k = 0; k < graph.childCount(id); k++) {
+                if (_components[graph.childAt(id, k)] != _components[id]) {
+                    dagOffsets[_components[id] + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < _componentCount; c++) {
+            dagOffsets[c + 1] += dagOffsets[c];
+        }
+        int[] dagTargets = new int[dagOffsets[_componentCount]];
+        int[] fill = Arrays.copyOf(dagOffsets, _componentCount);
+        for (int id = 0; id < size; id++) {
+            for (int k = 0; k < graph.childCount(id); k++) {
+                int child = _components[graph.childAt(id, k)];
+                if (child != _components[id]) {
+                    dagTargets[fill[_components[id]]++] = child;
+                }
+            }
+        }
+
+        // Tarjan's algorithm numbers every component after all the components
+        // it reaches, so the components themselves are the first numbering.
+        _high = new int[_componentCount];
+        _low = new int[_componentCount];
+        for (int c = 0; c < _componentCount; c++) {
+            _high[c] = c;
+            _low[c] = c;
+            for (int k = dagOffsets[c]; k < dagOffsets[c + 1]; k++) {
+                _low[c] = Math.min(_low[c], _low[dagTargets[k]]);
+            }
+        }
+
+        _high2 = secondPostOrder(dagOffsets, dagTargets);
+        _low2 = new int[_componentCount];
+        int[] byNumber = new int[_componentCount];
+        for (int c = 0; c < _componentCount; c++) {
+            byNumber[_high2[c]] = c;
+        }
+        for (int i = 0; i < _componentCount; i++) {
+            int c = byNumber[i];
+            _low2[c] = _high2[c];
+            for (int k = dagOffsets[c]; k < dagOffsets[c + 1]; k++) {
+                _low2[c] = Math.min(_low2[c], _low2[dagTargets[k]]);
+            }
+        }
+        checkRep();
+    }
+
+    /**
+     * Finds the strongly connected components of the graph with an iterative
+     * version of Tarjan's algorithm, and stores the component of every node in
+     * _components. A component is numbered only after all the components it
+     * reaches are numbered.
+     *
+     * @return The number of components.
+     */
+    private int findComponents() {
+        int size = _graph.size();
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int stackSize = 0;
+        int[] frameNodes = new int[size];
+        int[] frameCursors = new int[size];
+        Arrays.fill(index, -1);
+        int nextIndex = 0;
+        int count = 0;
+
+        for (int root = 0; root < size; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            frameNodes[depth] = root;
+            frameCursors[depth++] = 0;
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                int id = frameNodes[depth - 1];
+                if (frameCursors[depth - 1] < _graph.childCount(id)) {
+                    int child = _graph.childAt(id, frameCursors[depth - 1]++);
+                    if (index[child] < 0) {
+                        index[child] = lowLink[child] = nextIndex++;
+                        stack[stackSize++] = child;
+                        onStack[child] = true;
+                        frameNodes[depth] = child;
+                        frameCursors[depth++] = 0;
+                    } else if (onStack[child]) {
+                        lowLink[id] = Math.min(lowLink[id], index[child]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    int parent = frameNodes[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[id]);
+                }
+                if (lowLink[id] == index[id]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        _components[member] = count;
+                    } while (member != id);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Numbers the components by a post-order of a DFS over the condensation
+     * DAG, which takes roots and children in the opposite order of Tarjan's
+     * algorithm.
+     *
+     * @return The number of every component.
+     */
+    private int[] secondPostOrder(int[] dagOffsets, int[] dagTargets) {
+        int[] numbers = new int[_componentCount];
+        Arrays.fill(numbers, -1);
+        boolean[] visited = new boolean[_componentCount];
+        int[] frameNodes = new int[_componentCount];
+        int[] frameCursors = new int[_componentCount];
+        int next = 0;
+
+        for (int root = _componentCount - 1; root >= 0; root--) {
+            if (visited[root]) {
+                continue;
+            }
+            int depth = 0;
+            visited[root] = true;
+            frameNodes[depth] = root;
+            frameCursors[depth++] = dagOffsets[root + 1];
+            while (depth > 0) {
+                int c = frameNodes[depth - 1];
+                if (frameCursors[depth - 1] > dagOffsets[c]) {
+                    int child = dagTargets[--frameCursors[depth - 1]];
+                    if (!visited[child]) {
+                        visited[child] = true;
+                        frameNodes[depth] = child;
+                        frameCursors[depth++] = dagOffsets[child + 1];
+                    }
+                } else {
+                    numbers[c] = next++;
+                    depth--;
+                }
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Returns the graph this index was built for.
+     */
+    public CompactGraph<N> getGraph() {
+        return _graph;
+    }
+
+    /**
+     * Returns the number of strongly connected components of the graph.
+     */
+    public int componentCount() {
+        return _componentCount;
+    }
+
+    /**
+     * Returns the strongly connected component of a node.
+     *
+     * @requires 0 <= id < getGraph().size()
+     * @return The number of the component of the node whose id is id. Two
+     *         nodes are in the same component iff each of them reaches the
+     *         other.
+     */
+    public int componentOf(int id) {
+        return _components[id];
+    }
+
+    /**
+     * Checks if there can be a path between two nodes.
+     *
+     * @requires 0 <= from, to < getGraph().size()
+     * @return false if there is no path from the node whose id is from to the
+     *         node whose id is to. true if there is such a path, and possibly
+     *         also if there isn't.
+     */
+    public boolean mayReach(int from, int to) {
+        int c1 = _components[from];
+        int c2 = _components[to];
+        if (c1 == c2) {
+            return true;
+        }
+        return (_low[c1] <= _low[c2]) && (_high[c2] <= _high[c1])
+                && (_low2[c1] <= _low2[c2]) && (_high2[c2] <= _high2[c1]);
+    }
+
+    /**
+     * Checks if there can be a path between two nodes.
+     *
+     * @requires Valid nodes from and to.
+     * @return false if there is no path from from to to, where a node which
+     *         is not in the graph reaches only itself. true if there is such a
+     *         path, and possibly also if there isn't.
+     */
+    public boolean mayReach(N from, N to) {
+        int fromId = _graph.indexOf(from);
+        if (fromId < 0) {
+            return from.equals(to);
+        }
+        int toId = _graph.indexOf(to);
+        return (toId >= 0) && mayReach(fromId, toId);
+    }
+}
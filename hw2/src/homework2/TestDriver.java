@@ -29,6 +29,8 @@ public class TestDriver {
     private final Map<String, Graph> graphs = new HashMap<>();
     // String -> WeightedNode: maps the names of nodes to the actual node
     private final Map<String, WeightedNode> nodes = new HashMap<>();
+    // results of FindPath and DfsAlgorithm queries, until their graph changes
+    private final PathCache                 pathCache = new PathCache(1024);
     private final BufferedReader            input;
     private final PrintWriter               output;
 
@@ -269,7 +271,7 @@ public class TestDriver {
         }
         Graph<WeightedNode> graphToAdd = graphs.get(graphName);
         WeightedNode parentNode = nodes.get(parentName);
-        HashSet<WeightedNode> children = graphToAdd.getChildren(parentNode);
+        Set<WeightedNode> children = graphToAdd.getChildren(parentNode);
         ArrayList<String> childrenNames = new ArrayList<String>();
         for (WeightedNode n : children) {
             childrenNames.add(n.getName());
@@ -354,8 +356,7 @@ public class TestDriver {
             destNodes.add(destNode);
         }
 
-        PathFinder pf = new PathFinder(graph, sourceNodes, destNodes);
-        NodeCountingPath retPath = pf.findMinPath();
+        NodeCountingPath retPath = pathCache.findMinPath(graph, sourceNodes, destNodes);
         if (retPath != null) {
             output.print("found path in " + graphName + ": ");
             Iterator<WeightedNode> it = retPath.iterator();
@@ -414,8 +415,7 @@ public class TestDriver {
             return;
         }
 
-        DfsAlgorithm dfs = new DfsAlgorithm(graph);
-        NodeCountingPath retDfs = dfs.invokeAlgorithm(sourceNode, destNode);
+        NodeCountingPath retDfs = pathCache.invokeAlgorithm(graph, sourceNode, destNode);
         output.print("dfs algorithm output " + graphName + " " + sourceArg + " -> " + destArg + ":");
         if (retDfs != null) {
             Iterator<WeightedNode> it = retDfs.iterator();
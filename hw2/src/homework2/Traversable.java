@@ -0,0 +1,32 @@
+package homework2;
+
+import java.util.Set;
+
+/***
+ * Traversable is the least a directed graph must offer to be searched by
+ * DfsAlgorithm and PathFinder: the children of a node, and whether a node is
+ * in the graph. Graph, ConcurrentGraph and GraphSnapshot are Traversable, and
+ * so is LazyGraph, whose children are computed on demand, so a search pays
+ * only for the part of the graph it visits.
+ * <p>
+ * A Traversable must not change while it is being searched.
+ */
+public interface Traversable<N> {
+
+    /**
+     * Returns a set of all the children of a given node.
+     *
+     * @requires A valid node of type N.
+     * @return A set of all the children of node n, or null if n is not in the
+     *         graph.
+     */
+    Set<N> getChildren(N n);
+
+    /**
+     * Checks if a given node is in the graph.
+     *
+     * @requires A valid node of type N.
+     * @return true if n exists in the graph, false if it doesn't.
+     */
+    boolean nodeInGraph(N n);
+}
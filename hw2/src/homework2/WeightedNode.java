@@ -1,7 +1,10 @@
 package homework2;
 
 /**
- * A WeightedNode class is a record type which contains a name, a cost, a color (and a XXX if needed)
+ * A WeightedNode class is an immutable record type which contains a name and
+ * a cost. The state of a traversal (such as which nodes were visited, and
+ * their back edges) is kept by the traversal (see DfsAlgorithm), so nodes can
+ * be shared by several graphs and searches at the same time.
  **/
 public class WeightedNode implements Comparable<WeightedNode> {
 	
@@ -15,29 +18,18 @@ public class WeightedNode implements Comparable<WeightedNode> {
   	 * Cost of this node.
   	 */
   	private final int cost;
-  	
-  	private int backEdges;
-
-	
-  	/**
-  	 * Color of this node.
-  	 */	
-	private String color;
-	
 	
 	
   	/**
      * Creates a WeightedNode.
      * @effects creates new WeightedNode with the name
-     * <tt>name</tt> and the cost <tt>cost</tt> and a default color White.
+     * <tt>name</tt> and the cost <tt>cost</tt>.
      *
      */
 	 
   	public WeightedNode(String name, int cost) {
     	this.name = name;
       	this.cost = cost;
-		this.color = "White";
-		this.backEdges = 0;
   	}
 
   
@@ -58,42 +50,6 @@ public class WeightedNode implements Comparable<WeightedNode> {
     	return cost;
   	}
 
-	/**
-	 * Returns this.color.
-     * @return this.color
-     */	
-	public String getColor(){
-		return color;
-	}
-	
-	/**
-	 * @requires valid string color
-	 * @modifies this
-	 * @effects the color of the object
-     */	
-	public void setColor(String color){
-		this.color = color;
-	}
-	
-	/**
-     * Returns this.backEdges.
-     * @return this.backEdges
-     */ 
-	// <Itay> Modified
-	public int getBackEdges() {
-	    return this.backEdges;
-	}
-	
-	/**
-     * @requires valid back edges number, zero or greater
-     * @modifies this
-     * @effects the back edges number of the object
-     */ 
-	// <Itay> Modified
-	public void setBackEdges(int backEdges) {
-	    this.backEdges = backEdges;
-	}
-	
 	/**
 	 * Standard equality operation.
 	 * @return true iff o.instaceOf(WeightedNode) &&